@@ -0,0 +1,235 @@
+package difficulty;
+
+import main.Location;
+import map.Map;
+
+import java.util.Arrays;
+
+/**
+ * Finds shortest paths with A*, using the Manhattan distance as the heuristic (the bot can only move N/E/S/W, so it
+ * never overestimates).
+ *
+ * Cells are plain int indexes (row * width + col). The open set is a difficulty.IntMinHeap ordered by f, with ties
+ * going to the cell closest to the target so that open areas are crossed in a straight line instead of being flooded.
+ * The cost so far and the direction each cell was reached from are kept in arrays the size of the map. Each thread
+ * has one set of them (with the open set), shared by every A* path finder it runs, so a thousand bots deciding on a few
+ * worker threads only need a few sets rather than a thousand. Instead of clearing them, each search has a new
+ * generation number, and a cell's cost only counts if the generation stored with it (in the same long, so checking it
+ * doesn't cost another cache miss) is the current one. So once the arrays exist, a search doesn't allocate or clear
+ * anything.
+ */
+public class AStarPathFinder implements PathFinder {
+
+    private static final Location.Direction[] DIRECTIONS = Location.Direction.values(); // N, E, S, W
+
+    // Each thread's working arrays, for whichever path finder it's running a search for
+    private static final ThreadLocal<Workspace> WORKSPACES = ThreadLocal.withInitial(Workspace::new);
+
+    private int nodesExpanded;
+    private int pathLength = -1;
+
+    /**
+     * Finds the first step of a shortest path from one location to another.
+     *
+     * @param map The map
+     * @param from Where the path starts
+     * @param to Where the path ends
+     * @return The direction of the first step, or null if they're in the same place or there's no path
+     */
+    @Override
+    public Location.Direction firstStep(Map map, Location from, Location to) {
+        int width = map.getWidth();
+        int height = map.getHeight();
+        pathLength = -1;
+        nodesExpanded = 0;
+
+        if (from.outOfBounds(width, height) || to.outOfBounds(width, height)) {
+            return null;
+        }
+        if (from.equals(to)) {
+            pathLength = 0;
+            return null;
+        }
+
+        int start = from.getRow() * width + from.getCol();
+        int target = to.getRow() * width + to.getCol();
+
+        Workspace workspace = WORKSPACES.get();
+        if (!search(workspace, map, start, target)) {
+            return null;
+        }
+
+        // Walk back from the target to the step just after the start
+        byte[] cameFrom = workspace.cameFrom;
+        int cell = target;
+        int direction = cameFrom[cell];
+        while (true) {
+            int previous = cell - offset(direction, width);
+            if (previous == start) {
+                return DIRECTIONS[direction];
+            }
+            cell = previous;
+            direction = cameFrom[cell];
+        }
+    }
+
+    /**
+     * Gets how many cells were expanded by the last search, which is a rough measure of how much work it did.
+     *
+     * @return The number of cells expanded
+     */
+    public int getNodesExpanded() {
+        return nodesExpanded;
+    }
+
+    /**
+     * Gets the number of moves in the path found by the last search.
+     *
+     * @return The path length, or -1 if there wasn't a path
+     */
+    public int getPathLength() {
+        return pathLength;
+    }
+
+    /**
+     * Runs A* from the start until the target is reached.
+     *
+     * @param workspace The thread's working arrays
+     * @param map The map
+     * @param start The start's cell index
+     * @param target The target's cell index
+     * @return If the target can be reached
+     */
+    private boolean search(Workspace workspace, Map map, int start, int target) {
+        int width = map.getWidth();
+        int height = map.getHeight();
+        int targetCol = target % width;
+        int targetRow = target / width;
+
+        workspace.prepare(width * height);
+        IntMinHeap open = workspace.open;
+        long[] costs = workspace.costs;
+        byte[] cameFrom = workspace.cameFrom;
+        open.clear();
+
+        long stamp = (long) workspace.generation << 32;
+        costs[start] = stamp;
+        open.push(priority(0, heuristic(start % width, start / width, targetCol, targetRow)), start);
+
+        while (!open.isEmpty()) {
+            long priority = open.peekPriority();
+            int cell = open.pop();
+            int cost = (int) costs[cell];
+
+            if ((int) (priority >>> 32) - (int) priority > cost) {
+                continue; // Stale: the cell has been reached more cheaply since this was pushed
+            }
+            if (cell == target) {
+                pathLength = cost;
+                return true;
+            }
+            nodesExpanded++;
+
+            int col = cell % width;
+            int row = cell / width;
+            for (int direction = 0; direction < DIRECTIONS.length; direction++) {
+                int nextCol = col + (direction == 1 ? 1 : direction == 3 ? -1 : 0);
+                int nextRow = row + (direction == 0 ? -1 : direction == 2 ? 1 : 0);
+
+                if (nextCol < 0 || nextRow < 0 || nextCol >= width || nextRow >= height) {
+                    continue;
+                }
+
+                int next = nextRow * width + nextCol;
+                long known = costs[next];
+                if ((known & ~0xFFFFFFFFL) == stamp && (int) known <= cost + 1) {
+                    continue; // Already found at least as good a route there
+                }
+                if (!map.isWalkable(next)) {
+                    continue;
+                }
+
+                costs[next] = stamp | (cost + 1);
+                cameFrom[next] = (byte) direction;
+                open.push(priority(cost + 1, heuristic(nextCol, nextRow, targetCol, targetRow)), next);
+            }
+        }
+        return false;
+    }
+
+    /**
+     * Packs f (cost + heuristic) and the heuristic into a priority, so cells with the same f are broken in favour of
+     * the one closest to the target.
+     *
+     * @param cost The cost so far
+     * @param heuristic The estimated cost to the target
+     * @return The priority
+     */
+    private static long priority(int cost, int heuristic) {
+        return ((long) (cost + heuristic) << 32) | heuristic;
+    }
+
+    /**
+     * Gets the Manhattan distance between two tiles.
+     *
+     * @param col The tile's column
+     * @param row The tile's row
+     * @param targetCol The target's column
+     * @param targetRow The target's row
+     * @return The number of moves it would take with no walls in the way
+     */
+    private static int heuristic(int col, int row, int targetCol, int targetRow) {
+        return Math.abs(col - targetCol) + Math.abs(row - targetRow);
+    }
+
+    /**
+     * Gets how far a cell index moves for a step in a direction.
+     *
+     * @param direction The index of the direction (N, E, S, W)
+     * @param width The width of the map
+     * @return The change in cell index
+     */
+    private static int offset(int direction, int width) {
+        switch (direction) {
+            case 0:
+                return -width;
+            case 1:
+                return 1;
+            case 2:
+                return width;
+            default:
+                return -1;
+        }
+    }
+
+    /**
+     * The arrays a thread needs to run a search, so they're only allocated once per thread rather than once per path
+     * finder.
+     */
+    private static class Workspace {
+        private final IntMinHeap open = new IntMinHeap();
+
+        private long[] costs = new long[0]; // Generation in the high 32 bits, cost in the low 32 bits
+        private byte[] cameFrom = new byte[0];
+        private int generation;
+
+        /**
+         * Makes sure the arrays cover the map, and starts a new generation so the last search's entries don't count.
+         *
+         * @param cellCount The number of cells in the map
+         */
+        private void prepare(int cellCount) {
+            if (costs.length < cellCount) {
+                costs = new long[cellCount];
+                cameFrom = new byte[cellCount];
+                generation = 0;
+            }
+
+            generation++;
+            if (generation == Integer.MAX_VALUE) { // Only happens after billions of searches
+                Arrays.fill(costs, 0);
+                generation = 1;
+            }
+        }
+    }
+}
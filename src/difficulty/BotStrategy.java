@@ -1,6 +1,8 @@
 package difficulty;
 
 import main.Location;
+import main.StateReader;
+import main.StateWriter;
 import map.Map;
 
 /**
@@ -20,12 +22,54 @@ public interface BotStrategy {
     Location.Direction nextDirection();
 
     /**
-     * Executes the next move based on the difficulty setting.
+     * Decides the next move based on the difficulty setting.
      * This could include just moving, or occasionally executing the LOOK command (a simulated version).
      *
-     * @param map
-     * @param humanLocation
+     * It mustn't change the map or move the bot, as every bot on the map decides at the same time (see
+     * player.BotGroup), and the moves are only made afterwards.
+     *
+     * @param map The entire map
+     * @param humanLocation The humans location
+     * @return The direction to move in, or null if the bot isn't moving this turn (for example when it used LOOK)
+     */
+    Location.Direction decideMove(Map map, Location humanLocation);
+
+    /**
+     * Gets ready to play on a map, when the game is set up. A strategy that needs something slow to build (like the
+     * graph of a huge map for path finding) builds it here, so the first turn doesn't have to wait for it.
+     *
+     * @param map The map the game is played on
+     */
+    default void prepare(Map map) {
+    }
+
+    /**
+     * Gets ready for a turn, before any bot decides its move. player.BotGroup calls this for every bot one at a time,
+     * so it's where a strategy brings anything it shares with the other bots (like a field to the human) up to date;
+     * decideMove, which runs for many bots at once, then only has to read it.
+     *
+     * @param map The entire map
+     * @param humanLocation The humans location
+     */
+    default void prepareTurn(Map map, Location humanLocation) {
+    }
+
+    /**
+     * Writes what the strategy remembers between turns, and where its random numbers have got to, for a snapshot of
+     * the game (see main.GameSnapshot). Anything it only keeps to save work (like a path finder) isn't written, as it's
+     * built again when it's next needed, so a strategy that doesn't remember anything doesn't write anything.
+     *
+     * @param out Where to write it
+     */
+    default void writeState(StateWriter out) {
+    }
+
+    /**
+     * Carries on from what writeState wrote, so the bot makes the same decisions from then on.
+     *
+     * @param in Where to read it from
      */
-    void nextMove(Map map, Location humanLocation);
+    default void readState(StateReader in) {
+    }
 
 }
\ No newline at end of file
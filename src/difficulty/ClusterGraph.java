@@ -0,0 +1,538 @@
+package difficulty;
+
+import map.Map;
+import map.MapListener;
+
+import java.lang.ref.WeakReference;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.WeakHashMap;
+import java.util.concurrent.locks.ReadWriteLock;
+import java.util.concurrent.locks.ReentrantReadWriteLock;
+import java.util.stream.IntStream;
+
+/**
+ * The abstract graph difficulty.HierarchicalPathFinder searches, shared by every path finder on the same map.
+ *
+ * The map is split into square clusters. Wherever two neighbouring clusters have walkable tiles facing each other
+ * across their border, there's an entrance: a short opening gets one transition in its middle, and a long one gets a
+ * transition at each end. Each transition is a pair of nodes (one tile on each side of the border, one move apart). Then
+ * for every cluster, the distance between each pair of its nodes (only moving inside the cluster) is found with a
+ * breadth-first search. The clusters' searches don't depend on each other, so they're run in parallel.
+ *
+ * When a tile changes, only the clusters it can affect are rebuilt: its own, plus the neighbour on the other side if
+ * it's on the edge of its cluster (which changes the entrances between them). Most changes are gold being picked up,
+ * which doesn't change where bots can walk, so nothing is rebuilt unless the cluster's number of walkable tiles has
+ * changed. A node's id is an index into plain
+ * arrays, and the ids of removed nodes are reused, so the graph doesn't grow as the map changes.
+ *
+ * Path finders read the graph under a read lock, and changes rebuild it under the write lock, so bots can search at
+ * the same time as each other but never while a cluster is half rebuilt.
+ */
+class ClusterGraph implements MapListener {
+
+    static final int DEFAULT_CLUSTER_SIZE = 32;
+
+    private static final java.util.Map<Map, ClusterGraph> GRAPHS = Collections.synchronizedMap(new WeakHashMap<>());
+
+    private static final int MIN_WIDE_ENTRANCE = 6; // Entrances at least this wide get a transition at each end
+
+    private static final int EAST = 0;
+    private static final int SOUTH = 1;
+
+    private final ReadWriteLock lock = new ReentrantReadWriteLock();
+
+    private final WeakReference<Map> map; // Weak, so the shared graph doesn't keep its map from being collected
+    private final int width;
+    private final int height;
+    private final int clusterSize;
+    private final int clustersAcross;
+    private final int clustersDown;
+
+    private final int[][] borderNodes; // Nodes on the east (2 * cluster) and south (2 * cluster + 1) borders
+    private final int[][] clusterNodes;
+    private final int[][] clusterDistances; // Distance from the i-th to the j-th node at [i * nodes + j], -1 if none
+    private final int[] walkableCounts; // How many walkable tiles each cluster had when it was built
+
+    private int[] nodeCells = new int[64];
+    private int[] nodePartners = new int[64]; // The node on the other side of the border
+    private int[] nodeClusters = new int[64];
+    private int[] nodeIndexes = new int[64]; // The node's index in its cluster's list
+    private int nodeCapacity;
+    private int[] freeNodes = new int[64];
+    private int freeCount;
+
+    /**
+     * Builds the graph for a map.
+     *
+     * @param map The map
+     * @param clusterSize The width and height of each cluster
+     */
+    ClusterGraph(Map map, int clusterSize) {
+        if (clusterSize < 2) {
+            throw new IllegalArgumentException("Error: Clusters must be at least 2 tiles across!");
+        }
+
+        this.map = new WeakReference<>(map);
+        this.width = map.getWidth();
+        this.height = map.getHeight();
+        this.clusterSize = clusterSize;
+        this.clustersAcross = (width + clusterSize - 1) / clusterSize;
+        this.clustersDown = (height + clusterSize - 1) / clusterSize;
+
+        int clusterCount = clustersAcross * clustersDown;
+        borderNodes = new int[clusterCount * 2][];
+        clusterNodes = new int[clusterCount][];
+        clusterDistances = new int[clusterCount][];
+        walkableCounts = new int[clusterCount];
+
+        // Finding the entrances hands out node ids, so it's done in order to keep them the same every time
+        for (int border = 0; border < borderNodes.length; border++) {
+            buildBorder(map, border);
+        }
+        for (int cluster = 0; cluster < clusterCount; cluster++) {
+            gatherNodes(cluster);
+        }
+        IntStream.range(0, clusterCount).parallel().forEach(cluster -> buildDistances(map, cluster));
+
+        map.addListener(this);
+    }
+
+    /**
+     * Gets the graph shared by everything on a map, building it the first time it's asked for.
+     *
+     * @param map The map
+     * @return The shared graph
+     */
+    static ClusterGraph of(Map map) {
+        return GRAPHS.computeIfAbsent(map, key -> new ClusterGraph(key, DEFAULT_CLUSTER_SIZE));
+    }
+
+    /**
+     * Rebuilds the clusters a changed tile can affect.
+     *
+     * @param map The map that changed
+     * @param col The column of the tile
+     * @param row The row of the tile
+     */
+    @Override
+    public void tileChanged(Map map, int col, int row) {
+        if (map != this.map.get()) {
+            return;
+        }
+
+        int clusterCol = col / clusterSize;
+        int clusterRow = row / clusterSize;
+        int cluster = clusterRow * clustersAcross + clusterCol;
+        if (countWalkable(map, cluster) == walkableCounts[cluster]) {
+            return; // Only one tile changes at a time, so this means it was walkable before and still is (or wasn't)
+        }
+
+        lock.writeLock().lock();
+        try {
+
+            int west = col == clusterCol * clusterSize && clusterCol > 0 ? cluster - 1 : -1;
+            int east = col == (clusterCol + 1) * clusterSize - 1 && clusterCol < clustersAcross - 1 ? cluster + 1 : -1;
+            int north = row == clusterRow * clusterSize && clusterRow > 0 ? cluster - clustersAcross : -1;
+            int south = row == (clusterRow + 1) * clusterSize - 1 && clusterRow < clustersDown - 1 ? cluster + clustersAcross : -1;
+
+            if (west >= 0) {
+                buildBorder(map, 2 * west + EAST);
+            }
+            if (east >= 0) {
+                buildBorder(map, 2 * cluster + EAST);
+            }
+            if (north >= 0) {
+                buildBorder(map, 2 * north + SOUTH);
+            }
+            if (south >= 0) {
+                buildBorder(map, 2 * cluster + SOUTH);
+            }
+
+            for (int changed : new int[]{cluster, west, east, north, south}) {
+                if (changed >= 0) {
+                    gatherNodes(changed);
+                    buildDistances(map, changed);
+                }
+            }
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+
+    /**
+     * Gets the lock that has to be held (for reading) while searching the graph.
+     *
+     * @return The lock
+     */
+    ReadWriteLock getLock() {
+        return lock;
+    }
+
+    /**
+     * Gets the width and height of each cluster.
+     *
+     * @return The cluster size
+     */
+    int getClusterSize() {
+        return clusterSize;
+    }
+
+    /**
+     * Gets which cluster a tile is in.
+     *
+     * @param cell The tile's cell index
+     * @return The cluster's index
+     */
+    int clusterOf(int cell) {
+        return (cell / width / clusterSize) * clustersAcross + (cell % width) / clusterSize;
+    }
+
+    /**
+     * Gets the column of a cluster's top left tile.
+     *
+     * @param cluster The cluster's index
+     * @return The column
+     */
+    int clusterCol(int cluster) {
+        return (cluster % clustersAcross) * clusterSize;
+    }
+
+    /**
+     * Gets the row of a cluster's top left tile.
+     *
+     * @param cluster The cluster's index
+     * @return The row
+     */
+    int clusterRow(int cluster) {
+        return (cluster / clustersAcross) * clusterSize;
+    }
+
+    /**
+     * Gets the nodes in a cluster. The array mustn't be changed.
+     *
+     * @param cluster The cluster's index
+     * @return The node ids
+     */
+    int[] nodesIn(int cluster) {
+        return clusterNodes[cluster];
+    }
+
+    /**
+     * Gets the distances between the nodes in a cluster, as described for clusterDistances. The array mustn't be
+     * changed.
+     *
+     * @param cluster The cluster's index
+     * @return The distances
+     */
+    int[] distancesIn(int cluster) {
+        return clusterDistances[cluster];
+    }
+
+    /**
+     * Gets the tile a node is on.
+     *
+     * @param node The node id
+     * @return The cell index
+     */
+    int cellOf(int node) {
+        return nodeCells[node];
+    }
+
+    /**
+     * Gets the node on the other side of the border from a node.
+     *
+     * @param node The node id
+     * @return The other node's id
+     */
+    int partnerOf(int node) {
+        return nodePartners[node];
+    }
+
+    /**
+     * Gets the cluster a node is in.
+     *
+     * @param node The node id
+     * @return The cluster's index
+     */
+    int clusterOfNode(int node) {
+        return nodeClusters[node];
+    }
+
+    /**
+     * Gets the index of a node in its cluster's list of nodes.
+     *
+     * @param node The node id
+     * @return The index
+     */
+    int indexOf(int node) {
+        return nodeIndexes[node];
+    }
+
+    /**
+     * Gets one more than the highest node id, for sizing arrays indexed by node.
+     *
+     * @return The node capacity
+     */
+    int getNodeCapacity() {
+        return nodeCapacity;
+    }
+
+    /**
+     * Finds the entrances across one border, replacing the nodes that were on it.
+     *
+     * @param map The map
+     * @param border The border's index (2 * cluster for its east border, 2 * cluster + 1 for its south border)
+     */
+    private void buildBorder(Map map, int border) {
+        int cluster = border >>> 1;
+        boolean east = (border & 1) == EAST;
+        int clusterCol = cluster % clustersAcross;
+        int clusterRow = cluster / clustersAcross;
+
+        if (borderNodes[border] != null) {
+            for (int node : borderNodes[border]) {
+                freeNodes = push(freeNodes, freeCount++, node);
+            }
+        }
+        borderNodes[border] = new int[0];
+
+        if (east ? clusterCol == clustersAcross - 1 : clusterRow == clustersDown - 1) {
+            return; // The edge of the map
+        }
+
+        // The tiles along the border on this cluster's side, and the step across to the other side
+        int first = east
+                ? clusterRow * clusterSize * width + (clusterCol + 1) * clusterSize - 1
+                : ((clusterRow + 1) * clusterSize - 1) * width + clusterCol * clusterSize;
+        int along = east ? width : 1;
+        int across = east ? 1 : width;
+        int length = east
+                ? Math.min(clusterSize, height - clusterRow * clusterSize)
+                : Math.min(clusterSize, width - clusterCol * clusterSize);
+        int neighbour = east ? cluster + 1 : cluster + clustersAcross;
+
+        int[] nodes = new int[0];
+        int count = 0;
+        int runStart = -1;
+        for (int i = 0; i <= length; i++) {
+            int cell = first + i * along;
+            boolean open = i < length && map.isWalkable(cell) && map.isWalkable(cell + across);
+
+            if (open && runStart < 0) {
+                runStart = i;
+            } else if (!open && runStart >= 0) {
+                int runLength = i - runStart;
+                if (runLength < MIN_WIDE_ENTRANCE) {
+                    nodes = addTransition(nodes, count, first + (runStart + runLength / 2) * along, across, cluster, neighbour);
+                    count += 2;
+                } else {
+                    nodes = addTransition(nodes, count, first + runStart * along, across, cluster, neighbour);
+                    count += 2;
+                    nodes = addTransition(nodes, count, first + (i - 1) * along, across, cluster, neighbour);
+                    count += 2;
+                }
+                runStart = -1;
+            }
+        }
+        borderNodes[border] = Arrays.copyOf(nodes, count);
+    }
+
+    /**
+     * Adds the pair of nodes for a transition across a border.
+     *
+     * @param nodes The border's nodes so far
+     * @param count How many of them there are
+     * @param cell The tile on this cluster's side
+     * @param across The change in cell index across the border
+     * @param cluster This cluster's index
+     * @param neighbour The other cluster's index
+     * @return The border's nodes (which may be a new array)
+     */
+    private int[] addTransition(int[] nodes, int count, int cell, int across, int cluster, int neighbour) {
+        int here = allocate(cell, cluster);
+        int there = allocate(cell + across, neighbour);
+        nodePartners[here] = there;
+        nodePartners[there] = here;
+
+        nodes = push(nodes, count, here);
+        return push(nodes, count + 1, there);
+    }
+
+    /**
+     * Gives out a node id, reusing a removed node's id if there is one.
+     *
+     * @param cell The tile the node is on
+     * @param cluster The cluster it's in
+     * @return The node id
+     */
+    private int allocate(int cell, int cluster) {
+        int node;
+        if (freeCount > 0) {
+            node = freeNodes[--freeCount];
+        } else {
+            node = nodeCapacity++;
+            if (node == nodeCells.length) {
+                nodeCells = Arrays.copyOf(nodeCells, node * 2);
+                nodePartners = Arrays.copyOf(nodePartners, node * 2);
+                nodeClusters = Arrays.copyOf(nodeClusters, node * 2);
+                nodeIndexes = Arrays.copyOf(nodeIndexes, node * 2);
+            }
+        }
+
+        nodeCells[node] = cell;
+        nodeClusters[node] = cluster;
+        return node;
+    }
+
+    /**
+     * Collects the nodes on a cluster's four borders into its list of nodes.
+     *
+     * @param cluster The cluster's index
+     */
+    private void gatherNodes(int cluster) {
+        int clusterCol = cluster % clustersAcross;
+        int clusterRow = cluster / clustersAcross;
+
+        int[] nodes = new int[0];
+        int count = 0;
+        int[] borders = {
+                clusterRow > 0 ? 2 * (cluster - clustersAcross) + SOUTH : -1,
+                2 * cluster + EAST,
+                2 * cluster + SOUTH,
+                clusterCol > 0 ? 2 * (cluster - 1) + EAST : -1
+        };
+
+        for (int border : borders) {
+            if (border < 0) {
+                continue;
+            }
+            for (int node : borderNodes[border]) {
+                if (nodeClusters[node] == cluster) {
+                    nodeIndexes[node] = count;
+                    nodes = push(nodes, count++, node);
+                }
+            }
+        }
+        clusterNodes[cluster] = Arrays.copyOf(nodes, count);
+    }
+
+    /**
+     * Finds the distances between every pair of a cluster's nodes, moving only inside the cluster.
+     *
+     * The cluster's tiles are copied into a grid with a wall all the way round it first, so the searches don't need
+     * to ask the map about each tile again for every node, or check if they're at the edge of the cluster.
+     *
+     * @param map The map
+     * @param cluster The cluster's index
+     */
+    private void buildDistances(Map map, int cluster) {
+        int[] nodes = clusterNodes[cluster];
+        int[] distances = new int[nodes.length * nodes.length];
+        Arrays.fill(distances, -1);
+
+        int left = clusterCol(cluster);
+        int top = clusterRow(cluster);
+        int clusterWidth = Math.min(clusterSize, width - left);
+        int clusterHeight = Math.min(clusterSize, height - top);
+        int stride = clusterWidth + 2;
+
+        boolean[] open = new boolean[stride * (clusterHeight + 2)];
+        int walkableCount = 0;
+        for (int row = 0; row < clusterHeight; row++) {
+            for (int col = 0; col < clusterWidth; col++) {
+                if (map.isWalkable((top + row) * width + left + col)) {
+                    open[(row + 1) * stride + col + 1] = true;
+                    walkableCount++;
+                }
+            }
+        }
+        walkableCounts[cluster] = walkableCount;
+        clusterDistances[cluster] = distances;
+        if (nodes.length == 0) {
+            return;
+        }
+
+        int[] offsets = {-stride, 1, stride, -1};
+        int[] reached = new int[open.length];
+        int[] queue = new int[clusterWidth * clusterHeight];
+
+        for (int from = 0; from < nodes.length; from++) {
+            Arrays.fill(reached, -1);
+            int head = 0;
+            int tail = 0;
+            int start = padded(nodeCells[nodes[from]], left, top, stride);
+            reached[start] = 0;
+            queue[tail++] = start;
+
+            while (head < tail) {
+                int cell = queue[head++];
+                int next = reached[cell] + 1;
+                for (int offset : offsets) {
+                    int neighbour = cell + offset;
+                    if (open[neighbour] && reached[neighbour] < 0) {
+                        reached[neighbour] = next;
+                        queue[tail++] = neighbour;
+                    }
+                }
+            }
+
+            for (int to = 0; to < nodes.length; to++) {
+                distances[from * nodes.length + to] = reached[padded(nodeCells[nodes[to]], left, top, stride)];
+            }
+        }
+    }
+
+    /**
+     * Counts the walkable tiles in a cluster.
+     *
+     * @param map The map
+     * @param cluster The cluster's index
+     * @return The number of walkable tiles
+     */
+    private int countWalkable(Map map, int cluster) {
+        int left = clusterCol(cluster);
+        int top = clusterRow(cluster);
+        int right = Math.min(left + clusterSize, width);
+        int bottom = Math.min(top + clusterSize, height);
+
+        int count = 0;
+        for (int row = top; row < bottom; row++) {
+            for (int col = left; col < right; col++) {
+                if (map.isWalkable(row * width + col)) {
+                    count++;
+                }
+            }
+        }
+        return count;
+    }
+
+    /**
+     * Turns a cell index into an index in a cluster's padded grid.
+     *
+     * @param cell The cell index
+     * @param left The column of the cluster's top left tile
+     * @param top The row of the cluster's top left tile
+     * @param stride The width of the padded grid
+     * @return The index in the padded grid
+     */
+    private int padded(int cell, int left, int top, int stride) {
+        return (cell / width - top + 1) * stride + (cell % width - left + 1);
+    }
+
+    /**
+     * Sets a value in an array, making it bigger first if it's full.
+     *
+     * @param array The array
+     * @param index Where to put the value
+     * @param value The value
+     * @return The array (which may be a new one)
+     */
+    private static int[] push(int[] array, int index, int value) {
+        if (index == array.length) {
+            array = Arrays.copyOf(array, Math.max(4, index * 2));
+        }
+        array[index] = value;
+        return array;
+    }
+}
@@ -1,16 +1,18 @@
 package difficulty;
 
 import main.DungeonsOfDoom;
+import main.GameRandom;
 import main.Location;
+import main.StateReader;
+import main.StateWriter;
 import map.Map;
 import player.BotPlayer;
 
-import java.util.Random;
-
 /**
  * A custom bot difficulty, which contains a weighted random. If the player has been seen, then the weighting is updated.
  * It then gets the predicted location from that and weights it to that predicted location. The higher the multiplier,
- * the more likely it is to move in the predicted direction.
+ * the more likely it is to move in the predicted direction. Like LOOK, the player can't be seen through walls (see
+ * difficulty.FieldOfView).
  *
  * To work out probabilities, let us take the rather elementary and trivial example of a weighting of 3.
  *
@@ -39,39 +41,47 @@ public class CustomBotStrategy implements BotStrategy {
     private int lookTurns = 0;
 
     private BotPlayer botPlayer;
+    private final GameRandom random;
 
     private Location currentHumanLocation;
 
+    private final FieldOfView fieldOfView = new FieldOfView(DungeonsOfDoom.LOOK_RADIUS);
+
     /**
      * Takes an instance of the player.BotPlayer to execute the commands as well as the weighting multiplier, w
      *
      * @param botPlayer The bot
      * @param weightingMultiplier The weighting you'd like to give it.
+     * @param random The bot's split of the game's random numbers
      */
 
-    public CustomBotStrategy(BotPlayer botPlayer, int weightingMultiplier) {
+    public CustomBotStrategy(BotPlayer botPlayer, int weightingMultiplier, GameRandom random) {
         this.botPlayer = botPlayer;
         this.weightingMultiplier= weightingMultiplier;
+        this.random = random;
     }
 
     /**
      * Works out the next move with LOOK command
      * @param map The map
      * @param humanLocation The humans location
+     * @return The direction to move in, or null on a LOOK turn
      */
     @Override
-    public void nextMove(Map map, Location humanLocation) {
+    public Location.Direction decideMove(Map map, Location humanLocation) {
+        Location.Direction direction = null;
 
         if (lookTurns % 4 == 0) { // Simulating the LOOK command every 4 turns
-            if (botPlayer.getLocation().isNear(humanLocation, DungeonsOfDoom.LOOK_RADIUS)) {
+            if (fieldOfView.canSee(map, botPlayer.getLocation(), humanLocation)) {
                 currentHumanLocation = humanLocation; // Updates location the bot thinks the human is at
                 weighting = weightingMultiplier;
             }
 
         } else { // Move command
-            botPlayer.executeMoveCommand(map, nextDirection());
+            direction = nextDirection();
         }
         lookTurns++;
+        return direction;
     }
 
     /**
@@ -84,8 +94,6 @@ public class CustomBotStrategy implements BotStrategy {
      */
     @Override
     public Location.Direction nextDirection() {
-        Random random = new Random();
-
         if (botPlayer.getLocation() == currentHumanLocation) {
             weighting = 1;
         }
@@ -103,4 +111,35 @@ public class CustomBotStrategy implements BotStrategy {
                 return botPlayer.getLocation().getDirectionTo(currentHumanLocation); // If it's anything else but the normal direction, then it's weighted.
         }
     }
+
+    /**
+     * Writes the current weighting, how many turns it's had (which says when it next LOOKs), where it last saw the
+     * human, and where its random numbers have got to.
+     *
+     * @param out Where to write it
+     */
+    @Override
+    public void writeState(StateWriter out) {
+        out.writeVarint(weighting);
+        out.writeVarint(lookTurns);
+        out.writeLocation(currentHumanLocation);
+        random.writeState(out);
+    }
+
+    /**
+     * Carries on from what writeState wrote.
+     *
+     * @param in Where to read it from
+     */
+    @Override
+    public void readState(StateReader in) {
+        weighting = in.readVarint();
+        lookTurns = in.readVarint();
+        currentHumanLocation = in.readLocation();
+        random.readState(in);
+
+        if (weighting < 1 || (weighting > 1 && currentHumanLocation == null)) {
+            throw new IllegalArgumentException("Error: The snapshot's custom bot is invalid!");
+        }
+    }
 }
@@ -0,0 +1,271 @@
+package difficulty;
+
+import main.Location;
+import map.Map;
+
+import java.lang.ref.WeakReference;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.WeakHashMap;
+
+/**
+ * The distance from every tile to the human, shared by every bot on the same map, so that the work of finding the
+ * way to the human is done once per turn rather than once per bot.
+ *
+ * It's a breadth-first search outwards from the human over the walkable tiles. When a tile is first reached, the
+ * direction back towards the tile it was reached from is stored, which is always the first step of a shortest path to
+ * the human. So once a bot's tile has been reached, its next move is a single array read.
+ *
+ * The search is resumable: it only floods as far as it needs to for the bots that have asked so far, and carries on
+ * from where it stopped when a bot further away asks. However many bots there are, a turn never does more than one
+ * flood of the map, and bots close to the human only cost as much as the area around them. Moving the source and
+ * flooding (update and floodTo) take the field's lock, but reading it (directionFrom and distanceFrom) doesn't, so
+ * player.BotGroup brings the field up to date for every bot before they decide, and then they all read it at once.
+ *
+ * The flood starts again when the human moves to a different tile, or when a tile of the map changes. It isn't
+ * patched: moving the source by one step can change the distance (and the best direction) of nearly every tile, so
+ * repairing it costs about as much as flooding again. Turns where the human doesn't move (LOOK, HELLO, a move into a
+ * wall...) cost nothing. Like difficulty.AStarPathFinder, the arrays are reused with generation stamps, so starting
+ * again doesn't clear anything.
+ */
+public class DistanceField implements PathFinder {
+
+    private static final java.util.Map<Map, DistanceField> FIELDS = Collections.synchronizedMap(new WeakHashMap<>());
+
+    private static final Location.Direction[] DIRECTIONS = Location.Direction.values(); // N, E, S, W
+    private static final byte[] OPPOSITE = {2, 3, 0, 1}; // S, W, N, E
+
+    private static final int NO_SOURCE = -1;
+
+    private final WeakReference<Map> map; // Weak, so the shared field doesn't keep its map from being collected
+    private final int width;
+    private final int height;
+
+    private final long[] distances; // Generation in the high 32 bits, distance in the low 32 bits
+    private final byte[] towards; // Index of the direction of the next step towards the human
+    private final int[] queue;
+    private int head;
+    private int tail;
+
+    private int generation = 1; // Nothing has been reached until the first flood
+    private int source = NO_SOURCE;
+    private int modificationCount;
+
+    /**
+     * Creates a distance field for a map.
+     *
+     * @param map The map
+     */
+    public DistanceField(Map map) {
+        this.map = new WeakReference<>(map);
+        this.width = map.getWidth();
+        this.height = map.getHeight();
+
+        int cellCount = width * height;
+        distances = new long[cellCount];
+        towards = new byte[cellCount];
+        queue = new int[cellCount];
+    }
+
+    /**
+     * Gets the distance field shared by everything on a map, creating it the first time it's asked for.
+     *
+     * @param map The map
+     * @return The shared distance field
+     */
+    public static DistanceField of(Map map) {
+        return FIELDS.computeIfAbsent(map, DistanceField::new);
+    }
+
+    /**
+     * Moves the source of the field to the human's tile. This only starts a new flood if the human is on a different
+     * tile (or the map has changed) since the last call.
+     *
+     * @param humanLocation The human's location
+     */
+    public synchronized void update(Location humanLocation) {
+        int cell = humanLocation.outOfBounds(width, height) ? NO_SOURCE : humanLocation.getRow() * width + humanLocation.getCol();
+
+        if (cell != source || getMap().getModificationCount() != modificationCount) {
+            restart(cell);
+        }
+    }
+
+    /**
+     * Carries on the flood until a location has been reached, or there's nothing left to flood, so that directionFrom
+     * and distanceFrom can read it.
+     *
+     * @param location The location (a bot's)
+     */
+    public synchronized void floodTo(Location location) {
+        reach(toCell(location));
+    }
+
+    /**
+     * Gets the direction of the next step of a shortest path from a location to the human. This doesn't lock
+     * anything, so update and floodTo have to have been called for the location first (and mustn't be called again
+     * while threads are reading).
+     *
+     * @param location The location (a bot's)
+     * @return The direction, or null if it's where the human is or the human can't be reached from it
+     */
+    public Location.Direction directionFrom(Location location) {
+        int cell = toCell(location);
+
+        if (cell == source || !isReached(cell)) {
+            return null;
+        }
+        return DIRECTIONS[towards[cell]];
+    }
+
+    /**
+     * Gets the number of moves from a location to the human. Like directionFrom, this doesn't lock anything.
+     *
+     * @param location The location
+     * @return The distance, or -1 if the human can't be reached from it
+     */
+    public int distanceFrom(Location location) {
+        int cell = toCell(location);
+        return isReached(cell) ? (int) distances[cell] : -1;
+    }
+
+    /**
+     * Finds the first step of a shortest path to a location, by moving the source of the field there. This is only
+     * cheap when everything asking is heading to the same place (the human), which is what the field is for.
+     *
+     * @param map The map, which has to be the map this field is for
+     * @param from Where the path starts
+     * @param to Where the path ends
+     * @return The direction of the first step, or null if they're in the same place or there's no path
+     */
+    @Override
+    public synchronized Location.Direction firstStep(Map map, Location from, Location to) {
+        if (map != this.map.get()) {
+            throw new IllegalArgumentException("Error: This distance field is for a different map!");
+        }
+
+        update(to);
+        floodTo(from);
+        return directionFrom(from);
+    }
+
+    /**
+     * Starts a new flood from a tile.
+     *
+     * @param cell The source's cell index, or NO_SOURCE
+     */
+    private void restart(int cell) {
+        Map map = getMap();
+
+        generation++;
+        if (generation == Integer.MAX_VALUE) { // Only happens after billions of floods
+            Arrays.fill(distances, 0);
+            generation = 1;
+        }
+
+        source = cell;
+        modificationCount = map.getModificationCount();
+        head = 0;
+        tail = 0;
+
+        if (cell != NO_SOURCE && map.isWalkable(cell)) {
+            distances[cell] = (long) generation << 32;
+            queue[tail++] = cell;
+        }
+    }
+
+    /**
+     * Carries on the flood until a tile has been reached, or there's nothing left to flood.
+     *
+     * @param cell The tile's cell index, or -1 if it isn't on the map
+     * @return If the tile has been reached
+     */
+    private boolean reach(int cell) {
+        if (cell < 0) {
+            return false;
+        }
+
+        Map map = getMap();
+        long stamp = (long) generation << 32;
+        while ((distances[cell] & ~0xFFFFFFFFL) != stamp && head < tail) {
+            expand(map, queue[head++], stamp);
+        }
+        return (distances[cell] & ~0xFFFFFFFFL) == stamp;
+    }
+
+    /**
+     * Gets if the flood has reached a tile yet, without carrying it on.
+     *
+     * @param cell The tile's cell index, or -1 if it isn't on the map
+     * @return If the tile has been reached
+     */
+    private boolean isReached(int cell) {
+        return cell >= 0 && (distances[cell] & ~0xFFFFFFFFL) == (long) generation << 32;
+    }
+
+    /**
+     * Adds the unreached walkable neighbours of a tile to the flood.
+     *
+     * @param map The map
+     * @param cell The tile's cell index
+     * @param stamp The current generation, shifted into the high bits
+     */
+    private void expand(Map map, int cell, long stamp) {
+        int row = cell / width;
+        int col = cell - row * width;
+        long next = stamp | ((int) distances[cell] + 1);
+
+        if (row > 0) {
+            visit(map, cell - width, 0, next, stamp);
+        }
+        if (col < width - 1) {
+            visit(map, cell + 1, 1, next, stamp);
+        }
+        if (row < height - 1) {
+            visit(map, cell + width, 2, next, stamp);
+        }
+        if (col > 0) {
+            visit(map, cell - 1, 3, next, stamp);
+        }
+    }
+
+    /**
+     * Reaches a neighbour if it's walkable and hasn't been reached yet.
+     *
+     * @param map The map
+     * @param cell The neighbour's cell index
+     * @param direction The index of the direction from the expanded tile to the neighbour
+     * @param distance The neighbour's distance, with the generation stamp
+     * @param stamp The current generation, shifted into the high bits
+     */
+    private void visit(Map map, int cell, int direction, long distance, long stamp) {
+        if ((distances[cell] & ~0xFFFFFFFFL) != stamp && map.isWalkable(cell)) {
+            distances[cell] = distance;
+            towards[cell] = OPPOSITE[direction];
+            queue[tail++] = cell;
+        }
+    }
+
+    /**
+     * Gets the map this field is for.
+     *
+     * @return The map
+     */
+    private Map getMap() {
+        Map current = map.get();
+        if (current == null) {
+            throw new IllegalStateException("Error: The map for this distance field no longer exists!");
+        }
+        return current;
+    }
+
+    /**
+     * Turns a location into a cell index.
+     *
+     * @param location The location
+     * @return The cell index, or -1 if it's off the map
+     */
+    private int toCell(Location location) {
+        return location.outOfBounds(width, height) ? -1 : location.getRow() * width + location.getCol();
+    }
+}
@@ -1,11 +1,12 @@
 package difficulty;
 
+import main.GameRandom;
 import main.Location;
+import main.StateReader;
+import main.StateWriter;
 import map.Map;
 import player.BotPlayer;
 
-import java.util.Random;
-
 /**
  * The easiest of the bot difficulties.
  * It just moves in a random direction regardless, and doesn't use the LOOK command.
@@ -14,21 +15,30 @@ import java.util.Random;
 public class EasyBotStrategy implements BotStrategy {
 
     private BotPlayer botPlayer;
+    private final GameRandom random;
 
-    public EasyBotStrategy(BotPlayer botPlayer) {
+    /**
+     * Creates the strategy for a bot.
+     *
+     * @param botPlayer The bot
+     * @param random The bot's split of the game's random numbers
+     */
+    public EasyBotStrategy(BotPlayer botPlayer, GameRandom random) {
         this.botPlayer = botPlayer;
+        this.random = random;
     }
 
     /**
-     * Executes the next move for the bot.
+     * Decides the next move for the bot.
      * The next move is always a MOVE command.
      *
      * @param map The entire map
      * @param humanLocation The humans location
+     * @return The direction to move in
      */
     @Override
-    public void nextMove(Map map, Location humanLocation) {
-        botPlayer.executeMoveCommand(map, nextDirection());
+    public Location.Direction decideMove(Map map, Location humanLocation) {
+        return nextDirection();
     }
 
     /**
@@ -39,19 +49,26 @@ public class EasyBotStrategy implements BotStrategy {
      */
     @Override
     public Location.Direction nextDirection() {
-        Random random = new Random();
-
-        switch(random.nextInt(4)) {
-            case 0:
-                return Location.Direction.N;
-            case 1:
-                return Location.Direction.E;
-            case 2:
-                return Location.Direction.S;
-            case 3:
-                return Location.Direction.W;
-            default:
-                throw new IllegalStateException("Should never be called");
-        }
+        return random.nextDirection();
+    }
+
+    /**
+     * Writes where its random numbers have got to, which is all it remembers.
+     *
+     * @param out Where to write it
+     */
+    @Override
+    public void writeState(StateWriter out) {
+        random.writeState(out);
+    }
+
+    /**
+     * Carries on from where its random numbers had got to.
+     *
+     * @param in Where to read it from
+     */
+    @Override
+    public void readState(StateReader in) {
+        random.readState(in);
     }
 }
@@ -0,0 +1,254 @@
+package difficulty;
+
+import main.Location;
+import map.Map;
+
+import java.util.Arrays;
+
+/**
+ * Works out which tiles can be seen from a tile, so a bot's LOOK only sees the human if there's no wall in the way.
+ *
+ * It uses recursive shadowcasting: each of the 8 octants around the origin is scanned row by row outwards, keeping
+ * track of the range of slopes that isn't in the shadow of a wall yet. When a wall starts partway along a row, the
+ * part of the range before it carries on into the next row in a recursive call, and the scan continues after the
+ * wall with what's left. The slopes are kept as fractions of two ints and compared by cross-multiplying, and the
+ * radius is checked against the squared distance, so there's no floating point (or square root) at all.
+ *
+ * The visible tiles go into a bitset covering the square around the origin, one bit per tile. The results for the
+ * last few hundred origins are kept, so a bot looking again from the same tile doesn't cast anything, until a tile of
+ * the map changes. Nothing is allocated once it's been created.
+ */
+public class FieldOfView {
+
+    private static final int CACHE_SLOTS = 256; // Must be a power of 2
+
+    // How to turn a (column, row) in the first octant into a change in column and row, for each of the 8 octants
+    private static final int[][] OCTANTS = {
+            {1, 0, 0, 1}, {0, 1, 1, 0}, {0, -1, 1, 0}, {-1, 0, 0, 1},
+            {-1, 0, 0, -1}, {0, -1, -1, 0}, {0, 1, -1, 0}, {1, 0, 0, -1}
+    };
+
+    private final int radius;
+    private final int side;
+    private final int words;
+    private final long[] visible;
+
+    private final long[] cachedBits;
+    private final int[] cachedOrigins; // The origin cell for each slot, or -1 if it's empty
+    private Map cachedMap;
+    private int cachedModificationCount;
+
+    private Map map;
+    private int originCol;
+    private int originRow;
+    private int offset; // Where the origin being cast is in cachedBits
+
+    /**
+     * Creates a field of view for a radius.
+     *
+     * @param radius How far can be seen
+     */
+    public FieldOfView(int radius) {
+        if (radius < 0) {
+            throw new IllegalArgumentException("Error: The radius can't be negative!");
+        }
+
+        this.radius = radius;
+        this.side = 2 * radius + 1;
+        this.words = (side * side + 63) >>> 6;
+        this.visible = new long[words];
+        this.cachedBits = new long[CACHE_SLOTS * words];
+        this.cachedOrigins = new int[CACHE_SLOTS];
+        Arrays.fill(cachedOrigins, -1);
+    }
+
+    /**
+     * Checks if one tile can be seen from another: it's within the radius, and there's no wall in the way.
+     *
+     * @param map The map
+     * @param from Where it's being looked at from
+     * @param to The tile being looked for
+     * @return If it can be seen
+     */
+    public boolean canSee(Map map, Location from, Location to) {
+        int dx = to.getCol() - from.getCol();
+        int dy = to.getRow() - from.getRow();
+        if (dx * dx + dy * dy > radius * radius) {
+            return false;
+        }
+
+        compute(map, from);
+        return isVisible(dx, dy);
+    }
+
+    /**
+     * Works out which tiles can be seen from a tile. Bit (dy + radius) * (2 * radius + 1) + (dx + radius) of the result
+     * is set if the tile dx columns and dy rows from the origin can be seen.
+     *
+     * @param map The map
+     * @param origin Where it's being looked at from
+     * @return The visible tiles, in an array that's reused by the next call so mustn't be kept or changed
+     */
+    public long[] compute(Map map, Location origin) {
+        int width = map.getWidth();
+        int height = map.getHeight();
+
+        if (map != cachedMap || map.getModificationCount() != cachedModificationCount) {
+            Arrays.fill(cachedOrigins, -1);
+            cachedMap = map;
+            cachedModificationCount = map.getModificationCount();
+        }
+
+        if (origin.outOfBounds(width, height)) {
+            Arrays.fill(visible, 0);
+            return visible;
+        }
+
+        int cell = origin.getRow() * width + origin.getCol();
+        int slot = mix(cell) & (CACHE_SLOTS - 1);
+        offset = slot * words;
+
+        if (cachedOrigins[slot] != cell) {
+            Arrays.fill(cachedBits, offset, offset + words, 0);
+            this.map = map;
+            this.originCol = origin.getCol();
+            this.originRow = origin.getRow();
+
+            light(0, 0);
+            for (int[] octant : OCTANTS) {
+                cast(1, 1, 1, 0, 1, octant[0], octant[1], octant[2], octant[3]);
+            }
+
+            this.map = null;
+            cachedOrigins[slot] = cell;
+        }
+
+        System.arraycopy(cachedBits, offset, visible, 0, words);
+        return visible;
+    }
+
+    /**
+     * Checks if a tile could be seen in the last call to compute.
+     *
+     * @param dx How many columns the tile is from the origin
+     * @param dy How many rows the tile is from the origin
+     * @return If it's visible
+     */
+    public boolean isVisible(int dx, int dy) {
+        if (dx < -radius || dx > radius || dy < -radius || dy > radius) {
+            return false;
+        }
+
+        int bit = (dy + radius) * side + (dx + radius);
+        return (visible[bit >>> 6] & (1L << bit)) != 0;
+    }
+
+    /**
+     * Scans one octant outwards from a row, lighting the tiles between two slopes and recursing past walls.
+     * A slope is how far across a row (towards the octant's diagonal) a line from the origin is, divided by how far out
+     * the row is, so the octant starts at slope 1 and ends at slope 0.
+     *
+     * @param row The distance out of the first row to scan
+     * @param startNumerator The numerator of the slope to start at
+     * @param startDenominator The (positive) denominator of the slope to start at
+     * @param endNumerator The numerator of the slope to end at
+     * @param endDenominator The (positive) denominator of the slope to end at
+     * @param xx How much the column changes for each step across
+     * @param xy How much the column changes for each row out
+     * @param yx How much the row changes for each step across
+     * @param yy How much the row changes for each row out
+     */
+    private void cast(int row, int startNumerator, int startDenominator, int endNumerator, int endDenominator,
+                      int xx, int xy, int yx, int yy) {
+        if (startNumerator * endDenominator < endNumerator * startDenominator) {
+            return; // The start is already past the end
+        }
+
+        int newStartNumerator = 0;
+        int newStartDenominator = 1;
+
+        for (int j = row; j <= radius; j++) {
+            boolean blocked = false;
+
+            for (int dx = -j; dx <= 0; dx++) {
+                int dy = -j;
+                int col = originCol + dx * xx + dy * xy;
+                int tileRow = originRow + dx * yx + dy * yy;
+
+                // The slopes of the tile's two corners, as seen from the origin
+                int leftNumerator = 1 - 2 * dx;
+                int leftDenominator = 2 * j - 1;
+                int rightNumerator = -2 * dx - 1;
+                int rightDenominator = 2 * j + 1;
+
+                if (startNumerator * rightDenominator < rightNumerator * startDenominator) {
+                    continue; // Not reached the start of the range yet
+                } else if (endNumerator * leftDenominator > leftNumerator * endDenominator) {
+                    break; // Past the end of the range
+                }
+
+                if (dx * dx + dy * dy <= radius * radius) {
+                    light(col - originCol, tileRow - originRow);
+                }
+
+                boolean wall = isWall(col, tileRow);
+                if (blocked) {
+                    if (wall) {
+                        newStartNumerator = rightNumerator;
+                        newStartDenominator = rightDenominator;
+                    } else {
+                        blocked = false;
+                        startNumerator = newStartNumerator;
+                        startDenominator = newStartDenominator;
+                    }
+                } else if (wall && j < radius) {
+                    blocked = true;
+                    cast(j + 1, startNumerator, startDenominator, leftNumerator, leftDenominator, xx, xy, yx, yy);
+                    newStartNumerator = rightNumerator;
+                    newStartDenominator = rightDenominator;
+                }
+            }
+
+            if (blocked) {
+                return;
+            }
+        }
+    }
+
+    /**
+     * Marks a tile as visible.
+     *
+     * @param dx How many columns the tile is from the origin
+     * @param dy How many rows the tile is from the origin
+     */
+    private void light(int dx, int dy) {
+        int bit = (dy + radius) * side + (dx + radius);
+        cachedBits[offset + (bit >>> 6)] |= 1L << bit;
+    }
+
+    /**
+     * Checks if a tile blocks the view. Anything off the map does too.
+     *
+     * @param col The tile's column
+     * @param row The tile's row
+     * @return If it's a wall
+     */
+    private boolean isWall(int col, int row) {
+        if (col < 0 || row < 0 || col >= map.getWidth() || row >= map.getHeight()) {
+            return true;
+        }
+        return !map.isWalkable(row * map.getWidth() + col);
+    }
+
+    /**
+     * Spreads out the bits of a cell index, so neighbouring tiles don't all land in neighbouring cache slots in the
+     * same pattern.
+     *
+     * @param cell The cell index
+     * @return The mixed bits
+     */
+    private static int mix(int cell) {
+        int hash = cell * 0x9E3779B9;
+        return hash ^ (hash >>> 16);
+    }
+}
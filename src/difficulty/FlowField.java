@@ -0,0 +1,417 @@
+package difficulty;
+
+import main.Location;
+import map.Map;
+
+import java.lang.ref.WeakReference;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.WeakHashMap;
+import java.util.stream.IntStream;
+
+/**
+ * A flow field to a target over a whole map, for when thousands of bots are all chasing the same thing.
+ *
+ * It keeps two tables with one entry per tile: the integration field (how many moves the tile is from the target) and
+ * the direction of the next step towards the target, as a byte. Once they're built, a bot's move is one read from the
+ * direction table, with no locking, so a turn costs one field update however many bots there are. Unlike
+ * difficulty.DistanceField, which floods only as far as the bots asking so far, the whole field is built at once, which
+ * is what lets the building be split up and the reads be free.
+ *
+ * The map is cut into square blocks, and the field is built in rounds. In each round every block that has something
+ * new to do runs on its own core: it takes the distances from just outside its edges, and spreads any that got shorter
+ * through the block with a breadth-first search. If that changes a tile on the block's edge, the block on the other side of that edge
+ * gets to run in the next round. When a round changes no edges, every distance is final. A block only ever writes its
+ * own part of the field, and distances only ever go down to the length of a real path, so reading a neighbour's edge
+ * while it's being written just means the change is picked up next round. Then the direction table is worked out from
+ * the distances, again with the blocks in parallel.
+ *
+ * The field is only rebuilt when the target moves to a different tile, or a tile of the map changes.
+ */
+public class FlowField implements PathFinder {
+
+    private static final java.util.Map<Map, FlowField> FIELDS = Collections.synchronizedMap(new WeakHashMap<>());
+
+    private static final Location.Direction[] DIRECTIONS = Location.Direction.values(); // N, E, S, W
+
+    private static final int BLOCK_SIZE = 64;
+    private static final int UNREACHED = Integer.MAX_VALUE;
+    private static final byte NO_DIRECTION = -1;
+    private static final int NO_TARGET = -1;
+
+    // Each worker thread's arrays, for spreading the distances through a block
+    private static final ThreadLocal<Workspace> WORKSPACES = ThreadLocal.withInitial(Workspace::new);
+
+    private final WeakReference<Map> map; // Weak, so the shared field doesn't keep its map from being collected
+    private final int width;
+    private final int height;
+    private final int blockCols;
+    private final int blockRows;
+
+    private final int[] distances; // The integration field, UNREACHED if the target can't be reached
+    private final byte[] directions; // Index of the direction of the next step towards the target, or NO_DIRECTION
+    private final boolean[] active; // The blocks to run in the next round
+    private final int[] activeBlocks;
+
+    private int target = NO_TARGET;
+    private int modificationCount;
+    private int rounds;
+
+    /**
+     * Creates a flow field for a map. Nothing is built until it's given a target.
+     *
+     * @param map The map
+     */
+    public FlowField(Map map) {
+        this.map = new WeakReference<>(map);
+        this.width = map.getWidth();
+        this.height = map.getHeight();
+        this.blockCols = (width + BLOCK_SIZE - 1) / BLOCK_SIZE;
+        this.blockRows = (height + BLOCK_SIZE - 1) / BLOCK_SIZE;
+
+        int cellCount = width * height;
+        distances = new int[cellCount];
+        directions = new byte[cellCount];
+        active = new boolean[blockCols * blockRows];
+        activeBlocks = new int[blockCols * blockRows];
+        Arrays.fill(distances, UNREACHED);
+        Arrays.fill(directions, NO_DIRECTION);
+    }
+
+    /**
+     * Gets the flow field shared by everything on a map, creating it the first time it's asked for.
+     *
+     * @param map The map
+     * @return The shared flow field
+     */
+    public static FlowField of(Map map) {
+        return FIELDS.computeIfAbsent(map, FlowField::new);
+    }
+
+    /**
+     * Moves the target of the field. This only rebuilds the field if the target is on a different tile (or the map has
+     * changed) since the last call.
+     *
+     * @param targetLocation The target's location
+     */
+    public synchronized void update(Location targetLocation) {
+        int cell = targetLocation.outOfBounds(width, height) ? NO_TARGET : targetLocation.getRow() * width + targetLocation.getCol();
+
+        if (cell != target || getMap().getModificationCount() != modificationCount) {
+            rebuild(cell);
+        }
+    }
+
+    /**
+     * Gets the direction of the next step of a shortest path from a location to the target. This doesn't lock
+     * anything, so every thread reading the field has to have called update with the same target first.
+     *
+     * @param location The location (a bot's)
+     * @return The direction, or null if it's where the target is or the target can't be reached from it
+     */
+    public Location.Direction directionFrom(Location location) {
+        if (location.outOfBounds(width, height)) {
+            return null;
+        }
+
+        byte direction = directions[location.getRow() * width + location.getCol()];
+        return direction == NO_DIRECTION ? null : DIRECTIONS[direction];
+    }
+
+    /**
+     * Gets the number of moves from a location to the target. Like directionFrom, this doesn't lock anything.
+     *
+     * @param location The location
+     * @return The distance, or -1 if the target can't be reached from it
+     */
+    public int distanceFrom(Location location) {
+        if (location.outOfBounds(width, height)) {
+            return -1;
+        }
+
+        int distance = distances[location.getRow() * width + location.getCol()];
+        return distance == UNREACHED ? -1 : distance;
+    }
+
+    /**
+     * Gets how many rounds the last rebuild took, which is about how many blocks the longest path goes through.
+     *
+     * @return The number of rounds
+     */
+    public synchronized int getRounds() {
+        return rounds;
+    }
+
+    /**
+     * Finds the first step of a shortest path to a location, by moving the target of the field there. This is only
+     * cheap when everything asking is heading to the same place, which is what the field is for.
+     *
+     * @param map The map, which has to be the map this field is for
+     * @param from Where the path starts
+     * @param to Where the path ends
+     * @return The direction of the first step, or null if they're in the same place or there's no path
+     */
+    @Override
+    public synchronized Location.Direction firstStep(Map map, Location from, Location to) {
+        if (map != this.map.get()) {
+            throw new IllegalArgumentException("Error: This flow field is for a different map!");
+        }
+
+        update(to);
+        return directionFrom(from);
+    }
+
+    /**
+     * Builds the field again for a target.
+     *
+     * @param cell The target's cell index, or NO_TARGET
+     */
+    private void rebuild(int cell) {
+        Map map = getMap();
+
+        target = cell;
+        modificationCount = map.getModificationCount();
+        rounds = 0;
+
+        Arrays.fill(distances, UNREACHED);
+        if (cell == NO_TARGET || !map.isWalkable(cell)) {
+            Arrays.fill(directions, NO_DIRECTION);
+            return;
+        }
+
+        distances[cell] = 0;
+        activeBlocks[0] = blockOf(cell % width, cell / width);
+        int count = 1;
+
+        while (count > 0) {
+            rounds++;
+            if (count == 1) {
+                integrate(map, activeBlocks[0]);
+            } else {
+                IntStream.range(0, count).parallel().forEach(i -> integrate(map, activeBlocks[i]));
+            }
+
+            count = 0;
+            for (int i = 0; i < active.length; i++) {
+                if (active[i]) {
+                    active[i] = false;
+                    activeBlocks[count++] = i;
+                }
+            }
+        }
+
+        IntStream.range(0, blockCols * blockRows).parallel().forEach(this::point);
+    }
+
+    /**
+     * Runs one block for a round: takes the distances from just outside its edges, then spreads any that got shorter
+     * through the block.
+     *
+     * Every move costs the same, so this doesn't need a heap. The edge tiles that got shorter are sorted by distance,
+     * and then a breadth-first search takes whichever is shorter out of the next of them and the front of its queue.
+     * The queue's distances never go down, so that handles the tiles in order of distance just like Dijkstra would, and
+     * each tile is only reached (and queued) once.
+     *
+     * @param map The map
+     * @param block The block's index
+     */
+    private void integrate(Map map, int block) {
+        int left = (block % blockCols) * BLOCK_SIZE;
+        int top = (block / blockCols) * BLOCK_SIZE;
+        int right = Math.min(left + BLOCK_SIZE, width) - 1;
+        int bottom = Math.min(top + BLOCK_SIZE, height) - 1;
+
+        Workspace workspace = WORKSPACES.get();
+        long[] seeds = workspace.seeds;
+        int[] queue = workspace.queue;
+        int seedCount = 0;
+
+        // The target, the first time its block runs
+        if (rounds == 1 && blockOf(target % width, target / width) == block) {
+            seeds[seedCount++] = target;
+        }
+
+        // The edges, from the blocks on the other side
+        for (int col = left; col <= right; col++) {
+            seedCount = pull(map, seeds, seedCount, col, top, col, top - 1);
+            seedCount = pull(map, seeds, seedCount, col, bottom, col, bottom + 1);
+        }
+        for (int row = top; row <= bottom; row++) {
+            seedCount = pull(map, seeds, seedCount, left, row, left - 1, row);
+            seedCount = pull(map, seeds, seedCount, right, row, right + 1, row);
+        }
+        Arrays.sort(seeds, 0, seedCount);
+
+        int nextSeed = 0;
+        int head = 0;
+        int tail = 0;
+        while (nextSeed < seedCount || head < tail) {
+            int cell;
+            if (head == tail || (nextSeed < seedCount && (int) (seeds[nextSeed] >>> 32) <= distances[queue[head]])) {
+                long seed = seeds[nextSeed++];
+                cell = (int) seed;
+                if ((int) (seed >>> 32) != distances[cell]) {
+                    continue; // Reached from inside the block with a shorter distance already
+                }
+            } else {
+                cell = queue[head++];
+            }
+
+            int col = cell % width;
+            int row = cell / width;
+            if (col == left || col == right || row == top || row == bottom) {
+                wake(col, row, left, top, right, bottom);
+            }
+
+            int next = distances[cell] + 1;
+            if (row > top) {
+                tail = relax(map, queue, tail, cell - width, next);
+            }
+            if (col < right) {
+                tail = relax(map, queue, tail, cell + 1, next);
+            }
+            if (row < bottom) {
+                tail = relax(map, queue, tail, cell + width, next);
+            }
+            if (col > left) {
+                tail = relax(map, queue, tail, cell - 1, next);
+            }
+        }
+    }
+
+    /**
+     * Shortens the distance of a tile on the edge of a block, if the tile next to it on the other side of the edge has
+     * a path that's shorter.
+     *
+     * @param map The map
+     * @param seeds The tiles that have got shorter, as their distance in the high 32 bits and cell in the low 32 bits
+     * @param seedCount How many there are
+     * @param col The edge tile's column
+     * @param row The edge tile's row
+     * @param outsideCol The other tile's column
+     * @param outsideRow The other tile's row
+     * @return How many there are now
+     */
+    private int pull(Map map, long[] seeds, int seedCount, int col, int row, int outsideCol, int outsideRow) {
+        if (outsideCol < 0 || outsideRow < 0 || outsideCol >= width || outsideRow >= height) {
+            return seedCount;
+        }
+
+        int outside = distances[outsideRow * width + outsideCol];
+        int cell = row * width + col;
+        if (outside != UNREACHED && outside + 1 < distances[cell] && map.isWalkable(cell)) {
+            distances[cell] = outside + 1;
+            seeds[seedCount++] = (long) (outside + 1) << 32 | cell;
+        }
+        return seedCount;
+    }
+
+    /**
+     * Shortens the distance of a tile inside the block if it's walkable and the new distance is shorter.
+     *
+     * @param map The map
+     * @param queue The breadth-first search queue
+     * @param tail The end of the queue
+     * @param cell The tile's cell index
+     * @param distance The new distance
+     * @return The new end of the queue
+     */
+    private int relax(Map map, int[] queue, int tail, int cell, int distance) {
+        if (distance < distances[cell] && map.isWalkable(cell)) {
+            distances[cell] = distance;
+            queue[tail++] = cell;
+        }
+        return tail;
+    }
+
+    /**
+     * Makes the blocks across the edges a tile is on run in the next round, as its distance has changed.
+     *
+     * @param col The changed tile's column
+     * @param row The changed tile's row
+     * @param left The block's first column
+     * @param top The block's first row
+     * @param right The block's last column
+     * @param bottom The block's last row
+     */
+    private void wake(int col, int row, int left, int top, int right, int bottom) {
+        if (col == left && col > 0) {
+            active[blockOf(col - 1, row)] = true;
+        }
+        if (col == right && col < width - 1) {
+            active[blockOf(col + 1, row)] = true;
+        }
+        if (row == top && row > 0) {
+            active[blockOf(col, row - 1)] = true;
+        }
+        if (row == bottom && row < height - 1) {
+            active[blockOf(col, row + 1)] = true;
+        }
+    }
+
+    /**
+     * Works out the direction table for a block, from the finished distances: each tile points at the neighbour that's
+     * one move closer (the first in N, E, S, W order if there's more than one).
+     *
+     * @param block The block's index
+     */
+    private void point(int block) {
+        int left = (block % blockCols) * BLOCK_SIZE;
+        int top = (block / blockCols) * BLOCK_SIZE;
+        int right = Math.min(left + BLOCK_SIZE, width);
+        int bottom = Math.min(top + BLOCK_SIZE, height);
+
+        for (int row = top; row < bottom; row++) {
+            for (int col = left; col < right; col++) {
+                int cell = row * width + col;
+                int distance = distances[cell];
+                byte direction = NO_DIRECTION;
+
+                if (distance != UNREACHED && distance != 0) {
+                    if (row > 0 && distances[cell - width] == distance - 1) {
+                        direction = 0;
+                    } else if (col < width - 1 && distances[cell + 1] == distance - 1) {
+                        direction = 1;
+                    } else if (row < height - 1 && distances[cell + width] == distance - 1) {
+                        direction = 2;
+                    } else if (col > 0 && distances[cell - 1] == distance - 1) {
+                        direction = 3;
+                    }
+                }
+                directions[cell] = direction;
+            }
+        }
+    }
+
+    /**
+     * Gets the index of the block a tile is in.
+     *
+     * @param col The tile's column
+     * @param row The tile's row
+     * @return The block's index
+     */
+    private int blockOf(int col, int row) {
+        return (row / BLOCK_SIZE) * blockCols + col / BLOCK_SIZE;
+    }
+
+    /**
+     * Gets the map this field is for.
+     *
+     * @return The map
+     */
+    private Map getMap() {
+        Map current = map.get();
+        if (current == null) {
+            throw new IllegalStateException("Error: The map for this flow field no longer exists!");
+        }
+        return current;
+    }
+
+    /**
+     * The arrays a thread needs to run a block, so they're only allocated once per thread.
+     */
+    private static class Workspace {
+        private final long[] seeds = new long[4 * BLOCK_SIZE + 1];
+        private final int[] queue = new int[BLOCK_SIZE * BLOCK_SIZE];
+    }
+}
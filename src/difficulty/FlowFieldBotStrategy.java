@@ -0,0 +1,83 @@
+package difficulty;
+
+import main.Location;
+import map.Map;
+import player.BotPlayer;
+
+/**
+ * The difficulty for hordes of bots
+ * Like Godlike, the bot always knows where the player is and follows the shortest path around the walls. But every
+ * bot on the map reads its move from one shared difficulty.FlowField, which is rebuilt (in parallel) only when the
+ * player moves to a different tile. The field is brought up to date before the bots decide (see prepareTurn), so each
+ * bot's turn is a single lookup, and thousands of bots (see -Ddod.bots) cost hardly more a turn than one.
+ */
+public class FlowFieldBotStrategy implements BotStrategy {
+
+    private BotPlayer botPlayer;
+
+    private FlowField field;
+    private boolean prepared; // If the field has been brought up to date for this turn
+
+    public FlowFieldBotStrategy(BotPlayer botPlayer) {
+        this.botPlayer = botPlayer;
+    }
+
+    /**
+     * No need for this method here since it's always moving towards the Human.
+     *
+     * @return null
+     */
+    @Override
+    public Location.Direction nextDirection() {
+        return null;
+    }
+
+    /**
+     * Gets the map's shared flow field, so it isn't looked up every turn.
+     *
+     * @param map The map the game is played on
+     */
+    @Override
+    public void prepare(Map map) {
+        field = FlowField.of(map);
+    }
+
+    /**
+     * Brings the map's flow field up to date with where the human is. This only rebuilds it for the first bot after
+     * the human has moved, and it's done before any bot decides, so the rebuild can use every core.
+     *
+     * @param map The entire map
+     * @param humanLocation The humans location
+     */
+    @Override
+    public void prepareTurn(Map map, Location humanLocation) {
+        if (field == null) {
+            prepare(map);
+        }
+
+        field.update(humanLocation);
+        prepared = true;
+    }
+
+    /**
+     * Decides the next move by reading it from the map's flow field.
+     * If the player can't be reached, it just heads straight for them.
+     *
+     * @param map The map
+     * @param humanLocation Human's main.Location
+     * @return The direction to move in
+     */
+    @Override
+    public Location.Direction decideMove(Map map, Location humanLocation) {
+        if (!prepared) { // Not deciding through player.BotGroup, which brings the field up to date first
+            prepareTurn(map, humanLocation);
+        }
+        prepared = false;
+
+        Location.Direction direction = field.directionFrom(botPlayer.getLocation());
+        if (direction == null) {
+            direction = botPlayer.getLocation().getDirectionTo(humanLocation);
+        }
+        return direction;
+    }
+}
@@ -7,13 +7,32 @@ import player.BotPlayer;
 /**
  * The hardest difficulty
  * The bot will always move towards the player, irrespective of whether the bot can see the player with LOOK or not.
+ * It follows the shortest path around the walls, so it can't be lost behind one. By default the path is read from the
+ * map's shared difficulty.DistanceField, so any number of Godlike bots only flood the map once a turn between them, but
+ * another difficulty.PathFinder.Algorithm can be chosen. The field is flooded as far as the bot before the bots decide
+ * (see prepareTurn), so deciding only reads it, without waiting for the other bots.
  */
 public class GodlikeBotStrategy implements BotStrategy {
 
     private BotPlayer botPlayer;
 
+    private final PathFinder.Algorithm algorithm;
+    private PathFinder pathFinder;
+    private boolean prepared; // If the distance field has been brought up to date for this turn
+
     public GodlikeBotStrategy(BotPlayer botPlayer) {
+        this(botPlayer, PathFinder.Algorithm.fromProperty(PathFinder.Algorithm.FIELD));
+    }
+
+    /**
+     * Creates the strategy with a particular path finding algorithm.
+     *
+     * @param botPlayer The bot
+     * @param algorithm The path finding algorithm
+     */
+    public GodlikeBotStrategy(BotPlayer botPlayer, PathFinder.Algorithm algorithm) {
         this.botPlayer = botPlayer;
+        this.algorithm = algorithm;
     }
 
     /**
@@ -27,13 +46,61 @@ public class GodlikeBotStrategy implements BotStrategy {
     }
 
     /**
-     * Performs the next move which is always moving towards the player.
+     * Creates the path finder, so a shared one (like the graph for HIERARCHICAL) is built before the first turn.
+     *
+     * @param map The map the game is played on
+     */
+    @Override
+    public void prepare(Map map) {
+        pathFinder = algorithm.create(map);
+    }
+
+    /**
+     * Brings the shared distance field up to date with where the human is, and floods it as far as the bot, if that's
+     * the path finder. Other path finders search when the bot decides.
+     *
+     * @param map The entire map
+     * @param humanLocation The humans location
+     */
+    @Override
+    public void prepareTurn(Map map, Location humanLocation) {
+        if (pathFinder == null) {
+            pathFinder = algorithm.create(map);
+        }
+
+        if (pathFinder instanceof DistanceField) {
+            DistanceField field = (DistanceField) pathFinder;
+            field.update(humanLocation);
+            field.floodTo(botPlayer.getLocation());
+            prepared = true;
+        }
+    }
+
+    /**
+     * Decides the next move which is always the next step of the shortest path to the player.
+     * If the player can't be reached, it just heads straight for them.
      *
      * @param map The map
      * @param humanLocation Human's main.Location
+     * @return The direction to move in
      */
     @Override
-    public void nextMove(Map map, Location humanLocation) {
-        botPlayer.move(map, botPlayer.getLocation().getDirectionTo(humanLocation));
+    public Location.Direction decideMove(Map map, Location humanLocation) {
+        if (pathFinder == null) {
+            pathFinder = algorithm.create(map);
+        }
+
+        Location.Direction direction;
+        if (prepared) { // Only read, so the bots don't wait for each other
+            prepared = false;
+            direction = ((DistanceField) pathFinder).directionFrom(botPlayer.getLocation());
+        } else {
+            direction = pathFinder.firstStep(map, botPlayer.getLocation(), humanLocation);
+        }
+
+        if (direction == null) {
+            direction = botPlayer.getLocation().getDirectionTo(humanLocation);
+        }
+        return direction;
     }
 }
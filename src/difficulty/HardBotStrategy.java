@@ -1,26 +1,56 @@
 package difficulty;
 
 import main.DungeonsOfDoom;
+import main.GameRandom;
 import main.Location;
+import main.StateReader;
+import main.StateWriter;
 import map.Map;
 import player.BotPlayer;
 
-import java.util.Random;
-
 /**
  * The Hard Bot Setting, which tracks down the player if they've been seen with 100% accuracy.
+ * The player is only seen if they're within the LOOK radius with no wall in the way (see difficulty.FieldOfView).
+ * It follows the shortest path around the walls (see difficulty.PathFinder) to where it last saw the player, using A*
+ * unless another difficulty.PathFinder.Algorithm is chosen.
  */
 public class HardBotStrategy implements BotStrategy {
 
     private int lookTurns;
 
     private BotPlayer botPlayer;
+    private final GameRandom random;
 
     private boolean seen;
     private Location currentHumanLocation;
 
-    public HardBotStrategy(BotPlayer botPlayer) {
+    private final PathFinder.Algorithm algorithm;
+    private PathFinder pathFinder;
+    private Map map;
+
+    private final FieldOfView fieldOfView = new FieldOfView(DungeonsOfDoom.LOOK_RADIUS);
+
+    /**
+     * Creates the strategy for a bot, with the default path finding algorithm.
+     *
+     * @param botPlayer The bot
+     * @param random The bot's split of the game's random numbers
+     */
+    public HardBotStrategy(BotPlayer botPlayer, GameRandom random) {
+        this(botPlayer, PathFinder.Algorithm.fromProperty(PathFinder.Algorithm.ASTAR), random);
+    }
+
+    /**
+     * Creates the strategy with a particular path finding algorithm.
+     *
+     * @param botPlayer The bot
+     * @param algorithm The path finding algorithm
+     * @param random The bot's split of the game's random numbers
+     */
+    public HardBotStrategy(BotPlayer botPlayer, PathFinder.Algorithm algorithm, GameRandom random) {
         this.botPlayer = botPlayer;
+        this.algorithm = algorithm;
+        this.random = random;
     }
 
     /**
@@ -44,29 +74,20 @@ public class HardBotStrategy implements BotStrategy {
      * @return A random direction
      */
     private Location.Direction move() {
-        Random random = new Random();
-        switch(random.nextInt(4)) {
-            case 0:
-                return Location.Direction.N;
-            case 1:
-                return Location.Direction.E;
-            case 2:
-                return Location.Direction.S;
-            case 3:
-                return Location.Direction.W;
-            default:
-                throw new IllegalStateException("Should never be called");
-        }
+        return random.nextDirection();
     }
 
     /**
-     * Finds the next direction with 100% accuracy.
+     * Finds the next step of the shortest path to where the player was seen.
+     * Once it gets there (or if it can't get there), it goes back to moving randomly.
      *
      * @return The move towards the player
      */
     private Location.Direction moveTowardsPlayer() {
-        if (botPlayer.getLocation() != currentHumanLocation) {
-            return botPlayer.getLocation().getDirectionTo(currentHumanLocation);
+        Location.Direction direction = map != null ? pathFinder.firstStep(map, botPlayer.getLocation(), currentHumanLocation) : null;
+
+        if (direction != null) {
+            return direction;
         } else {
             seen = false;
             return move();
@@ -74,21 +95,70 @@ public class HardBotStrategy implements BotStrategy {
     }
 
     /**
-     * Executes the next move, either LOOK every 4 turns or moves in the next direction.
+     * Creates the path finder, so a shared one (like the graph for HIERARCHICAL) is built before the first turn.
+     *
+     * @param map The map the game is played on
+     */
+    @Override
+    public void prepare(Map map) {
+        pathFinder = algorithm.create(map);
+    }
+
+    /**
+     * Decides the next move, either LOOK every 4 turns or moves in the next direction.
      *
      * @param map The entire map
      * @param humanLocation Human main.Location
+     * @return The direction to move in, or null on a LOOK turn
      */
     @Override
-    public void nextMove(Map map, Location humanLocation) {
+    public Location.Direction decideMove(Map map, Location humanLocation) {
+        if (pathFinder == null) {
+            pathFinder = algorithm.create(map);
+        }
+        this.map = map;
+
+        Location.Direction direction = null;
         if (lookTurns % 4 == 0) {
-            if (botPlayer.getLocation().isNear(humanLocation, DungeonsOfDoom.LOOK_RADIUS)) {
+            if (fieldOfView.canSee(map, botPlayer.getLocation(), humanLocation)) {
                 seen = true;
                 currentHumanLocation = humanLocation;
             }
         } else {
-            botPlayer.move(map, nextDirection());
+            direction = nextDirection();
         }
         lookTurns++;
+        return direction;
+    }
+
+    /**
+     * Writes how many turns it's had (which says when it next LOOKs), if it's seen the human and where, and where its
+     * random numbers have got to. The path finder isn't written, as it's only there to save work.
+     *
+     * @param out Where to write it
+     */
+    @Override
+    public void writeState(StateWriter out) {
+        out.writeVarint(lookTurns);
+        out.writeBoolean(seen);
+        out.writeLocation(currentHumanLocation);
+        random.writeState(out);
+    }
+
+    /**
+     * Carries on from what writeState wrote.
+     *
+     * @param in Where to read it from
+     */
+    @Override
+    public void readState(StateReader in) {
+        lookTurns = in.readVarint();
+        seen = in.readBoolean();
+        currentHumanLocation = in.readLocation();
+        random.readState(in);
+
+        if (seen && currentHumanLocation == null) {
+            throw new IllegalArgumentException("Error: The snapshot's hard bot is invalid!");
+        }
     }
 }
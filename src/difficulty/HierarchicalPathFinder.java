@@ -0,0 +1,428 @@
+package difficulty;
+
+import main.Location;
+import map.Map;
+
+import java.util.Arrays;
+
+/**
+ * Finds paths with HPA* (hierarchical path-finding A*), for maps so big that even A* or Jump Point Search take too long
+ * to run every turn.
+ *
+ * Instead of searching the tiles, it searches the map's difficulty.ClusterGraph: the entrances between clusters, and
+ * the distances between entrances of the same cluster, which are worked out once when the map is loaded. The start and
+ * the target are joined to the graph with a breadth-first search of just their own cluster each, then A* runs over the
+ * entrances. So a search only touches two clusters' tiles plus a few nodes per cluster between them, however big the
+ * map is. Only the first part of the path (to the first entrance, inside the start's cluster) is turned back into a
+ * move, since that's all a bot needs each turn.
+ *
+ * The price is that paths aren't always the shortest: they have to go through the entrances' transition tiles, which
+ * usually adds a few percent (see difficulty.PathFindingBenchmark). Like the other path finders, the working arrays are
+ * reused between searches with generation stamps.
+ */
+public class HierarchicalPathFinder implements PathFinder {
+
+    private static final Location.Direction[] DIRECTIONS = Location.Direction.values(); // N, E, S, W
+
+    private final IntMinHeap open = new IntMinHeap();
+
+    private ClusterGraph graph;
+    private Map map;
+    private int width;
+    private int height;
+
+    private long[] costs = new long[0]; // Generation in the high 32 bits, cost in the low 32 bits, indexed by node
+    private int[] parents = new int[0];
+    private long[] startDistances = new long[0]; // Within the start's cluster, with the generation stamp
+    private byte[] startTowards = new byte[0]; // Index of the direction each tile was reached from the start in
+    private long[] targetDistances = new long[0]; // Within the target's cluster, with the generation stamp
+    private int[] queue = new int[0];
+    private int generation;
+
+    private int start;
+    private int target;
+    private int startCluster;
+    private int targetCluster;
+    private int startNode; // The ids standing in for the start and target in the abstract search
+    private int targetNode;
+
+    private int nodesExpanded;
+    private int pathLength = -1;
+
+    /**
+     * Creates a path finder, which gets the graph of a map the first time it searches on it.
+     */
+    public HierarchicalPathFinder() {
+    }
+
+    /**
+     * Creates a path finder for a map, building the map's shared graph now (if it hasn't been already) rather than
+     * in its first search.
+     *
+     * @param map The map it will be used on
+     */
+    public HierarchicalPathFinder(Map map) {
+        useMap(map);
+    }
+
+    /**
+     * Finds the first step of a (nearly) shortest path from one location to another.
+     *
+     * @param map The map
+     * @param from Where the path starts
+     * @param to Where the path ends
+     * @return The direction of the first step, or null if they're in the same place or there's no path
+     */
+    @Override
+    public Location.Direction firstStep(Map map, Location from, Location to) {
+        pathLength = -1;
+        nodesExpanded = 0;
+
+        if (from.outOfBounds(map.getWidth(), map.getHeight()) || to.outOfBounds(map.getWidth(), map.getHeight())) {
+            return null;
+        }
+        if (from.equals(to)) {
+            pathLength = 0;
+            return null;
+        }
+
+        useMap(map);
+        graph.getLock().readLock().lock();
+        try {
+            start = from.getRow() * width + from.getCol();
+            target = to.getRow() * width + to.getCol();
+            if (!map.isWalkable(target)) {
+                return null;
+            }
+            startCluster = graph.clusterOf(start);
+            targetCluster = graph.clusterOf(target);
+
+            prepare();
+            flood(start, startCluster, startDistances, true);
+            flood(target, targetCluster, targetDistances, false);
+
+            if (!search()) {
+                return null;
+            }
+            return refineFirstStep();
+        } finally {
+            graph.getLock().readLock().unlock();
+        }
+    }
+
+    /**
+     * Gets how many abstract nodes were expanded by the last search.
+     *
+     * @return The number of nodes expanded
+     */
+    public int getNodesExpanded() {
+        return nodesExpanded;
+    }
+
+    /**
+     * Gets the number of moves in the path found by the last search, which may be a little longer than the shortest.
+     *
+     * @return The path length, or -1 if there wasn't a path
+     */
+    public int getPathLength() {
+        return pathLength;
+    }
+
+    /**
+     * Runs A* over the abstract graph, from the start's node to the target's.
+     *
+     * @return If the target can be reached
+     */
+    private boolean search() {
+        open.clear();
+        long stamp = (long) generation << 32;
+        costs[startNode] = stamp;
+        open.push(priority(0, heuristic(start)), startNode);
+
+        while (!open.isEmpty()) {
+            long priority = open.peekPriority();
+            int node = open.pop();
+            int cost = (int) costs[node];
+
+            if ((int) (priority >>> 32) - (int) priority > cost) {
+                continue; // Stale: the node has been reached more cheaply since this was pushed
+            }
+            if (node == targetNode) {
+                pathLength = cost;
+                return true;
+            }
+            nodesExpanded++;
+
+            if (node == startNode) {
+                for (int next : graph.nodesIn(startCluster)) {
+                    int distance = localDistance(startDistances, startCluster, graph.cellOf(next));
+                    if (distance >= 0) {
+                        relax(next, node, cost + distance, stamp);
+                    }
+                }
+                if (startCluster == targetCluster) {
+                    int distance = localDistance(startDistances, startCluster, target);
+                    if (distance >= 0) {
+                        relax(targetNode, node, cost + distance, stamp);
+                    }
+                }
+                continue;
+            }
+
+            relax(graph.partnerOf(node), node, cost + 1, stamp);
+
+            int cluster = graph.clusterOfNode(node);
+            int[] nodes = graph.nodesIn(cluster);
+            int[] distances = graph.distancesIn(cluster);
+            int row = graph.indexOf(node) * nodes.length;
+            for (int i = 0; i < nodes.length; i++) {
+                if (distances[row + i] >= 0) { // Can be 0, for two nodes on the same corner tile
+                    relax(nodes[i], node, cost + distances[row + i], stamp);
+                }
+            }
+
+            if (cluster == targetCluster) {
+                int distance = localDistance(targetDistances, targetCluster, graph.cellOf(node));
+                if (distance >= 0) {
+                    relax(targetNode, node, cost + distance, stamp);
+                }
+            }
+        }
+        return false;
+    }
+
+    /**
+     * Adds a node to the open set if this is the cheapest way found to it so far.
+     *
+     * @param node The node
+     * @param parent The node it's reached from
+     * @param cost The cost of reaching it
+     * @param stamp The current generation, shifted into the high bits
+     */
+    private void relax(int node, int parent, int cost, long stamp) {
+        long known = costs[node];
+        if ((known & ~0xFFFFFFFFL) == stamp && (int) known <= cost) {
+            return;
+        }
+
+        costs[node] = stamp | cost;
+        parents[node] = parent;
+        open.push(priority(cost, heuristic(node == targetNode ? target : graph.cellOf(node))), node);
+    }
+
+    /**
+     * Turns the first part of the abstract path back into a move. That's the path to the first node that isn't on the
+     * start's tile, which is either inside the start's cluster (so the start's flood knows the way), or one move
+     * across the border from the start.
+     *
+     * @return The direction of the first step
+     */
+    private Location.Direction refineFirstStep() {
+        int first = targetNode;
+        for (int node = targetNode; node != startNode; node = parents[node]) {
+            if (cellOfNode(node) != start) {
+                first = node;
+            }
+        }
+
+        int cell = cellOfNode(first);
+        if (graph.clusterOf(cell) != startCluster) {
+            return directionBetween(start, cell);
+        }
+
+        // Walk back through the start's flood to the step just after the start
+        int left = graph.clusterCol(startCluster);
+        int top = graph.clusterRow(startCluster);
+        int clusterWidth = Math.min(graph.getClusterSize(), width - left);
+        while (true) {
+            int local = (cell / width - top) * clusterWidth + (cell % width - left);
+            int direction = startTowards[local];
+            int previous = cell - offset(direction);
+            if (previous == start) {
+                return DIRECTIONS[direction];
+            }
+            cell = previous;
+        }
+    }
+
+    /**
+     * Runs a breadth-first search from a tile, without leaving its cluster.
+     *
+     * @param from The tile's cell index
+     * @param cluster The tile's cluster
+     * @param distances Where to store the distances
+     * @param keepDirections If the direction each tile was reached in should be stored in startTowards
+     */
+    private void flood(int from, int cluster, long[] distances, boolean keepDirections) {
+        int left = graph.clusterCol(cluster);
+        int top = graph.clusterRow(cluster);
+        int clusterWidth = Math.min(graph.getClusterSize(), width - left);
+        int clusterHeight = Math.min(graph.getClusterSize(), height - top);
+        long stamp = (long) generation << 32;
+
+        int head = 0;
+        int tail = 0;
+        int fromLocal = (from / width - top) * clusterWidth + (from % width - left);
+        distances[fromLocal] = stamp;
+        queue[tail++] = fromLocal;
+
+        while (head < tail) {
+            int local = queue[head++];
+            int col = local % clusterWidth;
+            int row = local / clusterWidth;
+            long next = stamp | ((int) distances[local] + 1);
+
+            for (int direction = 0; direction < DIRECTIONS.length; direction++) {
+                int nextCol = col + (direction == 1 ? 1 : direction == 3 ? -1 : 0);
+                int nextRow = row + (direction == 0 ? -1 : direction == 2 ? 1 : 0);
+                if (nextCol < 0 || nextRow < 0 || nextCol >= clusterWidth || nextRow >= clusterHeight) {
+                    continue;
+                }
+
+                int nextLocal = nextRow * clusterWidth + nextCol;
+                if ((distances[nextLocal] & ~0xFFFFFFFFL) != stamp && map.isWalkable((top + nextRow) * width + left + nextCol)) {
+                    distances[nextLocal] = next;
+                    if (keepDirections) {
+                        startTowards[nextLocal] = (byte) direction;
+                    }
+                    queue[tail++] = nextLocal;
+                }
+            }
+        }
+    }
+
+    /**
+     * Gets a tile's distance from one of the floods.
+     *
+     * @param distances The flood's distances
+     * @param cluster The cluster the flood was in
+     * @param cell The tile's cell index, which has to be in the cluster
+     * @return The distance, or -1 if the flood didn't reach it
+     */
+    private int localDistance(long[] distances, int cluster, int cell) {
+        int left = graph.clusterCol(cluster);
+        int top = graph.clusterRow(cluster);
+        int clusterWidth = Math.min(graph.getClusterSize(), width - left);
+        long distance = distances[(cell / width - top) * clusterWidth + (cell % width - left)];
+        return (distance & ~0xFFFFFFFFL) == (long) generation << 32 ? (int) distance : -1;
+    }
+
+    /**
+     * Gets the tile a node of the search is on, including the start and target's nodes.
+     *
+     * @param node The node id
+     * @return The cell index
+     */
+    private int cellOfNode(int node) {
+        if (node == startNode) {
+            return start;
+        }
+        return node == targetNode ? target : graph.cellOf(node);
+    }
+
+    /**
+     * Switches to a map's shared graph, if it isn't the one being used already.
+     *
+     * @param map The map
+     */
+    private void useMap(Map map) {
+        if (map != this.map) {
+            this.map = map;
+            this.graph = ClusterGraph.of(map);
+            this.width = map.getWidth();
+            this.height = map.getHeight();
+        }
+    }
+
+    /**
+     * Makes sure the arrays cover the graph and a cluster, and starts a new generation so the last search's entries
+     * don't count.
+     */
+    private void prepare() {
+        int nodeCount = graph.getNodeCapacity() + 2;
+        startNode = nodeCount - 2;
+        targetNode = nodeCount - 1;
+
+        if (costs.length < nodeCount) {
+            costs = new long[nodeCount + nodeCount / 2]; // Spare room, as changes to the map can add nodes
+            parents = new int[costs.length];
+            generation = 0;
+        }
+
+        int clusterCells = graph.getClusterSize() * graph.getClusterSize();
+        if (startDistances.length < clusterCells) {
+            startDistances = new long[clusterCells];
+            startTowards = new byte[clusterCells];
+            targetDistances = new long[clusterCells];
+            queue = new int[clusterCells];
+            generation = 0;
+        }
+
+        generation++;
+        if (generation == 1 || generation == Integer.MAX_VALUE) { // New arrays, or after billions of searches
+            Arrays.fill(costs, 0);
+            Arrays.fill(startDistances, 0);
+            Arrays.fill(targetDistances, 0);
+            generation = 1;
+        }
+    }
+
+    /**
+     * Packs f (cost + heuristic) and the heuristic into a priority, so nodes with the same f are broken in favour of
+     * the one closest to the target.
+     *
+     * @param cost The cost so far
+     * @param heuristic The estimated cost to the target
+     * @return The priority
+     */
+    private static long priority(int cost, int heuristic) {
+        return ((long) (cost + heuristic) << 32) | heuristic;
+    }
+
+    /**
+     * Gets the Manhattan distance from a tile to the target.
+     *
+     * @param cell The tile's cell index
+     * @return The number of moves it would take with no walls in the way
+     */
+    private int heuristic(int cell) {
+        return Math.abs(cell % width - target % width) + Math.abs(cell / width - target / width);
+    }
+
+    /**
+     * Gets the direction of a move between two neighbouring tiles.
+     *
+     * @param from The cell index moved from
+     * @param to The cell index moved to
+     * @return The direction
+     */
+    private Location.Direction directionBetween(int from, int to) {
+        if (to == from - width) {
+            return Location.Direction.N;
+        } else if (to == from + 1) {
+            return Location.Direction.E;
+        } else if (to == from + width) {
+            return Location.Direction.S;
+        }
+        return Location.Direction.W;
+    }
+
+    /**
+     * Gets how far a cell index moves for a step in a direction.
+     *
+     * @param direction The index of the direction (N, E, S, W)
+     * @return The change in cell index
+     */
+    private int offset(int direction) {
+        switch (direction) {
+            case 0:
+                return -width;
+            case 1:
+                return 1;
+            case 2:
+                return width;
+            default:
+                return -1;
+        }
+    }
+}
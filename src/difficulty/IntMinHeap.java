@@ -0,0 +1,107 @@
+package difficulty;
+
+import java.util.Arrays;
+
+/**
+ * A binary min-heap of int values (cell indexes) ordered by a long priority, kept in two plain arrays so nothing is
+ * boxed or allocated when pushing and popping. The arrays only grow, so a heap reused for every search stops
+ * allocating once it's big enough.
+ *
+ * There's no decrease-key. A search that finds a better route to a cell just pushes it again, and skips the old entry
+ * when it's popped.
+ */
+class IntMinHeap {
+
+    private static final int INITIAL_CAPACITY = 64;
+
+    private long[] priorities = new long[INITIAL_CAPACITY];
+    private int[] values = new int[INITIAL_CAPACITY];
+    private int size;
+
+    /**
+     * Adds a value to the heap.
+     *
+     * @param priority The priority, where the lowest comes out first
+     * @param value The value
+     */
+    void push(long priority, int value) {
+        if (size == priorities.length) {
+            priorities = Arrays.copyOf(priorities, size * 2);
+            values = Arrays.copyOf(values, size * 2);
+        }
+
+        int index = size++;
+        while (index > 0) { // Sift up
+            int parent = (index - 1) >>> 1;
+            if (priorities[parent] <= priority) {
+                break;
+            }
+            priorities[index] = priorities[parent];
+            values[index] = values[parent];
+            index = parent;
+        }
+        priorities[index] = priority;
+        values[index] = value;
+    }
+
+    /**
+     * Removes the value with the lowest priority.
+     *
+     * @return The value
+     */
+    int pop() {
+        if (size == 0) {
+            throw new IllegalStateException("Error: The heap is empty!");
+        }
+
+        int top = values[0];
+        long priority = priorities[--size];
+        int value = values[size];
+
+        int index = 0;
+        int half = size >>> 1;
+        while (index < half) { // Sift down
+            int child = 2 * index + 1;
+            if (child + 1 < size && priorities[child + 1] < priorities[child]) {
+                child++;
+            }
+            if (priority <= priorities[child]) {
+                break;
+            }
+            priorities[index] = priorities[child];
+            values[index] = values[child];
+            index = child;
+        }
+        priorities[index] = priority;
+        values[index] = value;
+        return top;
+    }
+
+    /**
+     * Gets the priority of the value that will be popped next.
+     *
+     * @return The lowest priority
+     */
+    long peekPriority() {
+        if (size == 0) {
+            throw new IllegalStateException("Error: The heap is empty!");
+        }
+        return priorities[0];
+    }
+
+    /**
+     * Gets if there's nothing left in the heap.
+     *
+     * @return If it's empty
+     */
+    boolean isEmpty() {
+        return size == 0;
+    }
+
+    /**
+     * Removes everything from the heap, keeping the arrays for next time.
+     */
+    void clear() {
+        size = 0;
+    }
+}
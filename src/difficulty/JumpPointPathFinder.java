@@ -0,0 +1,432 @@
+package difficulty;
+
+import main.Location;
+import map.Map;
+import map.MapListener;
+
+import java.util.Arrays;
+
+/**
+ * Finds shortest paths with Jump Point Search, which is much faster than plain A* on big open areas.
+ *
+ * In an open room, A* expands huge numbers of tiles that lead to paths of the same length as each other. Jump Point
+ * Search skips over them: from each tile it only carries on in a straight line (jumping) until it hits a wall, the
+ * target, or a tile where a wall next to the line ends (a forced neighbour, where a shorter path could turn off). Only
+ * those jump points go into the open set. This is the 4-connected version (the bot can't move diagonally), using the
+ * same rules as PathFinding.js's never-move-diagonally finder: a vertical jump also stops at any tile where a
+ * horizontal jump to either side would find a jump point. The paths are the same length as difficulty.AStarPathFinder's.
+ *
+ * The walls are kept as one bitset per row (64 tiles per long, each row padded to a whole number of longs), so a
+ * horizontal jump tests 64 tiles at a time: it builds a mask of every tile in a word where the jump would stop (walls,
+ * forced neighbours from the rows above and below, and the target) and takes the first one with a bit scan. The
+ * bitset is built once per map, and kept up to date through map.MapListener. Like A*, the costs and parents are
+ * kept once per thread rather than once per path finder, and reused between searches with generation stamps.
+ */
+public class JumpPointPathFinder implements PathFinder, MapListener {
+
+    // Each thread's working arrays, for whichever path finder it's running a search for
+    private static final ThreadLocal<Workspace> WORKSPACES = ThreadLocal.withInitial(Workspace::new);
+
+    private Map map;
+    private int width;
+    private int height;
+    private int wordsPerRow;
+    private long[] walkable = new long[0];
+
+    private int target;
+    private int targetCol;
+    private int targetRow;
+
+    private int nodesExpanded;
+    private int pathLength = -1;
+
+    /**
+     * Finds the first step of a shortest path from one location to another.
+     *
+     * @param map The map
+     * @param from Where the path starts
+     * @param to Where the path ends
+     * @return The direction of the first step, or null if they're in the same place or there's no path
+     */
+    @Override
+    public Location.Direction firstStep(Map map, Location from, Location to) {
+        pathLength = -1;
+        nodesExpanded = 0;
+
+        if (from.outOfBounds(map.getWidth(), map.getHeight()) || to.outOfBounds(map.getWidth(), map.getHeight())) {
+            return null;
+        }
+
+        useMap(map);
+        int start = from.getRow() * width + from.getCol();
+        target = to.getRow() * width + to.getCol();
+        targetCol = to.getCol();
+        targetRow = to.getRow();
+
+        if (start == target) {
+            pathLength = 0;
+            return null;
+        }
+        Workspace workspace = WORKSPACES.get();
+        if (!search(workspace, start)) {
+            return null;
+        }
+
+        // Walk back through the jump points to the first one after the start, which is in a straight line from it
+        int[] parents = workspace.parents;
+        int cell = target;
+        while (parents[cell] != start) {
+            cell = parents[cell];
+        }
+
+        int col = cell % width;
+        int row = cell / width;
+        if (row == from.getRow()) {
+            return col > from.getCol() ? Location.Direction.E : Location.Direction.W;
+        }
+        return row > from.getRow() ? Location.Direction.S : Location.Direction.N;
+    }
+
+    /**
+     * Gets how many jump points were expanded by the last search.
+     *
+     * @return The number of jump points expanded
+     */
+    public int getNodesExpanded() {
+        return nodesExpanded;
+    }
+
+    /**
+     * Gets the number of moves in the path found by the last search.
+     *
+     * @return The path length, or -1 if there wasn't a path
+     */
+    public int getPathLength() {
+        return pathLength;
+    }
+
+    /**
+     * Keeps the wall bits up to date when a tile changes.
+     *
+     * @param map The map that changed
+     * @param col The column of the tile
+     * @param row The row of the tile
+     */
+    @Override
+    public void tileChanged(Map map, int col, int row) {
+        if (map == this.map) {
+            setWalkable(col, row, map.isWalkable(row * width + col));
+        }
+    }
+
+    /**
+     * Runs A* over the jump points from the start until the target is reached.
+     *
+     * @param workspace The thread's working arrays
+     * @param start The start's cell index
+     * @return If the target can be reached
+     */
+    private boolean search(Workspace workspace, int start) {
+        workspace.prepare(width * height);
+        IntMinHeap open = workspace.open;
+        long[] costs = workspace.costs;
+        int[] parents = workspace.parents;
+        open.clear();
+
+        long stamp = (long) workspace.generation << 32;
+        costs[start] = stamp;
+        parents[start] = -1;
+        open.push(priority(0, heuristic(start % width, start / width)), start);
+
+        while (!open.isEmpty()) {
+            long priority = open.peekPriority();
+            int cell = open.pop();
+            int cost = (int) costs[cell];
+
+            if ((int) (priority >>> 32) - (int) priority > cost) {
+                continue; // Stale: the cell has been reached more cheaply since this was pushed
+            }
+            if (cell == target) {
+                pathLength = cost;
+                return true;
+            }
+            nodesExpanded++;
+
+            int col = cell % width;
+            int row = cell / width;
+            int dx = 0;
+            int dy = 0;
+            if (parents[cell] >= 0) {
+                dx = Integer.signum(col - parents[cell] % width);
+                dy = Integer.signum(row - parents[cell] / width);
+            }
+
+            // Pruned neighbours: carry straight on, or turn off to either side
+            if (dx != 0) {
+                addJumpPoint(workspace, cell, cost, col, row - 1, 0, -1, stamp);
+                addJumpPoint(workspace, cell, cost, col, row + 1, 0, 1, stamp);
+                addJumpPoint(workspace, cell, cost, col + dx, row, dx, 0, stamp);
+            } else if (dy != 0) {
+                addJumpPoint(workspace, cell, cost, col - 1, row, -1, 0, stamp);
+                addJumpPoint(workspace, cell, cost, col + 1, row, 1, 0, stamp);
+                addJumpPoint(workspace, cell, cost, col, row + dy, 0, dy, stamp);
+            } else { // The start has no parent, so every direction is tried
+                addJumpPoint(workspace, cell, cost, col, row - 1, 0, -1, stamp);
+                addJumpPoint(workspace, cell, cost, col + 1, row, 1, 0, stamp);
+                addJumpPoint(workspace, cell, cost, col, row + 1, 0, 1, stamp);
+                addJumpPoint(workspace, cell, cost, col - 1, row, -1, 0, stamp);
+            }
+        }
+        return false;
+    }
+
+    /**
+     * Jumps from a neighbour of an expanded tile, and adds the jump point it finds (if any) to the open set.
+     *
+     * @param workspace The thread's working arrays
+     * @param cell The expanded tile
+     * @param cost The cost of the expanded tile
+     * @param col The neighbour's column
+     * @param row The neighbour's row
+     * @param dx The horizontal direction of the jump (-1, 0 or 1)
+     * @param dy The vertical direction of the jump (-1, 0 or 1)
+     * @param stamp The current generation, shifted into the high bits
+     */
+    private void addJumpPoint(Workspace workspace, int cell, int cost, int col, int row, int dx, int dy, long stamp) {
+        int jumpPoint = dx != 0 ? jumpHorizontal(col, row, dx) : jumpVertical(col, row, dy);
+        if (jumpPoint < 0) {
+            return;
+        }
+
+        int jumpCol = jumpPoint % width;
+        int jumpRow = jumpPoint / width;
+        int nextCost = cost + Math.abs(jumpCol - cell % width) + Math.abs(jumpRow - cell / width);
+
+        long known = workspace.costs[jumpPoint];
+        if ((known & ~0xFFFFFFFFL) == stamp && (int) known <= nextCost) {
+            return; // Already found at least as good a route there
+        }
+
+        workspace.costs[jumpPoint] = stamp | nextCost;
+        workspace.parents[jumpPoint] = cell;
+        workspace.open.push(priority(nextCost, heuristic(jumpCol, jumpRow)), jumpPoint);
+    }
+
+    /**
+     * Jumps along a row from a tile, 64 tiles at a time.
+     *
+     * @param col The column to start at (the first tile that's checked)
+     * @param row The row
+     * @param dx The direction, 1 (E) or -1 (W)
+     * @return The cell index of the jump point, or -1 if it hits a wall first
+     */
+    private int jumpHorizontal(int col, int row, int dx) {
+        if (col < 0 || col >= width || row < 0 || row >= height) {
+            return -1;
+        }
+
+        int rowStart = row * wordsPerRow;
+        int above = row > 0 ? rowStart - wordsPerRow : -1;
+        int below = row < height - 1 ? rowStart + wordsPerRow : -1;
+        int endCol = row == targetRow ? targetCol : -1;
+
+        if (dx > 0) {
+            for (int word = col >>> 6; word < wordsPerRow; word++) {
+                long floor = walkable[rowStart + word];
+                long up = bits(above, word);
+                long down = bits(below, word);
+
+                // A forced neighbour is where the row above or below opens up just after a wall
+                long upBehind = (up << 1) | (bits(above, word - 1) >>> 63);
+                long downBehind = (down << 1) | (bits(below, word - 1) >>> 63);
+                long stops = ~floor | (up & ~upBehind) | (down & ~downBehind);
+
+                if (endCol >>> 6 == word && endCol >= 0) {
+                    stops |= 1L << endCol;
+                }
+                if (word == col >>> 6) {
+                    stops &= -1L << col;
+                }
+
+                if (stops != 0) {
+                    int bit = Long.numberOfTrailingZeros(stops);
+                    return (floor & (1L << bit)) != 0 ? row * width + (word << 6) + bit : -1;
+                }
+            }
+        } else {
+            for (int word = col >>> 6; word >= 0; word--) {
+                long floor = walkable[rowStart + word];
+                long up = bits(above, word);
+                long down = bits(below, word);
+
+                long upBehind = (up >>> 1) | (bits(above, word + 1) << 63);
+                long downBehind = (down >>> 1) | (bits(below, word + 1) << 63);
+                long stops = ~floor | (up & ~upBehind) | (down & ~downBehind);
+
+                if (endCol >>> 6 == word && endCol >= 0) {
+                    stops |= 1L << endCol;
+                }
+                if (word == col >>> 6) {
+                    stops &= -1L >>> (63 - (col & 63));
+                }
+
+                if (stops != 0) {
+                    int bit = 63 - Long.numberOfLeadingZeros(stops);
+                    return (floor & (1L << bit)) != 0 ? row * width + (word << 6) + bit : -1;
+                }
+            }
+        }
+        return -1;
+    }
+
+    /**
+     * Jumps along a column from a tile, one row at a time. As well as walls ending beside it, it stops where a
+     * horizontal jump to either side would find a jump point, since the path might turn there.
+     *
+     * @param col The column
+     * @param row The row to start at (the first tile that's checked)
+     * @param dy The direction, 1 (S) or -1 (N)
+     * @return The cell index of the jump point, or -1 if it hits a wall first
+     */
+    private int jumpVertical(int col, int row, int dy) {
+        while (isWalkable(col, row)) {
+            int cell = row * width + col;
+
+            if (cell == target) {
+                return cell;
+            }
+            if ((isWalkable(col - 1, row) && !isWalkable(col - 1, row - dy))
+                    || (isWalkable(col + 1, row) && !isWalkable(col + 1, row - dy))) {
+                return cell;
+            }
+            if (jumpHorizontal(col + 1, row, 1) >= 0 || jumpHorizontal(col - 1, row, -1) >= 0) {
+                return cell;
+            }
+            row += dy;
+        }
+        return -1;
+    }
+
+    /**
+     * Gets a word of the wall bits, or no walkable tiles if the row or word is off the map.
+     *
+     * @param rowStart The index of the row's first word, or -1 if the row is off the map
+     * @param word The word of the row
+     * @return The walkable bits
+     */
+    private long bits(int rowStart, int word) {
+        return rowStart < 0 || word < 0 || word >= wordsPerRow ? 0 : walkable[rowStart + word];
+    }
+
+    /**
+     * Gets if a tile can be walked on, using the wall bits.
+     *
+     * @param col The column
+     * @param row The row
+     * @return If it's on the map and isn't a wall
+     */
+    private boolean isWalkable(int col, int row) {
+        return col >= 0 && row >= 0 && col < width && row < height
+                && (walkable[row * wordsPerRow + (col >>> 6)] & (1L << col)) != 0;
+    }
+
+    /**
+     * Sets the wall bit of a tile.
+     *
+     * @param col The column
+     * @param row The row
+     * @param isWalkable If it can be walked on
+     */
+    private void setWalkable(int col, int row, boolean isWalkable) {
+        int word = row * wordsPerRow + (col >>> 6);
+
+        if (isWalkable) {
+            walkable[word] |= 1L << col;
+        } else {
+            walkable[word] &= ~(1L << col);
+        }
+    }
+
+    /**
+     * Builds the wall bits for a map, if they aren't for that map already.
+     *
+     * @param map The map
+     */
+    private void useMap(Map map) {
+        if (map == this.map) {
+            return;
+        }
+        if (this.map != null) {
+            this.map.removeListener(this);
+        }
+
+        this.map = map;
+        width = map.getWidth();
+        height = map.getHeight();
+        wordsPerRow = (width + 63) >>> 6;
+        walkable = new long[wordsPerRow * height];
+
+        for (int row = 0; row < height; row++) {
+            for (int col = 0; col < width; col++) {
+                if (map.isWalkable(row * width + col)) {
+                    setWalkable(col, row, true);
+                }
+            }
+        }
+        map.addListener(this);
+    }
+
+    /**
+     * Packs f (cost + heuristic) and the heuristic into a priority, so ties are broken in favour of the jump point
+     * closest to the target.
+     *
+     * @param cost The cost so far
+     * @param heuristic The estimated cost to the target
+     * @return The priority
+     */
+    private static long priority(int cost, int heuristic) {
+        return ((long) (cost + heuristic) << 32) | heuristic;
+    }
+
+    /**
+     * Gets the Manhattan distance from a tile to the target.
+     *
+     * @param col The tile's column
+     * @param row The tile's row
+     * @return The number of moves it would take with no walls in the way
+     */
+    private int heuristic(int col, int row) {
+        return Math.abs(col - targetCol) + Math.abs(row - targetRow);
+    }
+
+    /**
+     * The arrays a thread needs to run a search, so they're only allocated once per thread rather than once per path
+     * finder.
+     */
+    private static class Workspace {
+        private final IntMinHeap open = new IntMinHeap();
+
+        private long[] costs = new long[0]; // Generation in the high 32 bits, cost in the low 32 bits
+        private int[] parents = new int[0];
+        private int generation;
+
+        /**
+         * Makes sure the arrays cover the map, and starts a new generation so the last search's entries don't count.
+         *
+         * @param cellCount The number of cells in the map
+         */
+        private void prepare(int cellCount) {
+            if (costs.length < cellCount) {
+                costs = new long[cellCount];
+                parents = new int[cellCount];
+                generation = 0;
+            }
+
+            generation++;
+            if (generation == Integer.MAX_VALUE) { // Only happens after billions of searches
+                Arrays.fill(costs, 0);
+                generation = 1;
+            }
+        }
+    }
+}
@@ -0,0 +1,84 @@
+package difficulty;
+
+import main.GameRandom;
+import main.Location;
+import map.Map;
+import map.MapBuilder;
+import player.BotPlayer;
+
+/**
+ * Measures how the MCTS difficulty scales with cores, by deciding the same moves with more and more workers and
+ * printing how many rollouts a second they managed together. With root parallelism that should go up about linearly
+ * until there are more workers than cores. Before measuring, and after every move, it checks that the trees are the
+ * right shape (the bot never stays still, and the human can), so a broken tree isn't measured.
+ *
+ * Usage: java difficulty.MctsBenchmark [size] [moves] [millis] [seed]
+ */
+public class MctsBenchmark {
+
+    private static final int WARMUP_MOVES = 5;
+    private static final int CHECK_SIZE = 16;
+    private static final long CHECK_MILLIS = 20;
+
+    public static void main(String[] args) {
+        int size = args.length > 0 ? Integer.parseInt(args[0]) : 100;
+        int moves = args.length > 1 ? Integer.parseInt(args[1]) : 20;
+        long millis = args.length > 2 ? Long.parseLong(args[2]) : 50;
+        long seed = args.length > 3 ? Long.parseLong(args[3]) : 1;
+
+        Map map = new MapBuilder(seed)
+                .size(size, size)
+                .wallDensity(0.2)
+                .build();
+        GameRandom random = new GameRandom(seed);
+        Location humanLocation = map.generateSpawnLocation(random);
+        Location botLocation = map.generateSpawnLocation(random);
+
+        checkOpenMap(seed);
+        System.out.println(String.format("%-8s %14s %14s", "workers", "rollouts/move", "rollouts/s"));
+
+        int cores = Runtime.getRuntime().availableProcessors();
+        for (int workers = 1; workers <= 2 * cores; workers *= 2) {
+            MctsBotStrategy strategy = new MctsBotStrategy(new BotPlayer(botLocation), random.split(), millis, workers);
+
+            long rollouts = 0;
+            double rate = 0;
+            for (int move = 0; move < moves + WARMUP_MOVES; move++) {
+                strategy.decideMove(map, humanLocation);
+                strategy.checkTrees();
+
+                if (move >= WARMUP_MOVES) {
+                    rollouts += strategy.getLastRollouts();
+                    rate += strategy.getRolloutsPerSecond();
+                }
+            }
+
+            System.out.println(String.format("%-8d %14d %14.0f", workers, rollouts / moves, rate / moves));
+        }
+    }
+
+    /**
+     * Checks the trees in the middle of an open map, where the bot can move in all 4 directions from the root, and the
+     * human can stay still after each of them.
+     *
+     * @param seed The seed for the map and the search
+     * @throws IllegalStateException If the trees are the wrong shape
+     */
+    private static void checkOpenMap(long seed) {
+        Map map = new MapBuilder(seed)
+                .size(CHECK_SIZE, CHECK_SIZE)
+                .wallDensity(0)
+                .build();
+        Location botLocation = new Location(CHECK_SIZE / 2, CHECK_SIZE / 2);
+        Location humanLocation = new Location(CHECK_SIZE / 2 - 4, CHECK_SIZE / 2 - 3);
+
+        MctsBotStrategy strategy = new MctsBotStrategy(new BotPlayer(botLocation), new GameRandom(seed), CHECK_MILLIS, 1);
+        strategy.decideMove(map, humanLocation);
+
+        int expanded = strategy.checkTrees();
+        if (expanded != 4) {
+            throw new IllegalStateException(String.format("Error: Only %d of the bot's 4 moves have the human's moves "
+                    + "under them!", expanded));
+        }
+    }
+}
@@ -0,0 +1,289 @@
+package difficulty;
+
+import main.GameRandom;
+import main.Location;
+import main.StateReader;
+import main.StateWriter;
+import map.Map;
+import player.BotPlayer;
+
+import java.util.Arrays;
+import java.util.stream.IntStream;
+
+/**
+ * A difficulty that plans ahead
+ * The bot knows where the player is (like Godlike), but instead of just taking the shortest path it uses Monte Carlo
+ * Tree Search: every move it plays out thousands of quick games of the bot and the human moving, for as long as its
+ * time budget allows, and picks the move that worked out best. So it can cut the player off rather than just follow.
+ *
+ * The search is split across the cores with root parallelism: each worker has its own difficulty.MctsTree and its own
+ * split of the random numbers, they all search at the same time without sharing anything, and then the number of times
+ * each tree tried each move is added up to pick the move. The trees are kept between moves, so after the bot and the
+ * human have both moved the part of each tree for where they are now carries on. Before searching, the walking
+ * distance from every tile to the human is flooded once (again only when the human or the map has changed), and the
+ * workers share it to guide their rollouts around walls.
+ *
+ * The time budget is -Ddod.mcts.millis (50ms by default) and the number of workers is -Ddod.mcts.workers (every core
+ * by default). Because how many rollouts fit in the budget depends on the machine, the same seed doesn't always play
+ * the same game with this difficulty. How many rollouts a second it managed in its last move is kept, to see how it
+ * scales with cores.
+ */
+public class MctsBotStrategy implements BotStrategy {
+
+    /**
+     * How long each move is searched for, in milliseconds, unless given otherwise.
+     */
+    public static final long DEFAULT_BUDGET_MILLIS = Long.getLong("dod.mcts.millis", 50);
+
+    /**
+     * How many threads search each move, unless given otherwise.
+     */
+    public static final int DEFAULT_WORKERS = Integer.getInteger("dod.mcts.workers", Runtime.getRuntime().availableProcessors());
+
+    private static final Location.Direction[] DIRECTIONS = Location.Direction.values(); // N, E, S, W
+
+    private BotPlayer botPlayer;
+
+    private final long budgetNanos;
+    private final MctsTree[] trees;
+    private final int[] rollouts;
+
+    private int[] distances = new int[0];
+    private int[] queue = new int[0];
+    private Map floodedMap;
+    private int floodedModificationCount;
+    private int floodedCell = -1;
+
+    private long lastRollouts;
+    private long lastNanos;
+
+    public MctsBotStrategy(BotPlayer botPlayer, GameRandom random) {
+        this(botPlayer, random, DEFAULT_BUDGET_MILLIS, DEFAULT_WORKERS);
+    }
+
+    /**
+     * Creates the strategy with a particular time budget and number of workers.
+     *
+     * @param botPlayer The bot
+     * @param random The bot's random numbers, which each worker gets a split of
+     * @param budgetMillis How long to search each move for, in milliseconds
+     * @param workers How many threads to search with
+     */
+    public MctsBotStrategy(BotPlayer botPlayer, GameRandom random, long budgetMillis, int workers) {
+        if (budgetMillis < 1) {
+            throw new IllegalArgumentException("Error: The time budget has to be at least 1ms!");
+        } else if (workers < 1) {
+            throw new IllegalArgumentException("Error: There has to be at least one worker!");
+        }
+
+        this.botPlayer = botPlayer;
+        this.budgetNanos = budgetMillis * 1_000_000;
+        this.trees = new MctsTree[workers];
+        this.rollouts = new int[workers];
+        for (int i = 0; i < workers; i++) {
+            trees[i] = new MctsTree(random.split());
+        }
+    }
+
+    /**
+     * No need for this method here since it always knows where the Human is.
+     *
+     * @return null
+     */
+    @Override
+    public Location.Direction nextDirection() {
+        return null;
+    }
+
+    /**
+     * Decides the next move by searching until the time budget runs out, then taking the move that was tried the most.
+     *
+     * @param map The map
+     * @param humanLocation Human's main.Location
+     * @return The direction to move in, or null if the bot can't move anywhere
+     */
+    @Override
+    public Location.Direction decideMove(Map map, Location humanLocation) {
+        Location botLocation = botPlayer.getLocation();
+        int width = map.getWidth();
+        if (humanLocation.outOfBounds(width, map.getHeight())) {
+            return botLocation.getDirectionTo(humanLocation);
+        }
+
+        int botCell = botLocation.getRow() * width + botLocation.getCol();
+        int humanCell = humanLocation.getRow() * width + humanLocation.getCol();
+
+        long start = System.nanoTime();
+        long deadline = start + budgetNanos;
+        flood(map, humanCell);
+
+        if (trees.length == 1) {
+            search(0, map, botCell, humanCell, deadline);
+        } else {
+            IntStream.range(0, trees.length).parallel().forEach(i -> search(i, map, botCell, humanCell, deadline));
+        }
+
+        lastNanos = System.nanoTime() - start;
+        lastRollouts = 0;
+        for (int count : rollouts) {
+            lastRollouts += count;
+        }
+
+        Location.Direction best = null;
+        long bestVisits = 0;
+        for (int direction = 0; direction < DIRECTIONS.length; direction++) {
+            long visits = 0;
+            for (MctsTree tree : trees) {
+                visits += tree.rootVisits(direction);
+            }
+
+            if (visits > bestVisits) {
+                bestVisits = visits;
+                best = DIRECTIONS[direction];
+            }
+        }
+        return best;
+    }
+
+    /**
+     * Gets how many rollouts a second were run (by every worker together) while deciding the last move.
+     *
+     * @return The rollouts per second, or 0 if it hasn't moved yet
+     */
+    public double getRolloutsPerSecond() {
+        return lastNanos == 0 ? 0 : lastRollouts * 1e9 / lastNanos;
+    }
+
+    /**
+     * Gets how many rollouts were run (by every worker together) while deciding the last move.
+     *
+     * @return The number of rollouts
+     */
+    public long getLastRollouts() {
+        return lastRollouts;
+    }
+
+    /**
+     * Checks every worker's tree is the right shape at the top (see difficulty.MctsTree#checkRoot).
+     *
+     * @return The fewest of the bot's moves from the root that any tree has added the human's moves under
+     * @throws IllegalStateException If a tree is the wrong shape
+     */
+    int checkTrees() {
+        int fewest = Integer.MAX_VALUE;
+        for (MctsTree tree : trees) {
+            fewest = Math.min(fewest, tree.checkRoot());
+        }
+        return fewest;
+    }
+
+    /**
+     * Writes where each worker's random numbers have got to. The trees aren't written, as they're only there to save
+     * work, and how a search goes depends on the time budget anyway.
+     *
+     * @param out Where to write it
+     */
+    @Override
+    public void writeState(StateWriter out) {
+        out.writeVarint(trees.length);
+        for (MctsTree tree : trees) {
+            tree.getRandom().writeState(out);
+        }
+    }
+
+    /**
+     * Carries on from where each worker's random numbers had got to. If the snapshot had a different number of
+     * workers, only the ones both have are restored.
+     *
+     * @param in Where to read it from
+     */
+    @Override
+    public void readState(StateReader in) {
+        int workers = in.readVarint();
+        GameRandom unused = new GameRandom(0);
+
+        for (int i = 0; i < workers; i++) {
+            (i < trees.length ? trees[i].getRandom() : unused).readState(in);
+        }
+    }
+
+    /**
+     * Works out the walking distance from every tile to the human with a breadth-first search, unless it's already
+     * been done for this tile and this version of the map.
+     *
+     * @param map The map
+     * @param humanCell The human's cell index
+     */
+    private void flood(Map map, int humanCell) {
+        if (map == floodedMap && map.getModificationCount() == floodedModificationCount && humanCell == floodedCell) {
+            return;
+        }
+
+        int width = map.getWidth();
+        int height = map.getHeight();
+        int cellCount = width * height;
+        if (distances.length != cellCount) {
+            distances = new int[cellCount];
+            queue = new int[cellCount];
+        }
+        Arrays.fill(distances, -1);
+
+        distances[humanCell] = 0;
+        queue[0] = humanCell;
+        int head = 0;
+        int tail = 1;
+        while (head < tail) {
+            int cell = queue[head++];
+            int col = cell % width;
+            int next = distances[cell] + 1;
+
+            if (cell >= width) {
+                tail = visit(map, cell - width, next, tail);
+            }
+            if (cell < cellCount - width) {
+                tail = visit(map, cell + width, next, tail);
+            }
+            if (col > 0) {
+                tail = visit(map, cell - 1, next, tail);
+            }
+            if (col < width - 1) {
+                tail = visit(map, cell + 1, next, tail);
+            }
+        }
+
+        floodedMap = map;
+        floodedModificationCount = map.getModificationCount();
+        floodedCell = humanCell;
+    }
+
+    /**
+     * Reaches a tile in the flood, if it's walkable and hasn't been reached yet.
+     *
+     * @param map The map
+     * @param cell The tile's cell index
+     * @param distance Its distance from the human
+     * @param tail The end of the queue
+     * @return The new end of the queue
+     */
+    private int visit(Map map, int cell, int distance, int tail) {
+        if (distances[cell] < 0 && map.isWalkable(cell)) {
+            distances[cell] = distance;
+            queue[tail++] = cell;
+        }
+        return tail;
+    }
+
+    /**
+     * Runs one worker's search.
+     *
+     * @param worker The worker's index
+     * @param map The map
+     * @param botCell The bot's cell index
+     * @param humanCell The human's cell index
+     * @param deadline The System.nanoTime() to stop at
+     */
+    private void search(int worker, Map map, int botCell, int humanCell, long deadline) {
+        trees[worker].moveTo(map, distances, botCell, humanCell);
+        rollouts[worker] = trees[worker].search(deadline, Integer.MAX_VALUE);
+    }
+}
@@ -0,0 +1,525 @@
+package difficulty;
+
+import main.GameRandom;
+import map.Map;
+
+import java.util.Arrays;
+
+/**
+ * One Monte Carlo search tree for difficulty.MctsBotStrategy, searched by one thread.
+ *
+ * The game is cut down to just the two cells that matter: where the bot is and where the human is. The walls are read
+ * straight from the map, which doesn't change while a move is being decided. Levels of the tree take turns between the
+ * bot's moves (N, E, S, W) and the human's (N, E, S, W, or staying still, since a lot of commands don't move them), and
+ * only moves that don't walk into a wall are in the tree.
+ *
+ * Each search goes down the tree picking children with UCT (the bot picking what's best for the bot, the human what's
+ * worst for it), adds the children of the node it ends on, and then plays the game out from there with quick
+ * heuristic moves: the bot mostly takes a step along the shortest path to where the human was at the root (read from
+ * a distance field the strategy floods once per move), and the human mostly steps away. The result (catching the human,
+ * sooner being better, or else how close the bot got) is added to every node on the way back up.
+ *
+ * The nodes are kept in plain arrays, with each node's children next to each other, so nothing is allocated while
+ * searching. When the game moves on, the part of the tree under the new position is copied to the front of a second
+ * set of arrays, which then swaps with the first, so the next search carries on from the rollouts that are still
+ * relevant without allocating anything either.
+ */
+class MctsTree {
+
+    static final int STAY = 4; // The action index for the human not moving
+
+    private static final int[] COL_CHANGE = {0, 1, 0, -1, 0}; // N, E, S, W, stay
+    private static final int[] ROW_CHANGE = {-1, 0, 1, 0, 0};
+
+    private static final int MAX_NODES = 1 << 18;
+    private static final int MAX_DEPTH = 64;
+    private static final int ROLLOUT_PLIES = 40;
+    private static final double EXPLORATION = 0.7;
+
+    private final GameRandom random;
+
+    private int[] firstChild = new int[1024]; // -1 until the node's children have been added
+    private byte[] childCount = new byte[1024];
+    private byte[] action = new byte[1024];
+    private int[] visits = new int[1024];
+    private double[] rewards = new double[1024]; // The total reward, from the bot's point of view
+    private int nodeCount;
+
+    // The arrays the kept part of the tree is copied into when the root moves, then swapped with the ones above
+    private int[] spareFirstChild = new int[0];
+    private byte[] spareChildCount = new byte[0];
+    private byte[] spareAction = new byte[0];
+    private int[] spareVisits = new int[0];
+    private double[] spareRewards = new double[0];
+
+    private final int[] path = new int[MAX_DEPTH + 1];
+    private final int[] moves = new int[5];
+
+    private Map map;
+    private int[] distances; // The walking distance from every cell to the human at the root, -1 if it can't get there
+    private int width;
+    private int height;
+    private int rootBot = -1;
+    private int rootHuman = -1;
+
+    /**
+     * Creates an empty tree.
+     *
+     * @param random This tree's own random numbers
+     */
+    MctsTree(GameRandom random) {
+        this.random = random;
+    }
+
+    /**
+     * Gets this tree's random numbers, so they can be saved in a snapshot of the game.
+     *
+     * @return The random numbers
+     */
+    GameRandom getRandom() {
+        return random;
+    }
+
+    /**
+     * Moves the root of the tree to a position, keeping the part of the tree under it if the position is the bot's
+     * move and then the human's move on from the last root.
+     *
+     * @param map The map
+     * @param distances The walking distance from every cell to the human's cell, -1 if it can't be reached
+     * @param botCell The bot's cell index
+     * @param humanCell The human's cell index
+     */
+    void moveTo(Map map, int[] distances, int botCell, int humanCell) {
+        this.distances = distances;
+        if (map != this.map || map.getWidth() != width || map.getHeight() != height) {
+            this.map = map;
+            this.width = map.getWidth();
+            this.height = map.getHeight();
+            nodeCount = 0;
+        }
+
+        if (nodeCount > 0 && (botCell != rootBot || humanCell != rootHuman)) {
+            int kept = findPosition(botCell, humanCell);
+            if (kept > 0) {
+                keepSubtree(kept);
+            } else {
+                nodeCount = 0;
+            }
+        }
+
+        if (nodeCount == 0) {
+            nodeCount = 1;
+            firstChild[0] = -1;
+            visits[0] = 0;
+            rewards[0] = 0;
+        }
+        rootBot = botCell;
+        rootHuman = humanCell;
+    }
+
+    /**
+     * Runs searches until the deadline passes or there have been enough of them.
+     *
+     * @param deadline The System.nanoTime() to stop at
+     * @param maxRollouts The most searches to run
+     * @return How many searches were run
+     */
+    int search(long deadline, int maxRollouts) {
+        int rollouts = 0;
+        while (rollouts < maxRollouts && ((rollouts & 15) != 0 || System.nanoTime() < deadline)) {
+            searchOnce();
+            rollouts++;
+        }
+        return rollouts;
+    }
+
+    /**
+     * Gets how many times a move by the bot from the root has been searched.
+     *
+     * @param direction The direction's index (N, E, S, W)
+     * @return The number of visits, 0 if it isn't a possible move
+     */
+    int rootVisits(int direction) {
+        int first = firstChild[0];
+        for (int child = first; first >= 0 && child < first + childCount[0]; child++) {
+            if (action[child] == direction) {
+                return visits[child];
+            }
+        }
+        return 0;
+    }
+
+    /**
+     * Checks the top two levels of the tree are the right shape: the bot's moves from the root are the directions it
+     * can walk in (it never stays still), and the human's moves under each of them, once they've been added, include
+     * staying still.
+     *
+     * @return How many of the bot's moves have had the human's moves added under them
+     * @throws IllegalStateException If the tree is the wrong shape
+     */
+    int checkRoot() {
+        int first = firstChild[0];
+        if (first < 0) {
+            return 0;
+        }
+        if (childCount[0] != possibleMoves(rootBot, false)) {
+            throw new IllegalStateException(String.format("Error: The root has %d moves for the bot, but it can make %d!",
+                    childCount[0], possibleMoves(rootBot, false)));
+        }
+
+        int expanded = 0;
+        for (int botMove = first; botMove < first + childCount[0]; botMove++) {
+            if (action[botMove] == STAY) {
+                throw new IllegalStateException("Error: The bot can't stay still!");
+            }
+
+            int humanFirst = firstChild[botMove];
+            if (humanFirst >= 0) {
+                boolean canStay = false;
+                for (int humanMove = humanFirst; humanMove < humanFirst + childCount[botMove]; humanMove++) {
+                    canStay |= action[humanMove] == STAY;
+                }
+                if (!canStay) {
+                    throw new IllegalStateException("Error: The human can't stay still after one of the bot's moves!");
+                }
+                expanded++;
+            }
+        }
+        return expanded;
+    }
+
+    /**
+     * Goes down the tree from the root, adds a node's children, plays the game out, and adds the result to the path.
+     */
+    private void searchOnce() {
+        int node = 0;
+        int bot = rootBot;
+        int human = rootHuman;
+        int depth = 0;
+        path[0] = 0;
+        double reward;
+
+        while (true) {
+            boolean botTurn = (depth & 1) == 0;
+
+            if (depth > 0 && bot == human) {
+                reward = caughtReward(depth);
+                break;
+            }
+            if (depth == MAX_DEPTH) {
+                reward = rollout(bot, human, depth);
+                break;
+            }
+
+            if (firstChild[node] < 0) {
+                if (!expand(node, botTurn ? bot : human, botTurn)) {
+                    reward = rollout(bot, human, depth);
+                    break;
+                }
+                node = firstChild[node] + random.nextInt(childCount[node]);
+            } else {
+                node = select(node, botTurn);
+            }
+
+            if (botTurn) {
+                bot = apply(bot, action[node]);
+            } else {
+                human = apply(human, action[node]);
+            }
+            path[++depth] = node;
+
+            if (visits[node] == 0 && bot != human) {
+                reward = rollout(bot, human, depth);
+                break;
+            }
+        }
+
+        for (int i = 0; i <= depth; i++) {
+            visits[path[i]]++;
+            rewards[path[i]] += reward;
+        }
+    }
+
+    /**
+     * Picks the child to go down with UCT. The bot's children are scored by the bot's reward, and the human's by what
+     * the bot doesn't get, as the human is trying to get away.
+     *
+     * @param node The node
+     * @param botTurn If it's the bot's move
+     * @return The child
+     */
+    private int select(int node, boolean botTurn) {
+        int first = firstChild[node];
+        double logVisits = Math.log(Math.max(1, visits[node]));
+        int best = first;
+        double bestScore = Double.NEGATIVE_INFINITY;
+
+        for (int child = first; child < first + childCount[node]; child++) {
+            if (visits[child] == 0) {
+                return child;
+            }
+
+            double value = rewards[child] / visits[child];
+            double score = (botTurn ? value : 1 - value) + EXPLORATION * Math.sqrt(logVisits / visits[child]);
+            if (score > bestScore) {
+                bestScore = score;
+                best = child;
+            }
+        }
+        return best;
+    }
+
+    /**
+     * Adds a child for every possible move from a node.
+     *
+     * @param node The node
+     * @param cell The cell of whoever is moving
+     * @param botTurn If it's the bot's move (the human can also stay still)
+     * @return If any children were added
+     */
+    private boolean expand(int node, int cell, boolean botTurn) {
+        int count = possibleMoves(cell, !botTurn);
+        if (count == 0 || nodeCount + count > MAX_NODES) {
+            return false;
+        }
+
+        ensureCapacity(nodeCount + count);
+        int first = nodeCount;
+        for (int i = 0; i < count; i++) {
+            int child = first + i;
+            firstChild[child] = -1;
+            childCount[child] = 0;
+            action[child] = (byte) moves[i];
+            visits[child] = 0;
+            rewards[child] = 0;
+        }
+
+        firstChild[node] = first;
+        childCount[node] = (byte) count;
+        nodeCount += count;
+        return true;
+    }
+
+    /**
+     * Plays the game out with quick heuristic moves, until the bot catches the human or it's gone on long enough.
+     *
+     * @param bot The bot's cell
+     * @param human The human's cell
+     * @param depth How many moves have been made since the root
+     * @return The reward for the bot
+     */
+    private double rollout(int bot, int human, int depth) {
+        for (int ply = depth; ply < depth + ROLLOUT_PLIES; ply++) {
+            if ((ply & 1) == 0) {
+                bot = apply(bot, pickMove(bot, human, true));
+            } else {
+                human = apply(human, pickMove(human, bot, false));
+            }
+
+            if (bot == human) {
+                return caughtReward(ply + 1);
+            }
+        }
+        return 0.5 * 4 / (4 + walkingDistance(bot, human));
+    }
+
+    /**
+     * Picks a move for a rollout. Most of the time the bot steps along the shortest path to where the human was at the
+     * root and the human steps away from the bot (if they can), otherwise the move is random.
+     *
+     * @param cell The cell of whoever is moving
+     * @param other The other player's cell
+     * @param botTurn If it's the bot's move
+     * @return The action index
+     */
+    private int pickMove(int cell, int other, boolean botTurn) {
+        int count = possibleMoves(cell, !botTurn);
+        if (count == 0) {
+            return STAY;
+        }
+
+        if (random.nextInt(4) < (botTurn ? 3 : 2)) {
+            int current = botTurn ? walkingDistance(cell, other) : distance(cell, other);
+            int start = random.nextInt(count);
+            for (int i = 0; i < count; i++) {
+                int move = moves[(start + i) % count];
+                int next = botTurn ? walkingDistance(apply(cell, move), other) : distance(apply(cell, move), other);
+                if (botTurn ? next < current : next > current) {
+                    return move;
+                }
+            }
+        }
+        return moves[random.nextInt(count)];
+    }
+
+    /**
+     * Finds the moves that don't walk into a wall or off the map, and puts them in moves.
+     *
+     * @param cell The cell of whoever is moving
+     * @param canStay If staying still is a move
+     * @return How many there are
+     */
+    private int possibleMoves(int cell, boolean canStay) {
+        int col = cell % width;
+        int row = cell / width;
+        int count = 0;
+
+        for (int direction = 0; direction < 4; direction++) {
+            int nextCol = col + COL_CHANGE[direction];
+            int nextRow = row + ROW_CHANGE[direction];
+
+            if (nextCol >= 0 && nextRow >= 0 && nextCol < width && nextRow < height
+                    && map.isWalkable(nextRow * width + nextCol)) {
+                moves[count++] = direction;
+            }
+        }
+        if (canStay) {
+            moves[count++] = STAY;
+        }
+        return count;
+    }
+
+    /**
+     * Finds the node two levels down (the bot's move then the human's) that leads to a position.
+     *
+     * @param botCell The bot's cell in the position
+     * @param humanCell The human's cell in the position
+     * @return The node, or -1 if it isn't in the tree
+     */
+    private int findPosition(int botCell, int humanCell) {
+        int botFirst = firstChild[0];
+        for (int botMove = botFirst; botFirst >= 0 && botMove < botFirst + childCount[0]; botMove++) {
+            if (apply(rootBot, action[botMove]) != botCell) {
+                continue;
+            }
+
+            int humanFirst = firstChild[botMove];
+            for (int humanMove = humanFirst; humanFirst >= 0 && humanMove < humanFirst + childCount[botMove]; humanMove++) {
+                if (apply(rootHuman, action[humanMove]) == humanCell) {
+                    return humanMove;
+                }
+            }
+        }
+        return -1;
+    }
+
+    /**
+     * Makes a node the root, copying everything under it to the front of the spare arrays, then swapping them with the
+     * tree's arrays so the rest is dropped.
+     *
+     * @param newRoot The node
+     */
+    private void keepSubtree(int newRoot) {
+        if (spareFirstChild.length < firstChild.length) {
+            spareFirstChild = new int[firstChild.length];
+            spareChildCount = new byte[firstChild.length];
+            spareAction = new byte[firstChild.length];
+            spareVisits = new int[firstChild.length];
+            spareRewards = new double[firstChild.length];
+        }
+
+        // Breadth first, so each node's children are still next to each other. A node's copy is where it comes in the
+        // queue, so the queue is kept in spareFirstChild: each entry holds the node to copy there until it's copied.
+        spareFirstChild[0] = newRoot;
+        int head = 0;
+        int tail = 1;
+        while (head < tail) {
+            int copy = head++;
+            int node = spareFirstChild[copy];
+
+            spareChildCount[copy] = childCount[node];
+            spareAction[copy] = action[node];
+            spareVisits[copy] = visits[node];
+            spareRewards[copy] = rewards[node];
+
+            if (firstChild[node] < 0) {
+                spareFirstChild[copy] = -1;
+            } else {
+                spareFirstChild[copy] = tail;
+                for (int i = 0; i < childCount[node]; i++) {
+                    spareFirstChild[tail++] = firstChild[node] + i;
+                }
+            }
+        }
+
+        int[] oldFirstChild = firstChild;
+        byte[] oldChildCount = childCount;
+        byte[] oldAction = action;
+        int[] oldVisits = visits;
+        double[] oldRewards = rewards;
+
+        firstChild = spareFirstChild;
+        childCount = spareChildCount;
+        action = spareAction;
+        visits = spareVisits;
+        rewards = spareRewards;
+
+        spareFirstChild = oldFirstChild;
+        spareChildCount = oldChildCount;
+        spareAction = oldAction;
+        spareVisits = oldVisits;
+        spareRewards = oldRewards;
+        nodeCount = tail;
+    }
+
+    /**
+     * Makes the arrays big enough for some number of nodes.
+     *
+     * @param capacity The number of nodes
+     */
+    private void ensureCapacity(int capacity) {
+        if (capacity > firstChild.length) {
+            int size = Math.min(MAX_NODES, Math.max(capacity, firstChild.length * 2));
+            firstChild = Arrays.copyOf(firstChild, size);
+            childCount = Arrays.copyOf(childCount, size);
+            action = Arrays.copyOf(action, size);
+            visits = Arrays.copyOf(visits, size);
+            rewards = Arrays.copyOf(rewards, size);
+        }
+    }
+
+    /**
+     * Gets the cell after a move, which has to be a possible one.
+     *
+     * @param cell The cell
+     * @param move The action index
+     * @return The new cell
+     */
+    private int apply(int cell, int move) {
+        return cell + ROW_CHANGE[move] * width + COL_CHANGE[move];
+    }
+
+    /**
+     * Estimates how far the bot has to walk to reach the human: the walk to where the human was at the root, plus how
+     * far the human has got from there. If the bot can't walk to the root at all, it's just the Manhattan distance.
+     *
+     * @param bot The bot's cell
+     * @param human The human's cell
+     * @return The distance
+     */
+    private int walkingDistance(int bot, int human) {
+        int toRoot = distances[bot];
+        return toRoot < 0 ? distance(bot, human) : toRoot + distance(human, rootHuman);
+    }
+
+    /**
+     * Gets the Manhattan distance between two cells.
+     *
+     * @param a A cell
+     * @param b Another cell
+     * @return The distance
+     */
+    private int distance(int a, int b) {
+        return Math.abs(a % width - b % width) + Math.abs(a / width - b / width);
+    }
+
+    /**
+     * Gets the reward for catching the human, which is higher the sooner it happens.
+     *
+     * @param plies How many moves (of either player) it took
+     * @return The reward, between 0.5 and 1
+     */
+    private static double caughtReward(int plies) {
+        return 1 - 0.5 * Math.min(plies, MAX_DEPTH + ROLLOUT_PLIES) / (MAX_DEPTH + ROLLOUT_PLIES);
+    }
+}
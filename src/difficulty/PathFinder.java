@@ -0,0 +1,73 @@
+package difficulty;
+
+import main.Location;
+import map.Map;
+
+/**
+ * Finds routes around the walls of the map, so that bots chasing the player don't get stuck behind a wall.
+ *
+ * A path finder keeps its working memory between searches, so one shouldn't be shared between bots that are deciding
+ * their moves at the same time.
+ */
+public interface PathFinder {
+
+    /**
+     * The path finding algorithms a chasing bot can use. The default can be changed with
+     * -Ddod.pathfinder=field|astar|jps|hierarchical|flow.
+     */
+    enum Algorithm {
+        FIELD,  // The map's shared difficulty.DistanceField (only cheap when chasing the human)
+        ASTAR,  // difficulty.AStarPathFinder
+        JPS,    // difficulty.JumpPointPathFinder, for big open maps
+        HIERARCHICAL, // difficulty.HierarchicalPathFinder, for huge maps (paths may be slightly longer)
+        FLOW;   // The map's shared difficulty.FlowField (only cheap when chasing the human, built in parallel)
+
+        /**
+         * Gets the algorithm set with -Ddod.pathfinder.
+         *
+         * @param otherwise The algorithm to use if it isn't set (or isn't an algorithm)
+         * @return The algorithm
+         */
+        public static Algorithm fromProperty(Algorithm otherwise) {
+            try {
+                return valueOf(System.getProperty("dod.pathfinder", otherwise.name()).toUpperCase());
+            } catch (IllegalArgumentException e) {
+                return otherwise;
+            }
+        }
+
+        /**
+         * Creates a path finder which uses this algorithm. Anything it shares with the other path finders on the map
+         * (a field, or the graph of clusters) is built now if it hasn't been already.
+         *
+         * @param map The map it will be used on
+         * @return The path finder
+         */
+        public PathFinder create(Map map) {
+            switch (this) {
+                case FIELD:
+                    return DistanceField.of(map);
+                case ASTAR:
+                    return new AStarPathFinder();
+                case JPS:
+                    return new JumpPointPathFinder();
+                case HIERARCHICAL:
+                    return new HierarchicalPathFinder(map);
+                case FLOW:
+                    return FlowField.of(map);
+                default:
+                    throw new IllegalStateException("Algorithm doesn't exist, shouldn't be called");
+            }
+        }
+    }
+
+    /**
+     * Finds the first step of a shortest path (moving N/E/S/W) from one location to another.
+     *
+     * @param map The map
+     * @param from Where the path starts
+     * @param to Where the path ends
+     * @return The direction of the first step, or null if they're in the same place or there's no path
+     */
+    Location.Direction firstStep(Map map, Location from, Location to);
+}
@@ -0,0 +1,125 @@
+package difficulty;
+
+import main.Location;
+import map.Map;
+import map.MapBuilder;
+
+import java.util.SplittableRandom;
+
+/**
+ * Compares A*, Jump Point Search and HPA* on generated maps, from mostly open floor to rooms and corridors.
+ *
+ * For each map it runs the same random queries through every path finder, and prints the average time and number of
+ * nodes expanded per query. It also prints how many paths weren't the same length as A*'s (which are the shortest),
+ * and how much longer they were in total. That should be none for JPS, and a few percent for HPA*.
+ *
+ * Usage: java difficulty.PathFindingBenchmark [size] [queries] [seed]
+ */
+public class PathFindingBenchmark {
+
+    private static final double[] WALL_DENSITIES = {0.0, 0.2, 0.5};
+    private static final int WARMUP_QUERIES = 50;
+
+    public static void main(String[] args) {
+        int size = args.length > 0 ? Integer.parseInt(args[0]) : 1000;
+        int queries = args.length > 1 ? Integer.parseInt(args[1]) : 200;
+        long seed = args.length > 2 ? Long.parseLong(args[2]) : 1;
+
+        System.out.println(String.format("%-8s %-6s %12s %14s %10s %10s",
+                "walls", "algo", "ms/query", "expanded/query", "mismatches", "longer %"));
+
+        for (double wallDensity : WALL_DENSITIES) {
+            Map map = new MapBuilder(seed)
+                    .size(size, size)
+                    .wallDensity(wallDensity)
+                    .build();
+
+            long buildStart = System.nanoTime();
+            ClusterGraph.of(map);
+            long buildTime = System.nanoTime() - buildStart;
+
+            int[] queryCells = pickQueries(map, queries + WARMUP_QUERIES, seed);
+            AStarPathFinder aStar = new AStarPathFinder();
+            JumpPointPathFinder jumpPoint = new JumpPointPathFinder();
+            HierarchicalPathFinder hierarchical = new HierarchicalPathFinder();
+
+            long[] times = new long[3];
+            long[] expanded = new long[3];
+            int[] mismatches = new int[3];
+            long[] lengths = new long[3];
+
+            for (int query = 0; query < queries + WARMUP_QUERIES; query++) {
+                Location from = toLocation(map, queryCells[2 * query]);
+                Location to = toLocation(map, queryCells[2 * query + 1]);
+
+                long start = System.nanoTime();
+                aStar.firstStep(map, from, to);
+                long afterAStar = System.nanoTime();
+                jumpPoint.firstStep(map, from, to);
+                long afterJumpPoint = System.nanoTime();
+                hierarchical.firstStep(map, from, to);
+                long end = System.nanoTime();
+
+                if (query < WARMUP_QUERIES) {
+                    continue;
+                }
+
+                int[] pathLengths = {aStar.getPathLength(), jumpPoint.getPathLength(), hierarchical.getPathLength()};
+                times[0] += afterAStar - start;
+                times[1] += afterJumpPoint - afterAStar;
+                times[2] += end - afterJumpPoint;
+                expanded[0] += aStar.getNodesExpanded();
+                expanded[1] += jumpPoint.getNodesExpanded();
+                expanded[2] += hierarchical.getNodesExpanded();
+                for (int i = 0; i < pathLengths.length; i++) {
+                    if (pathLengths[i] != pathLengths[0]) {
+                        mismatches[i]++;
+                    }
+                    lengths[i] += Math.max(0, pathLengths[i]);
+                }
+            }
+
+            String[] names = {"A*", "JPS", "HPA*"};
+            for (int i = 0; i < names.length; i++) {
+                double longer = lengths[0] == 0 ? 0 : 100.0 * (lengths[i] - lengths[0]) / lengths[0];
+                System.out.println(String.format("%-8.2f %-6s %12.3f %14d %10d %10.2f",
+                        wallDensity, names[i], times[i] / 1e6 / queries, expanded[i] / queries, mismatches[i], longer));
+            }
+            System.out.println(String.format("(HPA* graph built in %.1f ms)", buildTime / 1e6));
+        }
+    }
+
+    /**
+     * Picks random pairs of walkable tiles to find paths between.
+     *
+     * @param map The map
+     * @param queries The number of pairs
+     * @param seed The seed for picking them
+     * @return The cell indexes, with each pair next to each other
+     */
+    private static int[] pickQueries(Map map, int queries, long seed) {
+        SplittableRandom random = new SplittableRandom(seed);
+        int cellCount = map.getWidth() * map.getHeight();
+        int[] cells = new int[queries * 2];
+
+        for (int i = 0; i < cells.length; i++) {
+            int cell;
+            do {
+                cell = random.nextInt(cellCount);
+            } while (!map.isWalkable(cell));
+            cells[i] = cell;
+        }
+        return cells;
+    }
+
+    /**
+     * Turns a cell index into a location.
+     *
+     * @param map The map
+     * @param cell The cell index
+     * @return The location
+     */
+    private static Location toLocation(Map map, int cell) {
+        return new Location(cell % map.getWidth(), cell / map.getWidth());
+    }
+}
@@ -0,0 +1,121 @@
+package main;
+
+import map.Map;
+import map.MapCache;
+import map.MapFormatException;
+import ui.BotDifficultySelector.Difficulty;
+
+import java.io.IOException;
+import java.lang.management.ManagementFactory;
+import java.util.Arrays;
+
+/**
+ * Measures how much is allocated, and how long it takes, to read a command, by the old way (split, toUpperCase, trim
+ * and copyOfRange) and with main.CommandDecoder, and then for a whole main.GameEngine step with the decoded command.
+ *
+ * The bytes are counted with com.sun.management.ThreadMXBean#getThreadAllocatedBytes for this thread, after a warm up
+ * so the JIT has compiled everything, so it shows what a steady stream of commands costs. Decoding should allocate 0
+ * bytes a command. The step also includes the bot's turn, which allocates a main.Location whenever anyone moves.
+ *
+ * Usage: java main.CommandBenchmark [commands]
+ */
+public class CommandBenchmark {
+
+    private static final String BATCH = "MOVE N;MOVE E;PICKUP;LOOK;GOLD;HELLO;MOVE S;MOVE W;MOVE X;FOO";
+    private static final int BATCH_SIZE = 10;
+
+    private static final com.sun.management.ThreadMXBean THREADS =
+            (com.sun.management.ThreadMXBean) ManagementFactory.getThreadMXBean();
+
+    private static int sink; // So the JIT can't throw the work away
+
+    public static void main(String[] args) throws IOException, MapFormatException {
+        int commands = args.length > 0 ? Integer.parseInt(args[0]) : 10_000_000;
+        Map map = MapCache.getDefault().load("large_example_map.txt");
+
+        for (int round = 0; round < 2; round++) { // The first round is the warm up
+            boolean print = round == 1;
+            measure("split", commands, print, CommandBenchmark::splitBatches);
+            measure("decoder", commands, print, CommandBenchmark::decodeBatches);
+            measure("decoder + step", commands / 10, print, count -> stepBatches(map, count));
+        }
+    }
+
+    /**
+     * Runs a way of reading commands and prints what it cost.
+     *
+     * @param name What it's called
+     * @param commands How many commands to read
+     * @param print If the result should be printed (otherwise it's the warm up)
+     * @param work The work, given the number of commands
+     */
+    private static void measure(String name, int commands, boolean print, java.util.function.IntConsumer work) {
+        long threadId = Thread.currentThread().getId();
+        long bytesBefore = THREADS.getThreadAllocatedBytes(threadId);
+        long start = System.nanoTime();
+
+        work.accept(commands);
+
+        long nanos = System.nanoTime() - start;
+        long bytes = THREADS.getThreadAllocatedBytes(threadId) - bytesBefore;
+        if (print) {
+            System.out.println(String.format("%-16s %10.1f ns/command %10.2f bytes/command",
+                    name, (double) nanos / commands, (double) bytes / commands));
+        }
+    }
+
+    /**
+     * Reads commands the old way, one line each.
+     *
+     * @param commands How many commands to read
+     */
+    private static void splitBatches(int commands) {
+        String[] lines = BATCH.split(";");
+        for (int i = 0; i < commands; i++) {
+            String[] input = lines[i % BATCH_SIZE].split(" ");
+            String command = input[0].toUpperCase().trim();
+            String[] arguments = Arrays.copyOfRange(input, 1, input.length);
+            sink += command.hashCode() + arguments.length;
+        }
+    }
+
+    /**
+     * Reads commands with the decoder, a batch of them at a time.
+     *
+     * @param commands How many commands to read
+     */
+    private static void decodeBatches(int commands) {
+        CommandDecoder decoder = new CommandDecoder();
+        char[] buffer = BATCH.toCharArray();
+
+        for (int i = 0; i < commands; i += BATCH_SIZE) {
+            decoder.reset(buffer, 0, buffer.length);
+            while (decoder.hasNext()) {
+                sink += decoder.next();
+            }
+        }
+    }
+
+    /**
+     * Reads commands with the decoder and plays them against an Easy bot, starting a new game when one ends.
+     *
+     * @param map The map
+     * @param commands How many commands to play
+     */
+    private static void stepBatches(Map map, int commands) {
+        CommandDecoder decoder = new CommandDecoder();
+        char[] buffer = BATCH.toCharArray();
+        GameEngine engine = null;
+        long seed = 0;
+
+        for (int i = 0; i < commands; i += BATCH_SIZE) {
+            decoder.reset(buffer, 0, buffer.length);
+            while (decoder.hasNext()) {
+                if (engine == null || engine.isGameOver()) {
+                    engine = new GameEngine(map.copy(), new GameRandom(seed++), Difficulty.EASY, 0, 1);
+                }
+                sink += engine.execute(decoder.next()) ? 1 : 0;
+            }
+        }
+    }
+}
@@ -0,0 +1,271 @@
+package main;
+
+import java.nio.CharBuffer;
+
+/**
+ * Turns typed commands into numbers without allocating anything, so scripted streams of commands (thousands of games in
+ * a tournament, or a replayed log) don't make garbage for every command.
+ *
+ * A decoded command is an int: the opcode in the low 8 bits, which is the ordinal of its main.StepResult.Action, and
+ * the argument above that, which is the ordinal of the direction for a MOVE. The characters are read straight from the
+ * line (or buffer) they're in, and compared with the command names one at a time, ignoring case, so no strings are made.
+ * The rules are the same as the console has always had: the command is the first word (split on spaces), and a MOVE
+ * needs exactly one more word, which is N, E, S or W.
+ *
+ * A line can hold more than one command, separated by semicolons (e.g. "MOVE N;MOVE N;PICKUP"), and next() gives them
+ * one at a time. Spaces next to a semicolon, and empty commands between them, are ignored. Like a path finder, a
+ * decoder keeps its position between calls, so each thread needs its own.
+ */
+public final class CommandDecoder {
+
+    private static final StepResult.Action[] ACTIONS = StepResult.Action.values();
+    private static final Location.Direction[] DIRECTIONS = Location.Direction.values();
+
+    private static final int OPCODE_BITS = 8;
+    private static final int OPCODE_MASK = (1 << OPCODE_BITS) - 1;
+
+    private static final char SEPARATOR = ';';
+
+    private CharSequence line;
+    private char[] buffer;
+    private int position;
+    private int end;
+    private boolean batched;
+    private boolean decodedAny;
+
+    private int wordStart; // Where the last command's first word is, for getCommandText
+    private int wordEnd;
+
+    /**
+     * Starts decoding a line. If it's batched, semicolons separate commands, otherwise the whole line is one command.
+     *
+     * @param line The line
+     * @param batched If the line can hold more than one command
+     */
+    public void reset(CharSequence line, boolean batched) {
+        this.line = line;
+        this.buffer = null;
+        this.position = 0;
+        this.end = line.length();
+        this.batched = batched;
+        this.decodedAny = false;
+    }
+
+    /**
+     * Starts decoding part of a buffer of characters, with semicolons separating commands.
+     *
+     * @param buffer The buffer
+     * @param offset Where the commands start
+     * @param length How many characters there are
+     */
+    public void reset(char[] buffer, int offset, int length) {
+        this.line = null;
+        this.buffer = buffer;
+        this.position = offset;
+        this.end = offset + length;
+        this.batched = true;
+        this.decodedAny = false;
+    }
+
+    /**
+     * Checks if there's another command to decode. An empty line is still one (invalid) command, but nothing (or only
+     * spaces) between or after semicolons isn't.
+     *
+     * @return If there is
+     */
+    public boolean hasNext() {
+        if (!decodedAny) {
+            return true;
+        }
+
+        for (int i = position; i < end; i++) {
+            if (charAt(i) != ' ' && charAt(i) != SEPARATOR) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    /**
+     * Decodes the next command.
+     *
+     * @return The command, with the opcode and argument packed into an int
+     */
+    public int next() {
+        if (!hasNext()) {
+            throw new IllegalStateException("Error: There are no more commands to decode!");
+        }
+
+        int commandStart = position;
+        int commandEnd = end;
+        if (batched) {
+            while (decodedAny && commandStart < end && (charAt(commandStart) == ' ' || charAt(commandStart) == SEPARATOR)) {
+                commandStart++; // Spaces after a semicolon, and empty commands between them
+            }
+            commandEnd = commandStart;
+            while (commandEnd < end && charAt(commandEnd) != SEPARATOR) {
+                commandEnd++;
+            }
+            position = commandEnd + 1;
+            while (commandEnd < end && commandEnd > commandStart && charAt(commandEnd - 1) == ' ') {
+                commandEnd--; // Spaces before a semicolon
+            }
+        } else {
+            position = end;
+        }
+        decodedAny = true;
+
+        return decode(commandStart, commandEnd);
+    }
+
+    /**
+     * Gets the first word of the last command decoded, in capitals, as the console has always shown it for a command
+     * that doesn't exist. This is the only thing that makes a string, so it's only for printing.
+     *
+     * @return The word
+     */
+    public String getCommandText() {
+        CharSequence text = line != null ? line : CharBuffer.wrap(buffer);
+        return text.subSequence(wordStart, wordEnd).toString().toUpperCase().trim();
+    }
+
+    /**
+     * Gets the opcode of a command.
+     *
+     * @param command The command
+     * @return The opcode, which is the ordinal of its action
+     */
+    public static int opcode(int command) {
+        return command & OPCODE_MASK;
+    }
+
+    /**
+     * Gets the action of a command.
+     *
+     * @param command The command
+     * @return The action
+     */
+    public static StepResult.Action action(int command) {
+        return ACTIONS[command & OPCODE_MASK];
+    }
+
+    /**
+     * Gets the argument of a command.
+     *
+     * @param command The command
+     * @return The argument, which for a MOVE is the ordinal of its direction
+     */
+    public static int argument(int command) {
+        return command >>> OPCODE_BITS;
+    }
+
+    /**
+     * Makes a command from an opcode and argument.
+     *
+     * @param action The command's action
+     * @param argument The argument (the ordinal of the direction for a MOVE, otherwise 0)
+     * @return The command
+     */
+    public static int encode(StepResult.Action action, int argument) {
+        return action.ordinal() | argument << OPCODE_BITS;
+    }
+
+    /**
+     * Decodes one command.
+     *
+     * @param start Where it starts
+     * @param end Where it ends
+     * @return The command
+     */
+    private int decode(int start, int end) {
+        // The first word, split on spaces, with anything else that's whitespace trimmed off
+        int space = indexOfSpace(start, end);
+        wordStart = start;
+        wordEnd = space;
+
+        int from = start;
+        int to = space;
+        while (from < to && charAt(from) <= ' ') {
+            from++;
+        }
+        while (to > from && charAt(to - 1) <= ' ') {
+            to--;
+        }
+
+        if (matches(from, to, "GOLD")) {
+            return encode(StepResult.Action.GOLD, 0);
+        } else if (matches(from, to, "PICKUP")) {
+            return encode(StepResult.Action.PICKUP, 0);
+        } else if (matches(from, to, "QUIT") || matches(from, to, "EXIT")) {
+            return encode(StepResult.Action.QUIT, 0);
+        } else if (matches(from, to, "LOOK")) {
+            return encode(StepResult.Action.LOOK, 0);
+        } else if (matches(from, to, "HELLO")) {
+            return encode(StepResult.Action.HELLO, 0);
+        } else if (!matches(from, to, "MOVE")) {
+            return encode(StepResult.Action.INVALID, 0);
+        }
+
+        // A MOVE needs exactly one more word: not counting spaces at the end, there's something and it has no spaces
+        int argumentStart = space + 1;
+        int argumentEnd = end;
+        while (argumentEnd > argumentStart && charAt(argumentEnd - 1) == ' ') {
+            argumentEnd--;
+        }
+        if (argumentStart >= argumentEnd || indexOfSpace(argumentStart, argumentEnd) != argumentEnd) {
+            return encode(StepResult.Action.SYNTAX_ERROR, 0);
+        }
+
+        for (Location.Direction direction : DIRECTIONS) {
+            if (matches(argumentStart, argumentEnd, direction.name())) {
+                return encode(StepResult.Action.MOVE, direction.ordinal());
+            }
+        }
+        return encode(StepResult.Action.SYNTAX_ERROR, 0);
+    }
+
+    /**
+     * Checks if some characters are a word, ignoring case.
+     *
+     * @param from Where the characters start
+     * @param to Where they end
+     * @param word The word, in capitals
+     * @return If they're the same
+     */
+    private boolean matches(int from, int to, String word) {
+        if (to - from != word.length()) {
+            return false;
+        }
+
+        for (int i = 0; i < word.length(); i++) {
+            if (Character.toUpperCase(charAt(from + i)) != word.charAt(i)) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    /**
+     * Finds the first space in some characters.
+     *
+     * @param from Where to start looking
+     * @param to Where to stop looking
+     * @return Where it is, or to if there isn't one
+     */
+    private int indexOfSpace(int from, int to) {
+        while (from < to && charAt(from) != ' ') {
+            from++;
+        }
+        return from;
+    }
+
+    /**
+     * Gets a character from the line or buffer.
+     *
+     * @param index Where it is
+     * @return The character
+     */
+    private char charAt(int index) {
+        return line != null ? line.charAt(index) : buffer[index];
+    }
+}
@@ -1,17 +1,20 @@
 package main;
 
-import difficulty.*;
+import map.DiffRenderer;
 import map.Map;
 import map.MapParser;
-import player.BotPlayer;
-import player.HumanPlayer;
+import map.MapRenderer;
+import replay.EventLogWriter;
 import ui.BotDifficultySelector;
 import ui.MapSelector;
 
 import java.io.BufferedReader;
+import java.io.FileOutputStream;
 import java.io.IOException;
 import java.io.InputStreamReader;
-import java.util.Arrays;
+import java.io.OutputStream;
+import java.nio.file.Path;
+import java.nio.file.Paths;
 
 import static ui.BotDifficultySelector.*;
 import static ui.BotDifficultySelector.Difficulty.*;
@@ -19,6 +22,7 @@ import static ui.BotDifficultySelector.Difficulty.EASY;
 
 /**
  * Main class for the game. It loads the map and plays the game. Equivalent to the GameLogic class provided by Bath.
+ * The rules themselves are in main.GameEngine; this is the console for it, reading commands and printing what they did.
  */
 
 public class DungeonsOfDoom {
@@ -31,6 +35,22 @@ public class DungeonsOfDoom {
      * Radius when executing the LOOK command
      */
     public static final int LOOK_RADIUS = 5;
+    /**
+     * The bot has to spawn further than this many moves away from the human
+     */
+    public static final int SPAWN_DISTANCE = 2;
+    /**
+     * How many bots to play against, set with -Ddod.bots=N
+     */
+    private static final int BOT_COUNT = Integer.getInteger("dod.bots", 1);
+    /**
+     * A terminal to show a live view of the whole map on, set with -Ddod.spectator=/dev/pts/N
+     */
+    private static final String SPECTATOR_TERMINAL = System.getProperty("dod.spectator");
+    /**
+     * A directory to write an event log of every game to, so it can be replayed with replay.Replayer, set with -Ddod.log=DIR
+     */
+    private static final String LOG_DIRECTORY = System.getProperty("dod.log");
 
 
 
@@ -74,77 +94,56 @@ public class DungeonsOfDoom {
                 .parse()
                 .load(); // Parses then makes a new map object
 
-        // Initialise the players
-        HumanPlayer human = new HumanPlayer(map.generateSpawnLocation());
-        BotPlayer bot = new BotPlayer(map.generateSpawnLocation());
+        // Everything random in the game comes from this, so the same seed and commands play the same game
+        GameRandom random = GameRandom.fromProperty();
+
+        if (BOT_COUNT < 1) {
+            System.out.println("Error: There has to be at least one bot!");
+            System.exit(1);
+        }
 
         BotDifficultySelector difficultySelector = new BotDifficultySelector(reader);
         difficultySelector.select(); // Select a bot difficulty
 
-        bot.setDifficulty(selectDifficulty(difficultySelector, bot));
+        System.out.println("You have selected the " + difficultySelector.getSelectedDifficulty().toString() + " difficulty!");
+        if (difficultySelector.getSelectedDifficulty() == CUSTOM) {
+            System.out.println("Custom difficulty level is set at " + difficultySelector.getCustomWeighting());
+        }
 
+        GameEngine engine = new GameEngine(map, random, difficultySelector.getSelectedDifficulty(),
+                difficultySelector.getCustomWeighting(), BOT_COUNT);
+        EventLogWriter log = openLog(fileName, random.getSeed(), difficultySelector);
+        if (log != null) {
+            engine.addListener(log);
+        }
 
         // Keep repeating until the player wins or loses
         System.out.println("You need " + map.getGoldRequired() + " gold to escape this dungeon...");
         System.out.println("Now be careful as you enter the " + map.getName().replaceAll("_", " ").toUpperCase().trim() + "!");
 
-        boolean gameEnded = false;
-        boolean gameWon = false;
-        boolean caught = false;
+        OutputStream spectatorTerminal = openSpectatorTerminal();
+        DiffRenderer spectator = spectatorTerminal != null ? new DiffRenderer(MapRenderer.getDefaultStyle(), spectatorTerminal) : null;
 
         // Main execution of the game
 
-        while (!caught && !gameEnded) {
+        while (!engine.isGameOver()) {
 
             try {
+                if (spectator != null) {
+                    spectator.render(map, engine.getHuman().getLocation(), engine.getBots().getLocations());
+                }
 
-                String[] input = reader.readLine().split(" "); // Takes the input and splits it by whitespace.
-                String command = input[0].toUpperCase().trim(); // The first bit separated by whitespace is the command
-                String[] args = Arrays.copyOfRange(input, 1, input.length); // Takes the rest of the input as the arguments.
-
-                switch (command) {
-                    case "GOLD":
-                        human.executeGoldCommand();
-                        break;
-
-                    case "PICKUP":
-                        human.executePickupCommand(map);
-                        break;
-
-                    case "QUIT":
-                    case "EXIT": // The spec mentioned both QUIT and EXIT so I thought I'd put both in just in case.
-                        gameWon = human.executeQuitCommand(map);
-                        gameEnded = true; // The game ends whenever the user types QUIT/EXIT, regardless of whether the player should win or not
-                        break;
-
-                    case "MOVE":
-                        if (args.length == 1) { // Only needs one argument (N,E,S,W)
-                            try {
-                                Location.Direction direction = Location.Direction.valueOf(args[0].toUpperCase()); // Converts string into enum if possible
-                                human.executeMoveCommand(map, direction);
-                            } catch (IllegalArgumentException e) {
-                                System.out.println(SYNTAX_MOVE_ERROR); // If not N/E/S/W
-                            }
-
-                        } else {
-                            System.out.println(SYNTAX_MOVE_ERROR);
-                        }
-                        break;
-
-                    case "LOOK":
-                        map.executeLookCommand(human.getLocation(), bot.getLocation(), LOOK_RADIUS);
-                        break;
-
-                    case "HELLO":
-                        map.executeHelloCommand();
-                        break;
-
-                    default:
-                        invalidCommand(command);
+                String line = reader.readLine();
+                if (line == null) {
+                    break; // The input has ended, so the game can't carry on
                 }
 
-                bot.callTurn(map, human.getLocation()); // Now it's the bots turn.
-                caught = isCaught(human.getLocation(), bot.getLocation()); // If the bot has the same location
+                for (StepResult result : engine.stepAll(line)) { // A line can hold commands separated by semicolons
+                    printResult(map, result);
+                }
+                if (log != null) {
+                    log = flushLog(engine, log);
+                }
 
             } catch (IOException e) {
                 System.out.println("Error: Unable to read command");
@@ -153,11 +152,23 @@ public class DungeonsOfDoom {
 
         try {
             reader.close();
+
+            if (spectatorTerminal != null) {
+                spectatorTerminal.close();
+            }
         } catch (IOException e) {
             e.printStackTrace();
         }
 
-        if (gameWon) {
+        if (log != null) {
+            try {
+                log.finish(engine);
+            } catch (IOException e) {
+                System.out.println("Error: Unable to write the event log: " + e.getMessage());
+            }
+        }
+
+        if (engine.isWon()) {
             // Game Won
             System.out.println("WIN");
             System.out.println("Congratulations! You escaped the bot!");
@@ -168,49 +179,114 @@ public class DungeonsOfDoom {
     }
 
     /**
-     * Takes the Selected Difficulty from the Selection menu and selects the appropriate class to run.
+     * Prints what the human's command did, the same way the commands always have.
      *
-     * @param selector The Difficulty Selector
-     * @param bot The player.BotPlayer
-     * @return The Selected Bot Strategy
+     * @param map The map
+     * @param result What happened in the step
      */
-    private BotStrategy selectDifficulty(BotDifficultySelector selector, BotPlayer bot) {
-        System.out.println("You have selected the " + selector.getSelectedDifficulty().toString() + " difficulty!");
-
-        switch (selector.getSelectedDifficulty()) {
-            case EASY:
-                return new EasyBotStrategy(bot);
-            case MEDIUM:
-                return new CustomBotStrategy(bot, 3); // Medium is just the custom with a random weighting of 3.
-            case HARD:
-                return new HardBotStrategy(bot);
-            case GODLIKE:
-                return new GodlikeBotStrategy(bot);
-            case CUSTOM:
-                System.out.println("Custom difficulty level is set at " + selector.getCustomWeighting());
-                return new CustomBotStrategy(bot, selector.getCustomWeighting());
+    private void printResult(Map map, StepResult result) {
+        switch (result.getAction()) {
+            case GOLD:
+                System.out.println("Gold owned: " + result.getGoldOwned());
+                break;
+
+            case PICKUP:
+                System.out.println(result.isSuccess() ? "SUCCESS. Gold owned: " + result.getGoldOwned() : "FAIL");
+                break;
+
+            case MOVE:
+                System.out.println(result.isSuccess() ? "SUCCESS" : "FAIL");
+                break;
+
+            case SYNTAX_ERROR:
+                System.out.println(SYNTAX_MOVE_ERROR);
+                break;
+
+            case LOOK:
+                map.executeLookCommand(result.getHumanLocation(), result.getLookBots(), LOOK_RADIUS);
+                break;
+
+            case HELLO:
+                System.out.println("Gold to win: " + result.getGoldRequired());
+                break;
+
+            case INVALID:
+                invalidCommand(result.getCommand());
+                break;
+
             default:
-                throw new IllegalStateException("Difficulty doesn't exist, shouldn't be called");
+                break; // QUIT only prints when the game ends
         }
     }
 
     /**
-     * Prints out to the console that what the human typed was an invalid command.
+     * Creates the event log for this game, if a directory for them has been set. It's named after the map, the seed
+     * and when the game started.
      *
-     * @param command The string they typed
+     * @param mapFile The name of the map's file
+     * @param seed The game's seed
+     * @param difficultySelector The selected difficulty
+     * @return The log, or null if there isn't one (or it can't be created)
      */
-    private void invalidCommand(String command) {
-        System.out.println(String.format("Invalid Command %s!", command));
+    private EventLogWriter openLog(String mapFile, long seed, BotDifficultySelector difficultySelector) {
+        if (LOG_DIRECTORY == null) {
+            return null;
+        }
+
+        String name = mapFile.replaceFirst("\\.[^.]*$", "") + "-" + seed + "-" + System.currentTimeMillis();
+        Path file = Paths.get(LOG_DIRECTORY, name + EventLogWriter.EXTENSION);
+        try {
+            return EventLogWriter.create(file, seed, mapFile, difficultySelector.getSelectedDifficulty(),
+                    difficultySelector.getCustomWeighting(), BOT_COUNT);
+        } catch (IOException e) {
+            System.out.println("Error: Unable to create the event log " + file);
+            return null;
+        }
+    }
+
+    /**
+     * Hands what's been logged to be written in the background, so the next command isn't kept waiting for it. If the
+     * log can't be written, the game carries on without it.
+     *
+     * @param engine The game
+     * @param log The log
+     * @return The log, or null if it had to be stopped
+     */
+    private EventLogWriter flushLog(GameEngine engine, EventLogWriter log) {
+        try {
+            log.flush();
+            return log;
+        } catch (IOException e) {
+            System.out.println("Error: Unable to write the event log: " + e.getMessage());
+            engine.removeListener(log);
+            return null;
+        }
     }
 
     /**
-     * Gets if the player has been caught by the bot.
+     * Opens the spectator's terminal, if one has been set.
      *
-     * @param humanLocation Humans current location
-     * @param botLocation Bots current location
-     * @return If the bot has the same location as the human.
+     * @return The terminal, or null if there isn't one (or it can't be opened)
      */
-    private boolean isCaught(Location humanLocation, Location botLocation) {
-        return botLocation.equals(humanLocation);
+    private OutputStream openSpectatorTerminal() {
+        if (SPECTATOR_TERMINAL == null) {
+            return null;
+        }
+
+        try {
+            return new FileOutputStream(SPECTATOR_TERMINAL);
+        } catch (IOException e) {
+            System.out.println("Error: Unable to open the spectator terminal " + SPECTATOR_TERMINAL);
+            return null;
+        }
+    }
+
+    /**
+     * Prints out to the console that what the human typed was an invalid command.
+     *
+     * @param command The string they typed
+     */
+    private void invalidCommand(String command) {
+        System.out.println(String.format("Invalid Command %s!", command));
     }
 }
\ No newline at end of file
@@ -0,0 +1,440 @@
+package main;
+
+import difficulty.*;
+import map.Map;
+import map.MapTemplate;
+import player.BotGroup;
+import player.BotPlayer;
+import player.HumanPlayer;
+import ui.BotDifficultySelector.Difficulty;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.function.IntPredicate;
+
+/**
+ * The rules of the game, without the console. It holds the map and the players, and plays the game one command at a
+ * time: each step runs the human's command and then the bots' turns, and says what happened in a main.StepResult.
+ *
+ * Nothing is ever read from or printed to the console here, so games can be played by other code (tests, simulations,
+ * tournaments) as fast as the bots can decide. main.DungeonsOfDoom is just the console on top of this: it reads the
+ * commands, and prints the results.
+ */
+public class GameEngine {
+
+    private static final Location.Direction[] DIRECTIONS = Location.Direction.values(); // N, E, S, W
+
+    private static final String SNAPSHOT_MAGIC = "DODS";
+    private static final int SNAPSHOT_VERSION = 1;
+
+    private final Map map;
+    private final HumanPlayer human;
+    private final BotGroup bots;
+    private final Difficulty difficulty;
+    private final int customWeighting;
+
+    private final CommandDecoder decoder = new CommandDecoder();
+    private final IntPredicate[] handlers = new IntPredicate[StepResult.Action.values().length];
+    private final List<StepListener> listeners = new ArrayList<>();
+
+    private boolean gameOver = false;
+    private boolean won = false;
+    private int turn = 0;
+    private boolean lastSuccess;
+    private boolean lastCaught;
+
+    /**
+     * Sets up a game: spawns the human and the bots, and gives every bot the difficulty's strategy.
+     *
+     * @param map The map to play on
+     * @param random The game's random numbers, which every spawn and bot gets a split of
+     * @param difficulty The bots' difficulty
+     * @param customWeighting The weighting for the CUSTOM difficulty (ignored by the others)
+     * @param botCount How many bots to play against
+     */
+    public GameEngine(Map map, GameRandom random, Difficulty difficulty, int customWeighting, int botCount) {
+        if (botCount < 1) {
+            throw new IllegalArgumentException("Error: There has to be at least one bot!");
+        }
+
+        this.map = map;
+        this.difficulty = difficulty;
+        this.customWeighting = customWeighting;
+        createHandlers();
+        GameRandom spawnRandom = random.split();
+
+        this.human = new HumanPlayer(map.generateSpawnLocation(spawnRandom));
+        this.bots = new BotGroup(map);
+        for (int i = 0; i < botCount; i++) {
+            bots.add(new BotPlayer(bots.generateSpawnLocation(map, spawnRandom, human.getLocation(), DungeonsOfDoom.SPAWN_DISTANCE)));
+        }
+
+        for (BotPlayer bot : bots.getBots()) {
+            bot.setDifficulty(createStrategy(difficulty, customWeighting, bot, random.split()));
+        }
+        prepareBots();
+    }
+
+    /**
+     * Sets up a game from a snapshot, with the players where they were and each bot's strategy carrying on from where
+     * it was (see main.GameSnapshot).
+     *
+     * @param template The map's template
+     * @param in The snapshot
+     */
+    private GameEngine(MapTemplate template, StateReader in) {
+        checkHeader(template, in);
+        try {
+            this.difficulty = Difficulty.valueOf(in.readString());
+        } catch (IllegalArgumentException e) {
+            throw new IllegalArgumentException("Error: The snapshot's difficulty doesn't exist!");
+        }
+        this.customWeighting = in.readVarint();
+        this.turn = in.readVarint();
+        this.gameOver = in.readBoolean();
+        this.won = in.readBoolean();
+        this.lastSuccess = in.readBoolean();
+        this.lastCaught = in.readBoolean();
+
+        this.map = Map.readState(template, in);
+        createHandlers();
+
+        this.human = new HumanPlayer(readLocation(in), in.readVarint());
+        this.bots = new BotGroup(map);
+        int botCount = in.readVarint();
+        if (botCount < 1) {
+            throw new IllegalArgumentException("Error: There has to be at least one bot!");
+        }
+
+        for (int i = 0; i < botCount; i++) {
+            BotPlayer bot = new BotPlayer(readLocation(in));
+            bots.add(bot);
+
+            BotStrategy strategy = createStrategy(difficulty, customWeighting, bot, new GameRandom(0));
+            strategy.readState(in); // Including the random numbers, so the placeholder above is never used
+            bot.setDifficulty(strategy);
+        }
+
+        if (!in.isFinished()) {
+            throw new IllegalArgumentException("Error: The snapshot has bytes left over!");
+        }
+        prepareBots();
+    }
+
+    /**
+     * Creates a game from a snapshot.
+     *
+     * @param template The map's template
+     * @param in The snapshot
+     * @return The game
+     */
+    static GameEngine restore(MapTemplate template, StateReader in) {
+        return new GameEngine(template, in);
+    }
+
+    /**
+     * Reads the start of a snapshot, and checks it's a snapshot of a game on this map.
+     *
+     * @param template The map's template
+     * @param in The snapshot
+     */
+    static void checkHeader(MapTemplate template, StateReader in) {
+        if (!SNAPSHOT_MAGIC.equals(in.readString())) {
+            throw new IllegalArgumentException("Error: This isn't a snapshot of a game!");
+        } else if (in.readVarint() != SNAPSHOT_VERSION) {
+            throw new IllegalArgumentException("Error: The snapshot is from a different version of the game!");
+        }
+
+        String name = in.readString();
+        int width = in.readVarint();
+        int height = in.readVarint();
+        if (!name.equals(template.getName()) || width != template.getWidth() || height != template.getHeight()) {
+            throw new IllegalArgumentException(String.format("Error: The snapshot is of a game on %s, not %s!",
+                    name, template.getName()));
+        }
+    }
+
+    /**
+     * Reads a player's location from a snapshot, which has to be on the map.
+     *
+     * @param in The snapshot
+     * @return The location
+     */
+    private Location readLocation(StateReader in) {
+        Location location = in.readLocation();
+        if (location == null || location.outOfBounds(map.getWidth(), map.getHeight())) {
+            throw new IllegalArgumentException("Error: The snapshot has a player off the map!");
+        }
+        return location;
+    }
+
+    /**
+     * Takes a snapshot of the whole game, which can be saved, or restored as many times as it's needed (see
+     * main.GameSnapshot). This game isn't changed.
+     *
+     * @return The snapshot
+     */
+    public GameSnapshot snapshot() {
+        MapTemplate template = map.getTemplate();
+        StateWriter out = new StateWriter(64 + 48 * bots.size());
+
+        out.writeString(SNAPSHOT_MAGIC);
+        out.writeVarint(SNAPSHOT_VERSION);
+        out.writeString(template.getName());
+        out.writeVarint(template.getWidth());
+        out.writeVarint(template.getHeight());
+
+        out.writeString(difficulty.name());
+        out.writeVarint(customWeighting);
+        out.writeVarint(turn);
+        out.writeBoolean(gameOver);
+        out.writeBoolean(won);
+        out.writeBoolean(lastSuccess);
+        out.writeBoolean(lastCaught);
+
+        map.writeState(out);
+        out.writeLocation(human.getLocation());
+        out.writeVarint(human.getGoldCollected());
+
+        out.writeVarint(bots.size());
+        for (BotPlayer bot : bots.getBots()) {
+            out.writeLocation(bot.getLocation());
+            bot.getDifficulty().writeState(out);
+        }
+        return new GameSnapshot(template, out.toByteArray());
+    }
+
+    /**
+     * Makes a separate copy of the game, which can be played on (to look ahead, for example) without changing this
+     * one. It's a snapshot restored straight away, so it shares the map's terrain but nothing that can change.
+     *
+     * @return The copy
+     */
+    public GameEngine fork() {
+        return snapshot().restore();
+    }
+
+    /**
+     * Creates the strategy for a difficulty.
+     *
+     * @param difficulty The difficulty
+     * @param customWeighting The weighting for the CUSTOM difficulty (ignored by the others)
+     * @param bot The player.BotPlayer
+     * @param random The bot's split of the game's random numbers
+     * @return The Bot Strategy
+     */
+    public static BotStrategy createStrategy(Difficulty difficulty, int customWeighting, BotPlayer bot, GameRandom random) {
+        switch (difficulty) {
+            case EASY:
+                return new EasyBotStrategy(bot, random);
+            case MEDIUM:
+                return new CustomBotStrategy(bot, 3, random); // Medium is just the custom with a random weighting of 3.
+            case HARD:
+                return new HardBotStrategy(bot, random);
+            case GODLIKE:
+                return new GodlikeBotStrategy(bot);
+            case MCTS:
+                return new MctsBotStrategy(bot, random);
+            case HORDE:
+                return new FlowFieldBotStrategy(bot);
+            case CUSTOM:
+                return new CustomBotStrategy(bot, customWeighting, random);
+            default:
+                throw new IllegalStateException("Difficulty doesn't exist, shouldn't be called");
+        }
+    }
+
+    /**
+     * Plays one step of the game: the human's command, then (unless they quit) every bot's turn.
+     *
+     * @param input The command as it was typed, e.g. "MOVE N"
+     * @return What happened
+     */
+    public StepResult step(String input) {
+        decoder.reset(input, false);
+        return step(decoder);
+    }
+
+    /**
+     * Plays a step for every command in a line, separated by semicolons (e.g. "MOVE N;MOVE N;PICKUP"), stopping early
+     * if the game ends.
+     *
+     * @param line The commands
+     * @return What happened in each step
+     */
+    public List<StepResult> stepAll(String line) {
+        decoder.reset(line, true);
+
+        List<StepResult> results = new ArrayList<>();
+        while (decoder.hasNext() && !gameOver) {
+            results.add(step(decoder));
+        }
+        return results;
+    }
+
+    /**
+     * Plays one step of the game for a command that's already been decoded (see main.CommandDecoder), without making
+     * a main.StepResult. The command goes through a table indexed by its opcode, and nothing is allocated for it, so this
+     * is the one to use for simulations. How it went can be read back with getters.
+     *
+     * @param command The decoded command
+     * @return If the command worked (a MOVE or PICKUP, or a QUIT that escaped)
+     */
+    public boolean execute(int command) {
+        if (gameOver) {
+            throw new IllegalStateException("Error: The game is already over!");
+        }
+
+        lastSuccess = handlers[CommandDecoder.opcode(command)].test(CommandDecoder.argument(command));
+
+        lastCaught = false;
+        if (!gameOver) {
+            bots.takeTurns(map, human.getLocation()); // Now it's the bots turn.
+            lastCaught = bots.isCaught(human.getLocation()); // If any bot has the same location
+            gameOver = lastCaught;
+        }
+        turn++;
+
+        for (int i = 0; i < listeners.size(); i++) {
+            listeners.get(i).stepTaken(this, command);
+        }
+        return lastSuccess;
+    }
+
+    /**
+     * Plays a step for the next command of a decoder, and says what happened.
+     *
+     * @param decoder The decoder
+     * @return What happened
+     */
+    private StepResult step(CommandDecoder decoder) {
+        int command = decoder.next();
+        StepResult.Action action = CommandDecoder.action(command);
+
+        // A LOOK shows the bots where they were before they take their turns
+        List<Location> lookBots = action == StepResult.Action.LOOK ? bots.getLocations() : null;
+        execute(command);
+
+        String text = action == StepResult.Action.INVALID ? decoder.getCommandText() : action.name();
+        return new StepResult(action, text, action != StepResult.Action.QUIT && lastSuccess, human.getGoldCollected(),
+                map.getGoldRequired(), human.getLocation(), lookBots, lastCaught, gameOver, won);
+    }
+
+    /**
+     * Makes the table of what each opcode does. Each handler gets the command's argument, and returns if it worked.
+     */
+    private void createHandlers() {
+        handlers[StepResult.Action.GOLD.ordinal()] = argument -> false;
+        handlers[StepResult.Action.PICKUP.ordinal()] = argument -> human.pickupGold(map);
+        handlers[StepResult.Action.QUIT.ordinal()] = argument -> {
+            won = human.canEscape(map);
+            gameOver = true; // The game ends whenever the user types QUIT/EXIT, regardless of whether the player should win or not
+            return won;
+        };
+        handlers[StepResult.Action.MOVE.ordinal()] = argument -> human.move(map, DIRECTIONS[argument]);
+        handlers[StepResult.Action.LOOK.ordinal()] = argument -> false;
+        handlers[StepResult.Action.HELLO.ordinal()] = argument -> false;
+        handlers[StepResult.Action.SYNTAX_ERROR.ordinal()] = argument -> false;
+        handlers[StepResult.Action.INVALID.ordinal()] = argument -> false;
+    }
+
+    /**
+     * Lets every bot's strategy get ready for the map (see difficulty.BotStrategy#prepare), so anything slow to build
+     * is built while the game is set up rather than in the first turn.
+     */
+    private void prepareBots() {
+        for (BotPlayer bot : bots.getBots()) {
+            bot.getDifficulty().prepare(map);
+        }
+    }
+
+    /**
+     * Adds a listener which is told about every step after it's been played.
+     *
+     * @param listener The listener
+     */
+    public void addListener(StepListener listener) {
+        listeners.add(listener);
+    }
+
+    /**
+     * Stops a listener from being told about steps.
+     *
+     * @param listener The listener
+     */
+    public void removeListener(StepListener listener) {
+        listeners.remove(listener);
+    }
+
+    /**
+     * Gets if the last command worked (a MOVE or PICKUP, or a QUIT that escaped).
+     *
+     * @return If it worked
+     */
+    public boolean isLastSuccess() {
+        return lastSuccess;
+    }
+
+    /**
+     * Gets if a bot caught the human in the last step.
+     *
+     * @return If the human was caught
+     */
+    public boolean isLastCaught() {
+        return lastCaught;
+    }
+
+    /**
+     * Gets the map being played on.
+     *
+     * @return The map
+     */
+    public Map getMap() {
+        return map;
+    }
+
+    /**
+     * Gets the human player.
+     *
+     * @return The human
+     */
+    public HumanPlayer getHuman() {
+        return human;
+    }
+
+    /**
+     * Gets the bots.
+     *
+     * @return The bots
+     */
+    public BotGroup getBots() {
+        return bots;
+    }
+
+    /**
+     * Gets how many steps have been played.
+     *
+     * @return The number of steps
+     */
+    public int getTurn() {
+        return turn;
+    }
+
+    /**
+     * Gets if the game has ended, by the human being caught or quitting.
+     *
+     * @return If the game is over
+     */
+    public boolean isGameOver() {
+        return gameOver;
+    }
+
+    /**
+     * Gets if the human won, by quitting on an exit with enough gold.
+     *
+     * @return If the human won
+     */
+    public boolean isWon() {
+        return won;
+    }
+}
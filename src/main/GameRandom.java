@@ -0,0 +1,183 @@
+package main;
+
+import java.util.SplittableRandom;
+
+/**
+ * The random numbers for a game. A game has one, seeded once when it starts, and everything random in the game (spawns
+ * and every bot) gets its own split of it. Playing the same commands with the same seed then always plays out the same
+ * game, which is what regression tests and benchmarks need.
+ *
+ * It's the SplitMix64 algorithm, the same as java.util.SplittableRandom (and it gives exactly the same numbers and
+ * splits), so drawing a number is a few arithmetic operations on a long with nothing allocated or shared between
+ * threads (unlike java.util.Random, which is synchronised on a shared seed). Splitting gives an independent generator
+ * whose numbers only depend on the seed and the order of the splits, so each bot can draw from its own without changing
+ * what the others get. It's written out here rather than wrapping SplittableRandom so that its state (two longs) can be
+ * saved and restored in a snapshot of the game (see main.GameSnapshot). Like SplittableRandom, one GameRandom shouldn't
+ * be used by more than one thread at once.
+ */
+public final class GameRandom {
+
+    private static final Location.Direction[] DIRECTIONS = Location.Direction.values(); // N, E, S, W
+
+    private static final long GOLDEN_GAMMA = 0x9e3779b97f4a7c15L;
+
+    private long state;
+    private long gamma; // Always odd
+    private long seed;
+
+    /**
+     * Creates a generator from a seed.
+     *
+     * @param seed The seed
+     */
+    public GameRandom(long seed) {
+        this(seed, GOLDEN_GAMMA, seed);
+    }
+
+    /**
+     * Creates a generator from a split.
+     *
+     * @param state Where it starts
+     * @param gamma How far it steps each number
+     * @param seed The seed of the game it was split from
+     */
+    private GameRandom(long state, long gamma, long seed) {
+        this.state = state;
+        this.gamma = gamma;
+        this.seed = seed;
+    }
+
+    /**
+     * Creates the generator for a game, seeded with -Ddod.seed if it's set, otherwise with a random seed.
+     *
+     * @return The generator
+     */
+    public static GameRandom fromProperty() {
+        Long seed = Long.getLong("dod.seed");
+        return new GameRandom(seed != null ? seed : new SplittableRandom().nextLong());
+    }
+
+    /**
+     * Splits off a new generator for something in the game (a bot, for example).
+     *
+     * @return The new generator
+     */
+    public GameRandom split() {
+        return new GameRandom(mix64(nextState()), mixGamma(nextState()), seed);
+    }
+
+    /**
+     * Gets the seed of the game this generator belongs to, which plays the game again when given to -Ddod.seed.
+     *
+     * @return The seed
+     */
+    public long getSeed() {
+        return seed;
+    }
+
+    /**
+     * Gets a random number from 0 up to (but not including) a bound.
+     *
+     * @param bound The bound, which has to be positive
+     * @return The random number
+     */
+    public int nextInt(int bound) {
+        if (bound <= 0) {
+            throw new IllegalArgumentException("Error: The bound has to be positive!");
+        }
+
+        int r = mix32(nextState());
+        int m = bound - 1;
+        if ((bound & m) == 0) { // A power of two, so just the low bits
+            return r & m;
+        }
+        for (int u = r >>> 1; u + m - (r = u % bound) < 0; u = mix32(nextState()) >>> 1) {
+            // Numbers from the top of the range would make the low ones more likely, so they're drawn again
+        }
+        return r;
+    }
+
+    /**
+     * Gets a random direction, each one equally likely.
+     *
+     * @return N, E, S or W
+     */
+    public Location.Direction nextDirection() {
+        return DIRECTIONS[nextInt(DIRECTIONS.length)];
+    }
+
+    /**
+     * Writes where this generator has got to, for a snapshot of the game.
+     *
+     * @param out Where to write it
+     */
+    public void writeState(StateWriter out) {
+        out.writeLong(state);
+        out.writeLong(gamma);
+        out.writeLong(seed);
+    }
+
+    /**
+     * Carries on from where a generator had got to when it was written, so it draws the same numbers from then on.
+     *
+     * @param in Where to read it from
+     */
+    public void readState(StateReader in) {
+        long state = in.readLong();
+        long gamma = in.readLong();
+        if ((gamma & 1) == 0) {
+            throw new IllegalArgumentException("Error: The snapshot's random numbers are invalid!");
+        }
+
+        this.state = state;
+        this.gamma = gamma;
+        this.seed = in.readLong();
+    }
+
+    /**
+     * Steps the state on.
+     *
+     * @return The new state
+     */
+    private long nextState() {
+        return state += gamma;
+    }
+
+    /**
+     * Turns a state into a random long (David Stafford's variant 13 of the MurmurHash3 finaliser).
+     *
+     * @param z The state
+     * @return The random number
+     */
+    private static long mix64(long z) {
+        z = (z ^ (z >>> 30)) * 0xbf58476d1ce4e5b9L;
+        z = (z ^ (z >>> 27)) * 0x94d049bb133111ebL;
+        return z ^ (z >>> 31);
+    }
+
+    /**
+     * Turns a state into a random int.
+     *
+     * @param z The state
+     * @return The random number
+     */
+    private static int mix32(long z) {
+        z = (z ^ (z >>> 33)) * 0x62a9d9ed799705f5L;
+        return (int) (((z ^ (z >>> 28)) * 0xcb24d0a5c88c35b3L) >>> 32);
+    }
+
+    /**
+     * Turns a state into the gamma of a split, which has to be odd and have enough bits changing for its numbers to
+     * look random.
+     *
+     * @param z The state
+     * @return The gamma
+     */
+    private static long mixGamma(long z) {
+        z = (z ^ (z >>> 33)) * 0xff51afd7ed558ccdL;
+        z = (z ^ (z >>> 33)) * 0xc4ceb9fe1a85ec53L;
+        z = (z ^ (z >>> 33)) | 1L;
+        int n = Long.bitCount(z ^ (z >>> 1));
+        return n < 24 ? z ^ 0xaaaaaaaaaaaaaaaaL : z;
+    }
+}
@@ -0,0 +1,110 @@
+package main;
+
+import map.MapTemplate;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+
+/**
+ * Everything about a game at one moment, so it can be saved and carried on later (or somewhere else), or forked to
+ * try out moves without changing the real game.
+ *
+ * A snapshot is the game written out by main.GameEngine#snapshot in a compact binary format (see main.StateWriter):
+ * the tiles that have changed on the map (not the terrain, which is in the map's template), the human, the bots, what
+ * each bot's strategy remembers (like when it last LOOKed and where it saw the human) and where every random number
+ * generator has got to. So a restored game plays on exactly the same as the original would have, and a typical one is
+ * a few hundred bytes. It's kept with the map's template, so restoring it in the same process doesn't need to load the
+ * map again; restoring one that's been saved to a file needs the template of the same map.
+ *
+ * Only the game is in a snapshot, not what's watching it: listeners (like an event log) aren't carried over to a
+ * restored game.
+ */
+public final class GameSnapshot {
+
+    private final MapTemplate template;
+    private final byte[] data;
+
+    /**
+     * Creates a snapshot.
+     *
+     * @param template The map's template
+     * @param data The game, as written by main.GameEngine
+     */
+    GameSnapshot(MapTemplate template, byte[] data) {
+        this.template = template;
+        this.data = data;
+    }
+
+    /**
+     * Reads a snapshot from bytes written by toByteArray, checking that it's of a game on this map.
+     *
+     * @param template The template of the map the game was on
+     * @param data The bytes
+     * @return The snapshot
+     */
+    public static GameSnapshot fromByteArray(MapTemplate template, byte[] data) {
+        GameSnapshot snapshot = new GameSnapshot(template, data.clone());
+        GameEngine.checkHeader(template, new StateReader(snapshot.data));
+        return snapshot;
+    }
+
+    /**
+     * Reads a snapshot from a file written by save.
+     *
+     * @param file The file
+     * @param template The template of the map the game was on
+     * @return The snapshot
+     * @throws IOException If the file can't be read
+     */
+    public static GameSnapshot load(Path file, MapTemplate template) throws IOException {
+        return fromByteArray(template, Files.readAllBytes(file));
+    }
+
+    /**
+     * Saves the snapshot to a file.
+     *
+     * @param file The file
+     * @throws IOException If the file can't be written
+     */
+    public void save(Path file) throws IOException {
+        Files.write(file, data);
+    }
+
+    /**
+     * Creates a new game from the snapshot, which carries on from where the game was. Every call gives a separate
+     * game, so the same snapshot can be forked as many times as it's needed.
+     *
+     * @return The game
+     */
+    public GameEngine restore() {
+        return GameEngine.restore(template, new StateReader(data));
+    }
+
+    /**
+     * Gets the snapshot's bytes.
+     *
+     * @return A copy of the bytes
+     */
+    public byte[] toByteArray() {
+        return data.clone();
+    }
+
+    /**
+     * Gets how big the snapshot is.
+     *
+     * @return The number of bytes
+     */
+    public int size() {
+        return data.length;
+    }
+
+    /**
+     * Gets the template of the map the game is on.
+     *
+     * @return The template
+     */
+    public MapTemplate getTemplate() {
+        return template;
+    }
+}
@@ -67,7 +67,9 @@ public class Location {
      * @return If they're near
      */
     public boolean isNear(Location location, int radius) {
-        return Math.sqrt(Math.pow((row - location.getRow()), 2) + Math.pow(col - location.getCol(), 2)) <= radius;
+        int rows = row - location.getRow();
+        int cols = col - location.getCol();
+        return rows * rows + cols * cols <= radius * radius; // The same as comparing the distance, without the sqrt
     }
 
     /**
@@ -0,0 +1,141 @@
+package main;
+
+import java.nio.charset.StandardCharsets;
+
+/**
+ * Reads the bytes of a snapshot of a game (see main.GameSnapshot), in the same order and encoding as
+ * main.StateWriter wrote them. Anything that isn't a valid snapshot (cut off, or a number too big) is an
+ * IllegalArgumentException.
+ */
+public final class StateReader {
+
+    private final byte[] data;
+    private int position;
+
+    /**
+     * Creates a reader.
+     *
+     * @param data The snapshot's bytes
+     */
+    public StateReader(byte[] data) {
+        this.data = data;
+    }
+
+    /**
+     * Reads a number that can't be negative.
+     *
+     * @return The number
+     */
+    public int readVarint() {
+        long value = readUnsigned();
+        if (value > Integer.MAX_VALUE) {
+            throw new IllegalArgumentException("Error: The snapshot has a number too big at byte " + position + "!");
+        }
+        return (int) value;
+    }
+
+    /**
+     * Reads a number that can be negative.
+     *
+     * @return The number
+     */
+    public int readSignedVarint() {
+        long value = readUnsigned();
+        long decoded = (value >>> 1) ^ -(value & 1);
+        if (decoded != (int) decoded) {
+            throw new IllegalArgumentException("Error: The snapshot has a number too big at byte " + position + "!");
+        }
+        return (int) decoded;
+    }
+
+    /**
+     * Reads a whole long.
+     *
+     * @return The number
+     */
+    public long readLong() {
+        require(8);
+        long value = 0;
+        for (int i = 0; i < 8; i++) {
+            value = (value << 8) | (data[position++] & 0xFF);
+        }
+        return value;
+    }
+
+    /**
+     * Reads true or false.
+     *
+     * @return The value
+     */
+    public boolean readBoolean() {
+        require(1);
+        return data[position++] != 0;
+    }
+
+    /**
+     * Reads a location, which can be null.
+     *
+     * @return The location
+     */
+    public Location readLocation() {
+        if (!readBoolean()) {
+            return null;
+        }
+
+        int col = readSignedVarint();
+        return new Location(col, readSignedVarint());
+    }
+
+    /**
+     * Reads a string.
+     *
+     * @return The string
+     */
+    public String readString() {
+        int length = readVarint();
+        require(length);
+
+        String text = new String(data, position, length, StandardCharsets.UTF_8);
+        position += length;
+        return text;
+    }
+
+    /**
+     * Gets if every byte has been read.
+     *
+     * @return If they have
+     */
+    public boolean isFinished() {
+        return position == data.length;
+    }
+
+    /**
+     * Reads a varint.
+     *
+     * @return The number, as unsigned
+     */
+    private long readUnsigned() {
+        long value = 0;
+
+        for (int shift = 0; shift < 64; shift += 7) {
+            require(1);
+            byte b = data[position++];
+            value |= (long) (b & 0x7F) << shift;
+            if (b >= 0) {
+                return value;
+            }
+        }
+        throw new IllegalArgumentException("Error: The snapshot has a number too long at byte " + position + "!");
+    }
+
+    /**
+     * Checks there are enough bytes left.
+     *
+     * @param bytes How many bytes are needed
+     */
+    private void require(int bytes) {
+        if (bytes > data.length - position) {
+            throw new IllegalArgumentException("Error: The snapshot is cut off!");
+        }
+    }
+}
@@ -0,0 +1,141 @@
+package main;
+
+import java.nio.charset.StandardCharsets;
+import java.util.Arrays;
+
+/**
+ * Builds the bytes of a snapshot of a game (see main.GameSnapshot) in memory. Most of a game is small numbers (tile
+ * positions, counters, flags), which are written as varints (7 bits a byte, lowest first, the top bit set on every
+ * byte but the last), so they usually take one or two bytes each. The state of the random numbers is written as whole
+ * longs, since it's spread over every bit.
+ *
+ * The bytes are kept in one array that doubles when it's full, so writing a snapshot of a typical game is a handful of
+ * copies and no other allocation.
+ */
+public final class StateWriter {
+
+    private byte[] buffer;
+    private int size = 0;
+
+    /**
+     * Creates a writer.
+     *
+     * @param capacity How many bytes to make room for at first
+     */
+    public StateWriter(int capacity) {
+        this.buffer = new byte[Math.max(16, capacity)];
+    }
+
+    /**
+     * Writes a number that can't be negative.
+     *
+     * @param value The number
+     */
+    public void writeVarint(int value) {
+        if (value < 0) {
+            throw new IllegalArgumentException("Error: Can't write a negative number as a varint!");
+        }
+        writeUnsigned(value);
+    }
+
+    /**
+     * Writes a number that can be negative, zigzag encoded so small negative numbers are small too.
+     *
+     * @param value The number
+     */
+    public void writeSignedVarint(int value) {
+        long wide = value;
+        writeUnsigned((wide << 1) ^ (wide >> 63));
+    }
+
+    /**
+     * Writes a whole long, as 8 bytes.
+     *
+     * @param value The number
+     */
+    public void writeLong(long value) {
+        ensureCapacity(8);
+        for (int shift = 56; shift >= 0; shift -= 8) {
+            buffer[size++] = (byte) (value >>> shift);
+        }
+    }
+
+    /**
+     * Writes true or false, as one byte.
+     *
+     * @param value The value
+     */
+    public void writeBoolean(boolean value) {
+        ensureCapacity(1);
+        buffer[size++] = (byte) (value ? 1 : 0);
+    }
+
+    /**
+     * Writes a location, which can be null.
+     *
+     * @param location The location
+     */
+    public void writeLocation(Location location) {
+        writeBoolean(location != null);
+        if (location != null) {
+            writeSignedVarint(location.getCol());
+            writeSignedVarint(location.getRow());
+        }
+    }
+
+    /**
+     * Writes a string, as its length then its UTF-8 bytes.
+     *
+     * @param text The string
+     */
+    public void writeString(String text) {
+        byte[] bytes = text.getBytes(StandardCharsets.UTF_8);
+        writeVarint(bytes.length);
+        ensureCapacity(bytes.length);
+        System.arraycopy(bytes, 0, buffer, size, bytes.length);
+        size += bytes.length;
+    }
+
+    /**
+     * Gets how many bytes have been written.
+     *
+     * @return The number of bytes
+     */
+    public int size() {
+        return size;
+    }
+
+    /**
+     * Gets a copy of the bytes that have been written.
+     *
+     * @return The bytes
+     */
+    public byte[] toByteArray() {
+        return Arrays.copyOf(buffer, size);
+    }
+
+    /**
+     * Writes a varint.
+     *
+     * @param value The number, which is treated as unsigned
+     */
+    private void writeUnsigned(long value) {
+        ensureCapacity(10);
+        while ((value & ~0x7FL) != 0) {
+            buffer[size++] = (byte) ((value & 0x7F) | 0x80);
+            value >>>= 7;
+        }
+        buffer[size++] = (byte) value;
+    }
+
+    /**
+     * Makes room for more bytes, doubling the buffer if it's needed.
+     *
+     * @param bytes How many more bytes there has to be room for
+     */
+    private void ensureCapacity(int bytes) {
+        if (size + bytes > buffer.length) {
+            buffer = Arrays.copyOf(buffer, Math.max(buffer.length * 2, size + bytes));
+        }
+    }
+}
@@ -0,0 +1,16 @@
+package main;
+
+/**
+ * Gets told about every step of a main.GameEngine, once the human's command and the bots' turns have been played, so
+ * that a game can be recorded (see replay.EventLogWriter) without the engine knowing how.
+ */
+public interface StepListener {
+
+    /**
+     * Called after a step has been played.
+     *
+     * @param engine The game
+     * @param command The decoded command the human played (see main.CommandDecoder)
+     */
+    void stepTaken(GameEngine engine, int command);
+}
@@ -0,0 +1,157 @@
+package main;
+
+import java.util.List;
+
+/**
+ * What happened in one step of a main.GameEngine: what the human's command did, and how the game stands after the bots
+ * have taken their turns. It can't be changed once it's been made.
+ *
+ * It holds everything the console needs to print the same messages as before, but nothing is printed (or formatted)
+ * until something asks, so a simulation that ignores it pays for none of that.
+ */
+public final class StepResult {
+
+    /**
+     * What the human's command was.
+     */
+    public enum Action {
+        GOLD,
+        PICKUP,
+        QUIT,
+        MOVE,
+        LOOK,
+        HELLO,
+        SYNTAX_ERROR, // A MOVE without exactly one of N / E / S / W
+        INVALID // Not a command at all
+    }
+
+    private final Action action;
+    private final String command;
+    private final boolean success;
+    private final int goldOwned;
+    private final int goldRequired;
+    private final Location humanLocation;
+    private final List<Location> lookBots;
+    private final boolean caught;
+    private final boolean gameOver;
+    private final boolean won;
+
+    /**
+     * Creates a result.
+     *
+     * @param action What the command was
+     * @param command The first word of the command in capitals if it wasn't a command, otherwise the action's name
+     * @param success If a MOVE or PICKUP worked
+     * @param goldOwned How much gold the human has after the command
+     * @param goldRequired How much gold is needed to escape
+     * @param humanLocation Where the human is after the command
+     * @param lookBots Where the bots were when the human looked (for a LOOK), otherwise null
+     * @param caught If a bot has caught the human
+     * @param gameOver If the game has ended
+     * @param won If the human escaped
+     */
+    StepResult(Action action, String command, boolean success, int goldOwned, int goldRequired, Location humanLocation,
+               List<Location> lookBots, boolean caught, boolean gameOver, boolean won) {
+        this.action = action;
+        this.command = command;
+        this.success = success;
+        this.goldOwned = goldOwned;
+        this.goldRequired = goldRequired;
+        this.humanLocation = humanLocation;
+        this.lookBots = lookBots == null ? null : List.copyOf(lookBots);
+        this.caught = caught;
+        this.gameOver = gameOver;
+        this.won = won;
+    }
+
+    /**
+     * Gets what the command was.
+     *
+     * @return The action
+     */
+    public Action getAction() {
+        return action;
+    }
+
+    /**
+     * Gets the first word of the command as it was typed, in capitals, for saying what wasn't a command. For any other
+     * action it's just the action's name, so no string is made for it.
+     *
+     * @return The command
+     */
+    public String getCommand() {
+        return command;
+    }
+
+    /**
+     * Gets if a MOVE or PICKUP worked. Always false for the other commands.
+     *
+     * @return If it worked
+     */
+    public boolean isSuccess() {
+        return success;
+    }
+
+    /**
+     * Gets how much gold the human has after the command.
+     *
+     * @return The gold owned
+     */
+    public int getGoldOwned() {
+        return goldOwned;
+    }
+
+    /**
+     * Gets how much gold is needed to escape, which is what HELLO tells the human.
+     *
+     * @return The gold required
+     */
+    public int getGoldRequired() {
+        return goldRequired;
+    }
+
+    /**
+     * Gets where the human is after the command.
+     *
+     * @return The human's location
+     */
+    public Location getHumanLocation() {
+        return humanLocation;
+    }
+
+    /**
+     * Gets where the bots were when the human looked, before they took their turns.
+     *
+     * @return The bots' locations, which can't be changed, or null if the command wasn't LOOK
+     */
+    public List<Location> getLookBots() {
+        return lookBots;
+    }
+
+    /**
+     * Gets if a bot caught the human this step.
+     *
+     * @return If the human has been caught
+     */
+    public boolean isCaught() {
+        return caught;
+    }
+
+    /**
+     * Gets if the game has ended, by the human being caught or quitting.
+     *
+     * @return If the game is over
+     */
+    public boolean isGameOver() {
+        return gameOver;
+    }
+
+    /**
+     * Gets if the human won, by quitting on an exit with enough gold.
+     *
+     * @return If the human won
+     */
+    public boolean isWon() {
+        return won;
+    }
+}
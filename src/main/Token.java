@@ -8,6 +8,15 @@ package main;
  */
 public class Token {
 
+    /**
+     * Shared instances of every token. A token is immutable, so the map only needs to store the character of a tile
+     * and can hand out one of these instead of allocating a new token for every tile.
+     */
+    public static final Token WALL = new Token('#');
+    public static final Token GOLD = new Token('G');
+    public static final Token FLOOR = new Token('.');
+    public static final Token EXIT = new Token('E');
+
     private char character;
 
     /**
@@ -45,6 +54,27 @@ public class Token {
         setChar(character);
     }
 
+    /**
+     * Gets the shared token for a character on the map.
+     *
+     * @param character The represented char on the map
+     * @return The shared token for that char
+     */
+    public static Token valueOf(char character) {
+        switch (character) {
+            case '#':
+                return WALL;
+            case 'G':
+                return GOLD;
+            case '.':
+                return FLOOR;
+            case 'E':
+                return EXIT;
+            default:
+                return new Token(character); // Prints out the error for the invalid token
+        }
+    }
+
     /**
      * Gets if you can walk on the tile (so not a Wall).
      *
@@ -128,7 +158,7 @@ public class Token {
      * @param character The token to be checked
      * @return If it's a valid token
      */
-    private boolean isValidToken(char character) {
+    public static boolean isValidToken(char character) {
         return character == TokenType.WALL.getChar() || character == TokenType.EXIT.getChar()
                 || character == TokenType.FLOOR.getChar() || character == TokenType.GOLD.getChar();
     }
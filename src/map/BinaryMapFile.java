@@ -0,0 +1,208 @@
+package map;
+
+import main.Token;
+
+import java.io.IOException;
+import java.nio.BufferUnderflowException;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.StandardOpenOption;
+import java.util.zip.CRC32;
+
+/**
+ * Reads and writes maps in the binary map format.
+ *
+ * The file is laid out as follows (all numbers are big-endian):
+ *
+ * - Magic number "DOOM" (4 bytes)
+ * - Format version (2 bytes)
+ * - Length of the map name in bytes (2 bytes), followed by the name in UTF-8
+ * - Gold required (4 bytes)
+ * - Width (4 bytes)
+ * - Height (4 bytes)
+ * - CRC32 checksum of the cell section (4 bytes)
+ * - The cell section: width * height bytes, one char per tile in row-major order
+ *
+ * Loading maps the file into memory, and the map uses the cell section directly without copying it. The mapping is
+ * read-only, and the map is a shared map.MapTemplate, so picking up gold in a game never writes back to the file.
+ * A binary map is checked the same way as a text one (valid tokens, walls round the edges, enough gold, and an exit
+ * that enough gold can be reached from), so a file with a valid checksum still can't load a map the text parsers
+ * would reject. Problems are reported at the line and column the tile would be on in the text format.
+ */
+public class BinaryMapFile {
+
+    /**
+     * The file extension used for binary maps.
+     */
+    public static final String EXTENSION = ".dmap";
+
+    private static final int MAGIC = 0x444F4F4D; // "DOOM"
+    private static final short VERSION = 1;
+
+    private BinaryMapFile() {
+    }
+
+    /**
+     * Loads a binary map from the maps folder.
+     *
+     * @param fileName The name of the file in the maps folder
+     * @return The loaded map
+     * @throws IOException If the file can't be read or isn't a valid binary map
+     * @throws MapFormatException If the map in the file isn't valid
+     */
+    public static Map load(String fileName) throws IOException, MapFormatException {
+        return load(Paths.get("maps", fileName));
+    }
+
+    /**
+     * Loads a binary map by memory-mapping the file.
+     *
+     * @param path The path of the file
+     * @return The loaded map
+     * @throws IOException If the file can't be read or isn't a valid binary map
+     * @throws MapFormatException If the map in the file isn't valid
+     */
+    public static Map load(Path path) throws IOException, MapFormatException {
+        try (FileChannel channel = FileChannel.open(path, StandardOpenOption.READ)) {
+            MappedByteBuffer buffer = channel.map(FileChannel.MapMode.READ_ONLY, 0, channel.size());
+
+            try {
+                if (buffer.getInt() != MAGIC) {
+                    throw new IOException("Error: " + path + " isn't a binary map file!");
+                }
+
+                short version = buffer.getShort();
+                if (version != VERSION) {
+                    throw new IOException(String.format("Error: Unsupported binary map version %d!", version));
+                }
+
+                byte[] nameBytes = new byte[buffer.getShort() & 0xFFFF];
+                buffer.get(nameBytes);
+
+                String name = new String(nameBytes, StandardCharsets.UTF_8);
+                int goldRequired = buffer.getInt();
+                int width = buffer.getInt();
+                int height = buffer.getInt();
+                int checksum = buffer.getInt();
+
+                if (width <= 0 || height <= 0 || (long) width * height != buffer.remaining()) {
+                    throw new IOException(String.format("Error: Cell section doesn't match the size %dx%d!", width, height));
+                }
+
+                ByteBuffer cells = buffer.slice();
+
+                if (checksum(cells) != checksum) {
+                    throw new IOException("Error: Checksum of " + path + " doesn't match, the file is corrupt!");
+                }
+                checkCells(cells, width, height, goldRequired);
+
+                Map map = new Map(name, goldRequired, width, height, cells);
+                map.getTemplate().getReachability().validate(); // Same check as the text parsers
+                return map;
+
+            } catch (BufferUnderflowException e) {
+                throw new IOException("Error: " + path + " has a truncated header!");
+            }
+        }
+    }
+
+    /**
+     * Writes a map's terrain out in the binary map format.
+     *
+     * @param map The terrain of the map to write
+     * @param path Where to write it to
+     * @throws IOException If the file can't be written
+     */
+    public static void write(MapTemplate map, Path path) throws IOException {
+        ByteBuffer cells = map.getCells();
+        cells.limit(map.getWidth() * map.getHeight());
+
+        byte[] nameBytes = map.getName().getBytes(StandardCharsets.UTF_8);
+        if (nameBytes.length > 0xFFFF) {
+            throw new IOException("Error: Map name is too long for a binary map!");
+        }
+
+        try (FileChannel channel = FileChannel.open(path, StandardOpenOption.CREATE, StandardOpenOption.WRITE,
+                StandardOpenOption.TRUNCATE_EXISTING)) {
+
+            ByteBuffer header = ByteBuffer.allocate(4 + 2 + 2 + nameBytes.length + 4 * 4);
+            header.putInt(MAGIC)
+                    .putShort(VERSION)
+                    .putShort((short) nameBytes.length)
+                    .put(nameBytes)
+                    .putInt(map.getGoldRequired())
+                    .putInt(map.getWidth())
+                    .putInt(map.getHeight())
+                    .putInt(checksum(cells))
+                    .flip();
+
+            while (header.hasRemaining()) {
+                channel.write(header);
+            }
+            while (cells.hasRemaining()) {
+                channel.write(cells);
+            }
+        }
+    }
+
+    /**
+     * Checks the cells the same way the text parsers do: every tile is a valid token, the edges are all walls, and
+     * there's at least as much gold as is required.
+     *
+     * @param cells The cells
+     * @param width The width of the map
+     * @param height The height of the map
+     * @param goldRequired The gold required to win
+     * @throws MapFormatException If the map isn't valid
+     */
+    private static void checkCells(ByteBuffer cells, int width, int height, int goldRequired) throws MapFormatException {
+        if (goldRequired < 0) {
+            throw new MapFormatException("Error: Cannot have negative gold!", 2, 1);
+        }
+
+        byte wall = (byte) Token.WALL.getChar();
+        byte gold = (byte) Token.GOLD.getChar();
+        long goldCount = 0;
+
+        for (int row = 0; row < height; row++) {
+            boolean edgeRow = row == 0 || row == height - 1;
+
+            for (int col = 0; col < width; col++) {
+                byte cell = cells.get(row * width + col);
+                if (cell == wall) {
+                    continue;
+                }
+
+                int line = StreamingMapParser.FIRST_MAP_LINE + row;
+                if (!Token.isValidToken((char) (cell & 0xFF))) {
+                    throw new MapFormatException(String.format("Error: Invalid token '%c' on map!", (char) (cell & 0xFF)), line, col + 1);
+                } else if (edgeRow || col == 0 || col == width - 1) {
+                    throw new MapFormatException("Error: This map doesn't have valid edges!", line, col + 1);
+                } else if (cell == gold) {
+                    goldCount++;
+                }
+            }
+        }
+
+        if (goldCount < goldRequired) {
+            throw new MapFormatException(String.format("Error: Not enough gold in the map (%d) based on the gold required specified!",
+                    goldCount), 2, 1);
+        }
+    }
+
+    /**
+     * Works out the CRC32 checksum of the cells, without moving the buffer's position.
+     *
+     * @param cells The cells
+     * @return The checksum
+     */
+    private static int checksum(ByteBuffer cells) {
+        CRC32 crc = new CRC32();
+        crc.update(cells.duplicate());
+        return (int) crc.getValue();
+    }
+}
@@ -0,0 +1,190 @@
+package map;
+
+import main.StateReader;
+import main.StateWriter;
+
+import java.util.Arrays;
+
+/**
+ * The tiles of one game's map which are different to the map's template (for example gold that has been picked up).
+ *
+ * This is a small open addressing hash table from cell index to the char of the tile, so a game that has only
+ * changed a handful of tiles only costs a few hundred bytes, no matter how big the map is.
+ */
+class CellOverlay {
+
+    private static final int EMPTY = -1;
+    private static final int INITIAL_CAPACITY = 8;
+
+    private int[] indexes;
+    private byte[] values;
+    private int size;
+
+    CellOverlay() {
+        this(INITIAL_CAPACITY);
+    }
+
+    private CellOverlay(int capacity) {
+        indexes = new int[capacity];
+        values = new byte[capacity];
+        Arrays.fill(indexes, EMPTY);
+    }
+
+    /**
+     * Gets the tile at a cell index, if it has been changed.
+     *
+     * @param index The cell index
+     * @param otherwise What to return if the tile hasn't been changed (the template's tile)
+     * @return The changed tile, or otherwise
+     */
+    byte get(int index, byte otherwise) {
+        if (size == 0) {
+            return otherwise;
+        }
+
+        int mask = indexes.length - 1;
+        for (int slot = mix(index) & mask; ; slot = (slot + 1) & mask) {
+            int next = indexes[slot];
+
+            if (next == index) {
+                return values[slot];
+            } else if (next == EMPTY) {
+                return otherwise;
+            }
+        }
+    }
+
+    /**
+     * Sets the tile at a cell index.
+     *
+     * @param index The cell index
+     * @param value The char of the tile
+     */
+    void put(int index, byte value) {
+        if ((size + 1) * 4 > indexes.length * 3) { // Keep it under 3/4 full
+            grow();
+        }
+
+        int mask = indexes.length - 1;
+        for (int slot = mix(index) & mask; ; slot = (slot + 1) & mask) {
+            int next = indexes[slot];
+
+            if (next == index) {
+                values[slot] = value;
+                return;
+            } else if (next == EMPTY) {
+                indexes[slot] = index;
+                values[slot] = value;
+                size++;
+                return;
+            }
+        }
+    }
+
+    /**
+     * Gets how many tiles have been changed.
+     *
+     * @return The number of changed tiles
+     */
+    int size() {
+        return size;
+    }
+
+    /**
+     * Gets the cell index of every changed tile, in the order they're kept in the table.
+     *
+     * @return The cell indexes
+     */
+    int[] indexes() {
+        int[] changed = new int[size];
+        int next = 0;
+        for (int index : indexes) {
+            if (index != EMPTY) {
+                changed[next++] = index;
+            }
+        }
+        return changed;
+    }
+
+    /**
+     * Creates a copy of this overlay, which can be changed without changing this one.
+     *
+     * @return The copy
+     */
+    CellOverlay copy() {
+        CellOverlay copy = new CellOverlay(0);
+        copy.indexes = indexes.clone();
+        copy.values = values.clone();
+        copy.size = size;
+        return copy;
+    }
+
+    /**
+     * Writes every changed tile, as its cell index and char, for a snapshot of the game.
+     *
+     * @param out Where to write them
+     */
+    void writeTo(StateWriter out) {
+        out.writeVarint(size);
+        for (int slot = 0; slot < indexes.length; slot++) {
+            if (indexes[slot] != EMPTY) {
+                out.writeVarint(indexes[slot]);
+                out.writeVarint(values[slot] & 0xFF);
+            }
+        }
+    }
+
+    /**
+     * Reads the changed tiles written by writeTo.
+     *
+     * @param in Where to read them from
+     * @param cellCount How many cells the map has
+     * @return The overlay
+     */
+    static CellOverlay readFrom(StateReader in, int cellCount) {
+        int count = in.readVarint();
+        if (count > cellCount) {
+            throw new IllegalArgumentException("Error: The snapshot has more changed tiles than the map has tiles!");
+        }
+
+        CellOverlay overlay = new CellOverlay();
+        for (int i = 0; i < count; i++) {
+            int index = in.readVarint();
+            if (index >= cellCount) {
+                throw new IllegalArgumentException(String.format("Error: The snapshot changes tile %d, which isn't on the map!", index));
+            }
+            overlay.put(index, (byte) in.readVarint());
+        }
+        return overlay;
+    }
+
+    /**
+     * Doubles the size of the table, putting every tile back in.
+     */
+    private void grow() {
+        int[] oldIndexes = indexes;
+        byte[] oldValues = values;
+
+        indexes = new int[oldIndexes.length * 2];
+        values = new byte[oldValues.length * 2];
+        Arrays.fill(indexes, EMPTY);
+        size = 0;
+
+        for (int slot = 0; slot < oldIndexes.length; slot++) {
+            if (oldIndexes[slot] != EMPTY) {
+                put(oldIndexes[slot], oldValues[slot]);
+            }
+        }
+    }
+
+    /**
+     * Spreads out the bits of a cell index, since neighbouring cells would otherwise all land in neighbouring slots.
+     *
+     * @param index The cell index
+     * @return The hash
+     */
+    private static int mix(int index) {
+        int hash = index * 0x9E3779B9;
+        return hash ^ (hash >>> 16);
+    }
+}
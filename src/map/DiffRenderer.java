@@ -0,0 +1,357 @@
+package map;
+
+import main.Location;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.util.Arrays;
+import java.util.List;
+
+/**
+ * Draws a live view of the whole map (for a spectator or admin terminal) which only sends what has changed each turn.
+ *
+ * It keeps a copy of the frame that's on the screen. The first frame (or the first after switching map or calling
+ * invalidate(), for example when the terminal has been resized) clears the screen and draws everything. After that,
+ * the only tiles that can have changed are where the players were, where they are now, and any tiles the map reports
+ * through map.MapListener (gold being picked up). Each of those that's actually different on the screen is sent as an
+ * ANSI cursor move followed by the tile, so the output for a turn depends on how much changed, not on how big the map
+ * is.
+ *
+ * Tiles are laid out in the same way as map.MapRenderer draws them in the same style.
+ */
+public class DiffRenderer implements MapListener {
+
+    private static final byte[] CLEAR_SCREEN = {'\033', '[', 'H', '\033', '[', '2', 'J'};
+
+    private static final byte HUMAN = 'P';
+    private static final byte BOT = 'B';
+
+    private final MapRenderer.Style style;
+    private final OutputStream out;
+
+    private byte[] buffer = new byte[256];
+    private int length;
+    private long bytesWritten;
+
+    private Map map;
+    private int width;
+    private int height;
+    private byte[] frame;
+    private boolean redraw = true;
+
+    private int[] dirty = new int[16];
+    private int dirtyCount;
+
+    private int humanCell = -1;
+    private int[] botCells = new int[0];
+    private int[] previousBotCells = new int[0];
+    private int botCount;
+    private long[] botMask; // Which cells have a bot on them, one bit per cell
+
+    /**
+     * Creates a renderer.
+     *
+     * @param style How to draw the tiles
+     * @param out Where to write the frames, which should be an ANSI terminal
+     */
+    public DiffRenderer(MapRenderer.Style style, OutputStream out) {
+        this.style = style;
+        this.out = out;
+    }
+
+    /**
+     * Draws the map with the players on it, only sending the tiles that have changed since the last frame.
+     *
+     * @param map The map
+     * @param humanLocation The human's location
+     * @param botLocations The bots' locations
+     */
+    public void render(Map map, Location humanLocation, List<Location> botLocations) {
+        if (map != this.map || map.getWidth() != width || map.getHeight() != height) {
+            attach(map);
+        }
+
+        int previousHuman = humanCell;
+        int previousBotCount = botCount;
+        moveBots(botLocations);
+        humanCell = toCell(humanLocation);
+
+        length = 0;
+        if (redraw) {
+            drawAll();
+            redraw = false;
+        } else {
+            drawCell(previousHuman);
+            for (int i = 0; i < previousBotCount; i++) {
+                drawCell(previousBotCells[i]);
+            }
+            for (int i = 0; i < dirtyCount; i++) {
+                drawCell(dirty[i]);
+            }
+            drawCell(humanCell);
+            for (int i = 0; i < botCount; i++) {
+                drawCell(botCells[i]);
+            }
+
+            if (length > 0) {
+                moveTo(height, 0); // Leave the cursor under the map
+            }
+        }
+        dirtyCount = 0;
+        flush();
+    }
+
+    /**
+     * Moves the bots to their new cells, keeping their old cells so they can be drawn over.
+     *
+     * @param botLocations The bots' locations
+     */
+    private void moveBots(List<Location> botLocations) {
+        int[] previous = botCells;
+        botCells = previousBotCells;
+        previousBotCells = previous;
+
+        for (int i = 0; i < botCount; i++) {
+            int cell = previousBotCells[i];
+            if (cell >= 0) {
+                botMask[cell >>> 6] &= ~(1L << cell);
+            }
+        }
+
+        if (botCells.length < botLocations.size()) {
+            botCells = new int[botLocations.size()];
+        }
+        botCount = botLocations.size();
+        for (int i = 0; i < botCount; i++) {
+            int cell = toCell(botLocations.get(i));
+            botCells[i] = cell;
+            if (cell >= 0) {
+                botMask[cell >>> 6] |= 1L << cell;
+            }
+        }
+    }
+
+    /**
+     * Makes the next frame clear the screen and draw everything again, for when the screen can't be trusted to still
+     * show the last frame (for example after the terminal has been resized).
+     */
+    public void invalidate() {
+        redraw = true;
+    }
+
+    /**
+     * Gets how many bytes have been sent in total, which is mostly useful for checking how much each turn costs.
+     *
+     * @return The number of bytes written
+     */
+    public long getBytesWritten() {
+        return bytesWritten;
+    }
+
+    /**
+     * Notes that a tile needs checking on the next frame.
+     *
+     * @param map The map that changed
+     * @param col The column of the tile
+     * @param row The row of the tile
+     */
+    @Override
+    public void tileChanged(Map map, int col, int row) {
+        if (map != this.map) {
+            return;
+        }
+
+        if (dirtyCount == dirty.length) {
+            dirty = Arrays.copyOf(dirty, dirtyCount * 2);
+        }
+        dirty[dirtyCount++] = row * width + col;
+    }
+
+    /**
+     * Starts following a different map (or the same map at a different size), which needs a full redraw.
+     *
+     * @param map The map
+     */
+    private void attach(Map map) {
+        if (this.map != null) {
+            this.map.removeListener(this);
+        }
+        map.addListener(this);
+
+        this.map = map;
+        this.width = map.getWidth();
+        this.height = map.getHeight();
+        this.frame = new byte[width * height];
+        this.botMask = new long[(width * height + 63) >>> 6];
+        this.botCount = 0;
+        this.redraw = true;
+    }
+
+    /**
+     * Clears the screen and draws every tile, remembering them as the frame on the screen.
+     */
+    private void drawAll() {
+        int rowBytes = (style == MapRenderer.Style.COMPACT ? 1 : 2) * width
+                + (style == MapRenderer.Style.ANSI ? 16 * width : 0) + MapRenderer.LINE_SEPARATOR.length;
+        ensureCapacity((int) Math.min(MapRenderer.MAX_BUFFER, (long) rowBytes * height) + rowBytes + CLEAR_SCREEN.length);
+
+        append(CLEAR_SCREEN);
+        for (int row = 0; row < height; row++) {
+            if (length + rowBytes > buffer.length) {
+                flush();
+            }
+
+            for (int col = 0; col < width; col++) {
+                int cell = row * width + col;
+                byte tile = tileAt(cell);
+
+                frame[cell] = tile;
+                appendTile(tile, true);
+            }
+            append(MapRenderer.LINE_SEPARATOR);
+        }
+    }
+
+    /**
+     * Sends a tile if it's different to what's on the screen.
+     *
+     * @param cell The cell index, or -1 for none
+     */
+    private void drawCell(int cell) {
+        if (cell < 0) {
+            return;
+        }
+
+        byte tile = tileAt(cell);
+        if (frame[cell] != tile) {
+            frame[cell] = tile;
+
+            ensureCapacity(length + 48);
+            moveTo(cell / width, cell % width);
+            appendTile(tile, false);
+        }
+    }
+
+    /**
+     * Gets what should be drawn at a cell, which is a player if one is standing on it.
+     *
+     * @param cell The cell index
+     * @return The char to draw
+     */
+    private byte tileAt(int cell) {
+        if (cell == humanCell) {
+            return HUMAN;
+        } else if ((botMask[cell >>> 6] & (1L << cell)) != 0) {
+            return BOT;
+        }
+        return map.cellAt(cell);
+    }
+
+    /**
+     * Adds a tile in this renderer's style.
+     *
+     * @param tile The char of the tile
+     * @param spaced If the spacing after it should be added too (it never changes, so a single tile doesn't need it)
+     */
+    private void appendTile(byte tile, boolean spaced) {
+        if (style == MapRenderer.Style.ANSI) {
+            append(MapRenderer.colourOf(tile));
+            buffer[length++] = tile;
+            append(MapRenderer.RESET);
+        } else {
+            buffer[length++] = tile;
+        }
+
+        if (spaced && style != MapRenderer.Style.COMPACT) {
+            buffer[length++] = ' ';
+        }
+    }
+
+    /**
+     * Adds an ANSI cursor move to a tile. Rows and columns on the screen start at 1.
+     *
+     * @param row The row of the tile
+     * @param col The column of the tile
+     */
+    private void moveTo(int row, int col) {
+        int screenCol = (style == MapRenderer.Style.COMPACT ? col : col * 2) + 1;
+
+        ensureCapacity(length + 32);
+        buffer[length++] = '\033';
+        buffer[length++] = '[';
+        appendNumber(row + 1);
+        buffer[length++] = ';';
+        appendNumber(screenCol);
+        buffer[length++] = 'H';
+    }
+
+    /**
+     * Adds a positive number in decimal, without making a string.
+     *
+     * @param number The number
+     */
+    private void appendNumber(int number) {
+        int digits = 1;
+        for (int rest = number / 10; rest > 0; rest /= 10) {
+            digits++;
+        }
+
+        for (int i = length + digits - 1; i >= length; i--) {
+            buffer[i] = (byte) ('0' + number % 10);
+            number /= 10;
+        }
+        length += digits;
+    }
+
+    /**
+     * Turns a location into a cell index of the current map.
+     *
+     * @param location The location, which may be null
+     * @return The cell index, or -1 if there's no location or it's off the map
+     */
+    private int toCell(Location location) {
+        if (location == null || location.outOfBounds(width, height)) {
+            return -1;
+        }
+        return location.getRow() * width + location.getCol();
+    }
+
+    /**
+     * Adds some bytes to the buffer.
+     *
+     * @param bytes The bytes
+     */
+    private void append(byte[] bytes) {
+        System.arraycopy(bytes, 0, buffer, length, bytes.length);
+        length += bytes.length;
+    }
+
+    /**
+     * Grows the buffer if it's smaller than needed.
+     *
+     * @param capacity The bytes needed
+     */
+    private void ensureCapacity(int capacity) {
+        if (buffer.length < capacity) {
+            buffer = Arrays.copyOf(buffer, Math.max(capacity, buffer.length * 2));
+        }
+    }
+
+    /**
+     * Writes everything in the buffer out.
+     */
+    private void flush() {
+        if (length == 0) {
+            return;
+        }
+
+        try {
+            out.write(buffer, 0, length);
+            out.flush();
+        } catch (IOException e) {
+            throw new IllegalStateException("Error: Unable to draw the map: " + e.getMessage(), e);
+        }
+        bytesWritten += length;
+        length = 0;
+    }
+}
@@ -1,21 +1,55 @@
 package map;
 
+import main.GameRandom;
 import main.Location;
+import main.StateReader;
+import main.StateWriter;
 import main.Token;
 
-import java.util.Random;
+import java.nio.ByteBuffer;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.CopyOnWriteArrayList;
 
 /**
  * Contains the map for the game, as well as the LOOK command.
+ *
+ * The terrain is held in a map.MapTemplate, which is shared between every game on the same map. The map itself only
+ * records the tiles which have changed in this game (for example gold that has been picked up) in a small overlay.
+ * Reading a tile checks the overlay first and then falls back to the template.
  */
 public class Map {
 
-    private String name;
-    private int width;
-    private int height;
+    private final MapTemplate template;
+    private final CellOverlay overlay;
 
-    private Token[][] mapArr;
-    private int goldRequired;
+    private final int width;
+    private final int height;
+
+    private MapRenderer renderer;
+
+    private final List<MapListener> listeners = new CopyOnWriteArrayList<>();
+    private int modificationCount;
+
+    private long[] walkable; // The template's walkable bits, fetched the first time they're needed
+    private boolean wallsChanged; // Set if a wall has been added or removed, so the template's bits are out of date
+
+    /**
+     * Builds a new map for a game over a template.
+     *
+     * @param template The shared terrain
+     */
+    public Map(MapTemplate template) {
+        this(template, new CellOverlay());
+    }
+
+    private Map(MapTemplate template, CellOverlay overlay) {
+        this.template = template;
+        this.overlay = overlay;
+
+        this.width = template.getWidth();
+        this.height = template.getHeight();
+    }
 
     /**
      * Builds the map.
@@ -24,17 +58,95 @@ public class Map {
      * @param goldRequired The amount of gold required to win
      * @param width The width of the map
      * @param height The height of the map
+     * @param cells The characters of the map in row-major order
+     */
+    public Map(String name, int goldRequired, int width, int height, byte[] cells) {
+        this(name, goldRequired, width, height, ByteBuffer.wrap(cells));
+    }
+
+    /**
+     * Builds the map over a buffer of cells, without copying them.
+     *
+     * @param name The maps name
+     * @param goldRequired The amount of gold required to win
+     * @param width The width of the map
+     * @param height The height of the map
+     * @param cells The characters of the map in row-major order, starting at index 0 of the buffer
+     */
+    public Map(String name, int goldRequired, int width, int height, ByteBuffer cells) {
+        this(new MapTemplate(name, goldRequired, width, height, cells));
+    }
+
+    /**
+     * Builds the map from a token array, packing it into the byte array.
+     *
+     * @param name The maps name
+     * @param goldRequired The amount of gold required to win
+     * @param width The width of the map
+     * @param height The height of the map
      * @param mapArr The token array for the map
      */
     public Map(String name, int goldRequired, int width, int height, Token[][] mapArr) {
-        this.name = name;
-        this.goldRequired = goldRequired;
-        this.width = width;
-        this.height = height;
+        this(name, goldRequired, width, height, pack(width, height, mapArr));
+    }
+
+    /**
+     * Packs a token array into a row-major byte array.
+     *
+     * @param width The width of the map
+     * @param height The height of the map
+     * @param mapArr The token array
+     * @return The characters of the tokens in row-major order
+     */
+    private static byte[] pack(int width, int height, Token[][] mapArr) {
+        byte[] cells = new byte[width * height];
+
+        for (int row = 0; row < height; row++) {
+            for (int col = 0; col < width; col++) {
+                cells[row * width + col] = (byte) mapArr[row][col].getChar();
+            }
+        }
+        return cells;
+    }
 
-        this.mapArr = mapArr;
+    /**
+     * Creates a copy of this map for another game, which shares the template but has its own copy of the changed
+     * tiles.
+     *
+     * @return The copy
+     */
+    public Map copy() {
+        return new Map(template, overlay.copy());
     }
 
+    /**
+     * Writes what has changed on this map in this game, for a snapshot of it (see main.GameSnapshot). Only the changed
+     * tiles are written, as the rest is in the template, so it's a few bytes however big the map is.
+     *
+     * @param out Where to write it
+     */
+    public void writeState(StateWriter out) {
+        out.writeVarint(modificationCount);
+        out.writeBoolean(wallsChanged);
+        overlay.writeTo(out);
+    }
+
+    /**
+     * Creates a map for a game from what writeState wrote, over the same template.
+     *
+     * @param template The shared terrain
+     * @param in Where to read it from
+     * @return The map
+     */
+    public static Map readState(MapTemplate template, StateReader in) {
+        int modificationCount = in.readVarint();
+        boolean wallsChanged = in.readBoolean();
+
+        Map map = new Map(template, CellOverlay.readFrom(in, template.getWidth() * template.getHeight()));
+        map.modificationCount = modificationCount;
+        map.wallsChanged = wallsChanged;
+        return map;
+    }
 
     /**
      * Finds the character at the location at the x,y coordinates.
@@ -43,9 +155,31 @@ public class Map {
      * @return The char at the location if it exists, else return a wall.
      */
     public final Token getTokenAtLocation(Location location){
-        int x = location.getCol();
-        int y = location.getRow();
-        return (x > 0 || y > 0 || x < width || y < height) ? mapArr[y][x] : new Token('#');
+        return Token.valueOf(getCharAt(location.getCol(), location.getRow()));
+    }
+
+    /**
+     * Finds the character at the col and row.
+     *
+     * @param col X coords of the tile
+     * @param row Y coords of the tile
+     * @return The char at the tile if it exists, else a wall.
+     */
+    public final char getCharAt(int col, int row) {
+        if (col < 0 || row < 0 || col >= width || row >= height) {
+            return Token.WALL.getChar();
+        }
+        return (char) cellAt(row * width + col);
+    }
+
+    /**
+     * Gets the tile at a cell index, from the overlay if it has changed in this game or else from the template.
+     *
+     * @param index The cell index (row * width + col)
+     * @return The char of the tile
+     */
+    byte cellAt(int index) {
+        return overlay.get(index, template.cellAt(index));
     }
 
     /**
@@ -53,73 +187,44 @@ public class Map {
      * Prints out the subsection of the map, whilst also overlaying both players location, if it applies.
      *
      * @param humanLocation Human Players main.Location
-     * @param botLocation Bot Players main.Location
+     * @param botLocations Every Bot Players main.Location
      * @param radius Radius of the subsection of the map
      */
-    public void executeLookCommand(Location humanLocation, Location botLocation, int radius) {
-        int currentPlayerX = humanLocation.getCol();
-        int currentPlayerY = humanLocation.getRow();
-
-        for (int y = 0; y < radius; y++) {
-            for (int x = 0; x < radius; x++) {
-
-                // Gets radius around player for both X and Y
-                int adjustedX = currentPlayerX - (radius / 2) + x;
-                int adjustedY = currentPlayerY - (radius / 2) + y;
-
-                Location adjustedLocation = new Location(adjustedX, adjustedY);
-
-                if (adjustedLocation.outOfBounds(width, height)) {
-                    System.out.print('#');  // If player is at the edge of the map, add more wall chars
-
-                } else if (adjustedLocation.equals(humanLocation)) {  // Display human player on map
-                    System.out.print('P');
-
-                } else if (adjustedLocation.equals(botLocation)) { // Display bot player on map
-                    System.out.print('B');
-
-                } else {
-                    System.out.print(mapArr[adjustedY][adjustedX].getChar());  // Else add the appropriate char
-                }
-                System.out.print(" "); // Creates nice spacing
-            }
-            System.out.println();
-        }
+    public void executeLookCommand(Location humanLocation, List<Location> botLocations, int radius) {
+        getRenderer().renderLook(this, humanLocation, botLocations, radius);
     }
 
     /**
      * Prints out the entire map. Used mainly for debugging.
-     * Overlays the bot and human over the map.
+     * Overlays the bots and human over the map.
      *
      * @param humanLocation The humans location
-     * @param botLocation The bots location
+     * @param botLocations The bots locations
      */
-    public void print(Location humanLocation, Location botLocation) {
-        for (int row = 0; row < height; row++) {
-            for (int col = 0; col < width; col++) {
-                Location location = new Location(col, row);
-
-                if (humanLocation.equals(location)) {
-                    System.out.print('P');
-
-                } else if (botLocation.equals(location)) {
-                    System.out.print('B');
+    public void print(Location humanLocation, List<Location> botLocations) {
+        getRenderer().renderMap(this, humanLocation, botLocations);
+    }
 
-                } else {
-                    System.out.print(mapArr[row][col].getChar());
-                }
-                System.out.print(" "); // Creates nice spacing
-            }
-            System.out.println();
+    /**
+     * Gets the renderer used by LOOK and print, creating the default one (see map.MapRenderer) the first time.
+     *
+     * @return The renderer
+     */
+    public MapRenderer getRenderer() {
+        if (renderer == null) {
+            renderer = new MapRenderer();
         }
+        return renderer;
     }
 
     /**
-     * Executes the HELLO command which prints out how much gold is required on the map to win.
-     * Note: This does not print the remaining gold, but simply the total amount of gold that's required.
+     * Sets the renderer used by LOOK and print, for example to draw in a different style or somewhere other than the
+     * console.
+     *
+     * @param renderer The renderer
      */
-    public void executeHelloCommand() {
-        System.out.println("Gold to win: " + goldRequired);
+    public void setRenderer(MapRenderer renderer) {
+        this.renderer = renderer;
     }
 
     /**
@@ -130,7 +235,27 @@ public class Map {
      */
 
     public boolean isWalkable(Location location) {
-        return mapArr[location.getRow()][location.getCol()].isWalkable();
+        return getCharAt(location.getCol(), location.getRow()) != Token.WALL.getChar();
+    }
+
+    /**
+     * Checks if you can walk on a tile by its cell index, so that searches over the map don't need a main.Location for
+     * every tile they look at.
+     *
+     * @param cell The cell index (row * width + col), which has to be on the map
+     * @return If it isn't a wall
+     */
+    public boolean isWalkable(int cell) {
+        if (wallsChanged) {
+            return cellAt(cell) != '#';
+        }
+
+        long[] bits = walkable;
+        if (bits == null) {
+            bits = template.getWalkable();
+            walkable = bits;
+        }
+        return (bits[cell >>> 6] & (1L << cell)) != 0;
     }
 
     /**
@@ -140,8 +265,8 @@ public class Map {
      * @return If the player picked up gold
      */
     public boolean pickupGoldAt(Location humanLocation) {
-        if (getTokenAtLocation(humanLocation).canPickup()) {
-            replaceCharAtLocation(humanLocation, new Token('.'));
+        if (getCharAt(humanLocation.getCol(), humanLocation.getRow()) == Token.GOLD.getChar()) {
+            replaceCharAtLocation(humanLocation, Token.FLOOR);
             return true;
         } else {
             return false;
@@ -156,26 +281,144 @@ public class Map {
      * @param token : The token you want to replace it with
      */
     public void replaceCharAtLocation(Location location, Token token) {
-        mapArr[location.getRow()][location.getCol()] = token;
+        int cell = location.getRow() * width + location.getCol();
+
+        if (token == Token.WALL || cellAt(cell) == '#') {
+            wallsChanged = true;
+        }
+        overlay.put(cell, (byte) token.getChar());
+        modificationCount++;
+
+        for (MapListener listener : listeners) {
+            listener.tileChanged(this, location.getCol(), location.getRow());
+        }
+    }
+
+    /**
+     * Gets how many times a tile of this map has been changed, so anything that depends on the tiles can tell if it's
+     * out of date without keeping its own copy of the map.
+     *
+     * @return The number of changes so far
+     */
+    public int getModificationCount() {
+        return modificationCount;
     }
 
     /**
-     * Generates a random spawn location from the map size and performs recursion if doesn't return a valid location.
+     * Adds a listener which is told whenever a tile of this map changes.
+     *
+     * @param listener The listener
+     */
+    public void addListener(MapListener listener) {
+        listeners.add(listener);
+    }
+
+    /**
+     * Stops a listener from being told about changes to this map.
+     *
+     * @param listener The listener
+     */
+    public void removeListener(MapListener listener) {
+        listeners.remove(listener);
+    }
+
+    /**
+     * Most random tiles to try when spawning away from other players, before going through every spawnable tile.
+     */
+    private static final int SPAWN_ATTEMPTS = 16;
+
+    /**
+     * Picks a random spawn location out of every tile that can be spawned on (see map.SpawnIndex).
+     *
+     * @param random The game's random numbers
+     * @return Spawn main.Location
+     */
+    public final Location generateSpawnLocation(GameRandom random) {
+        return generateSpawnLocation(random, Collections.emptyList(), 0);
+    }
+
+    /**
+     * Picks a random spawn location which is more than a distance away from every other player.
+     *
+     * A few random spawnable tiles are tried first, which nearly always finds one on a normal map. If none of them
+     * are far enough away, it goes through every spawnable tile once and picks one of the valid ones at random, so it
+     * never keeps guessing forever. The spawnable tiles come from the template, so tiles changed in this game are
+     * checked again, and changed tiles which have become spawnable (like picked up gold) are added to the last pass.
+     *
+     * @param random The game's random numbers
+     * @param others The locations of the other players
+     * @param minDistance Spawns must be further than this many moves (N/E/S/W) from every other player
      * @return Spawn main.Location
      */
-    public final Location generateSpawnLocation() {
-        Random random = new Random();
+    public final Location generateSpawnLocation(GameRandom random, List<Location> others, int minDistance) {
+        SpawnIndex spawnIndex = template.getSpawnIndex();
 
-        int randomX = random.nextInt(width); // Starting X
-        int randomY = random.nextInt(height); // Starting Y
+        if (spawnIndex.size() == 0 && overlay.size() == 0) {
+            throw new IllegalStateException("Error: There's nowhere on the map to spawn!");
+        }
 
-        Location location = new Location(randomX, randomY);
+        for (int attempt = 0; attempt < SPAWN_ATTEMPTS && spawnIndex.size() > 0; attempt++) {
+            int cell = spawnIndex.select(random.nextInt(spawnIndex.size()));
 
-        if (getTokenAtLocation(location).canSpawnOn()) {
-            return location;
-        } else {
-            return generateSpawnLocation();  // Recurse if invalid spawn location
+            if (canSpawnAt(cell) && isFarFrom(cell, others, minDistance)) {
+                return new Location(cell % width, cell / width);
+            }
+        }
+
+        // Reservoir sampling: every valid tile has the same chance of being the one that's kept
+        int chosen = -1;
+        int valid = 0;
+        for (int rank = 0; rank < spawnIndex.size(); rank++) {
+            int cell = spawnIndex.select(rank);
+
+            if (canSpawnAt(cell) && isFarFrom(cell, others, minDistance) && random.nextInt(++valid) == 0) {
+                chosen = cell;
+            }
+        }
+        if (overlay.size() > 0) {
+            for (int cell : overlay.indexes()) {
+                if (!spawnIndex.contains(cell) && canSpawnAt(cell) && isFarFrom(cell, others, minDistance)
+                        && random.nextInt(++valid) == 0) {
+                    chosen = cell;
+                }
+            }
         }
+
+        if (chosen < 0) {
+            throw new IllegalStateException(String.format("Error: There's nowhere to spawn more than %d away from the other players!", minDistance));
+        }
+        return new Location(chosen % width, chosen / width);
+    }
+
+    /**
+     * Gets if a tile from the template's spawn index can still be spawned on in this game, since the overlay may have
+     * changed it since (for example into a wall).
+     *
+     * @param cell The cell index
+     * @return If the tile can be spawned on now
+     */
+    private boolean canSpawnAt(int cell) {
+        return overlay.size() == 0 || Token.valueOf((char) cellAt(cell)).canSpawnOn();
+    }
+
+    /**
+     * Gets if a cell is more than a distance (in moves) away from all of the locations.
+     *
+     * @param cell The cell index
+     * @param others The locations
+     * @param minDistance The distance
+     * @return If it's far enough from all of them
+     */
+    private boolean isFarFrom(int cell, List<Location> others, int minDistance) {
+        int col = cell % width;
+        int row = cell / width;
+
+        for (Location other : others) {
+            if (Math.abs(other.getCol() - col) + Math.abs(other.getRow() - row) <= minDistance) {
+                return false;
+            }
+        }
+        return true;
     }
 
     /**
@@ -184,7 +427,34 @@ public class Map {
      * @return Gold Required
      */
     public int getGoldRequired() {
-        return goldRequired;
+        return template.getGoldRequired();
+    }
+
+    /**
+     * Gets the width of the map.
+     *
+     * @return The width
+     */
+    public int getWidth() {
+        return width;
+    }
+
+    /**
+     * Gets the height of the map.
+     *
+     * @return The height
+     */
+    public int getHeight() {
+        return height;
+    }
+
+    /**
+     * Gets the shared terrain that this map is built on.
+     *
+     * @return The template
+     */
+    public MapTemplate getTemplate() {
+        return template;
     }
 
     /**
@@ -193,7 +463,7 @@ public class Map {
      * @return map.Map Name
      */
     public String getName() {
-        return name;
+        return template.getName();
     }
 }
 
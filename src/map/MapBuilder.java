@@ -1,168 +1,362 @@
 package map;
 
-import main.Token;
-
-import java.io.BufferedReader;
-import java.io.File;
-import java.io.FileReader;
+import java.io.BufferedOutputStream;
 import java.io.IOException;
-import java.util.ArrayList;
-import java.util.List;
-
+import java.io.OutputStream;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.util.Arrays;
+import java.util.SplittableRandom;
+
+/**
+ * Generates random dungeons, mainly for stress testing and benchmarking on maps far bigger than the example ones.
+ *
+ * The map is split up into a grid of sectors, and each sector gets one room somewhere inside it. Every room is joined
+ * to the room in the sector to its right or the sector below it by an L-shaped corridor (the rooms down the left side
+ * are all joined downwards, so every room is always connected), and a few extra corridors make loops. The size of the
+ * rooms is chosen so that roughly the wall density asked for is left as walls. Gold and exits are then put on random
+ * floor tiles, which are all reachable from each other.
+ *
+ * The same seed and settings always generate the same map. The map can be built in memory or written straight out to
+ * a .txt map file.
+ *
+ * Usage: java map.MapBuilder seed width height wallDensity gold exits fileName
+ */
 public class MapBuilder {
 
-    private Token[][] mapArr;
-    private int goldRequired;
-    private String name;
-    private int width;
-    private int height;
-
-    private int filledSpace;
+    private static final int SECTOR_SIZE = 16;
 
-    public MapBuilder(String fileName) {
-        try (
-                BufferedReader bufferedReader = new BufferedReader(new FileReader(new File("maps", fileName)))
-        ) {
+    private static final byte WALL = '#';
+    private static final byte FLOOR = '.';
+    private static final byte GOLD = 'G';
+    private static final byte EXIT = 'E';
 
-            ArrayList<String> file = loadFile(bufferedReader);
+    private final long seed;
 
-            List<String> metadataList = file.subList(0, 2);
-            List<String> map = file.subList(2, file.size());
+    private String name = "Generated Dungeon";
+    private int width = 50;
+    private int height = 30;
+    private double wallDensity = 0.5;
+    private int gold = 5;
+    private int goldRequired = -1;
+    private int exits = 1;
 
-            parseMetadata(metadataList);
-
-            setDimensions(map);
-            mapArr = parseMap(map);
+    public static void main(String[] args) {
+        if (args.length != 7) {
+            System.out.println("Usage: java map.MapBuilder seed width height wallDensity gold exits fileName");
+            System.exit(1);
+        }
 
+        try {
+            new MapBuilder(Long.parseLong(args[0]))
+                    .size(Integer.parseInt(args[1]), Integer.parseInt(args[2]))
+                    .wallDensity(Double.parseDouble(args[3]))
+                    .gold(Integer.parseInt(args[4]))
+                    .exits(Integer.parseInt(args[5]))
+                    .write(Paths.get("maps", args[6]));
+        } catch (NumberFormatException e) {
+            System.out.println("Error: Invalid number " + e.getMessage());
+            System.exit(1);
         } catch (IOException e) {
-            e.printStackTrace();
+            System.out.println("Error: Unable to write map: " + e.getMessage());
+            System.exit(1);
         }
     }
 
-    public Map build() {
-        return new Map(name, goldRequired, width, height, mapArr);
+    /**
+     * Creates a generator.
+     *
+     * @param seed The seed, which decides the whole layout
+     */
+    public MapBuilder(long seed) {
+        this.seed = seed;
     }
 
-    private ArrayList<String> loadFile(BufferedReader bufferedReader) throws IOException {
-        ArrayList<String> fileList = new ArrayList<>();
+    /**
+     * Sets the name of the map.
+     *
+     * @param name The map name
+     * @return The updated builder
+     */
+    public MapBuilder name(String name) {
+        this.name = name;
+        return this;
+    }
 
-        while (bufferedReader.ready()) {
-            fileList.add(bufferedReader.readLine());
+    /**
+     * Sets the size of the map, including the walls around the edge.
+     *
+     * @param width The width of the map
+     * @param height The height of the map
+     * @return The updated builder
+     */
+    public MapBuilder size(int width, int height) {
+        if (width < 3 || height < 3 || (long) width * height > Integer.MAX_VALUE - 8) {
+            throw new IllegalArgumentException(String.format("Error: Invalid map size %dx%d!", width, height));
         }
-
-        return fileList;
+        this.width = width;
+        this.height = height;
+        return this;
     }
 
-    private void setDimensions(List<String> map) {
-        int maxWidth = 0;
+    /**
+     * Sets roughly how much of the inside of the map should be walls.
+     *
+     * @param wallDensity From 0 (all floor) to 1 (as little floor as possible)
+     * @return The updated builder
+     */
+    public MapBuilder wallDensity(double wallDensity) {
+        if (wallDensity < 0 || wallDensity > 1) {
+            throw new IllegalArgumentException("Error: Wall density has to be between 0 and 1!");
+        }
+        this.wallDensity = wallDensity;
+        return this;
+    }
 
-        for (String next : map) {
-            if (next.length() >= maxWidth) {
-                maxWidth = next.length();
-            }
+    /**
+     * Sets how much gold is put on the map.
+     *
+     * @param gold The amount of gold
+     * @return The updated builder
+     */
+    public MapBuilder gold(int gold) {
+        if (gold < 0) {
+            throw new IllegalArgumentException("Error: Cannot have negative gold!");
         }
-        this.width = maxWidth;
-        this.height = map.size();
+        this.gold = gold;
+        return this;
     }
 
-    private void parseMetadata(List<String> arrList) {
-        name = parseMapName(arrList.get(0));
-        goldRequired = parseGoldRequired(arrList.get(1));
+    /**
+     * Sets how much gold is needed to win. By default, all of the gold on the map is needed.
+     *
+     * @param goldRequired The gold required
+     * @return The updated builder
+     */
+    public MapBuilder goldRequired(int goldRequired) {
+        if (goldRequired < 0) {
+            throw new IllegalArgumentException("Error: Cannot have negative gold!");
+        }
+        this.goldRequired = goldRequired;
+        return this;
     }
 
+    /**
+     * Sets how many exits are put on the map.
+     *
+     * @param exits The number of exits
+     * @return The updated builder
+     */
+    public MapBuilder exits(int exits) {
+        if (exits < 1) {
+            throw new IllegalArgumentException("Error: A map needs at least one exit!");
+        }
+        this.exits = exits;
+        return this;
+    }
 
-    private Token[][] parseMap(List<String> file) {
-        Token[][] mapArr = new Token[height][width];
+    /**
+     * Generates the map in memory.
+     *
+     * @return The generated map
+     */
+    public Map build() {
+        return new Map(name, getGoldRequired(), width, height, generate());
+    }
 
-        if (file.isEmpty()) {
-            System.out.println("Error: Unable to find map in text file!");
-            System.exit(1);
-        } else if (!hasValidEdges(file)) {
-            System.out.println("Error: Doesn't have valid sides!");
-            System.exit(1);
+    /**
+     * Generates the map and writes it out as a text map.
+     *
+     * @param path Where to write the map
+     * @throws IOException If the file can't be written
+     */
+    public void write(Path path) throws IOException {
+        try (OutputStream out = new BufferedOutputStream(Files.newOutputStream(path), 1 << 16)) {
+            write(out);
         }
+    }
 
-        for (int y = 0; y < height; y++) {
-            for (int x = 0; x < width; x++) {
-                if (x >= file.get(y).length()) {  // If map has uneven sides, fill out right side with walls.
-                    mapArr[y][x] = new Token('#');
-                    filledSpace++;  // Keeps track of extra rows being added for printing purposes
-                } else {
-                    char token = file.get(y).charAt(x);
-
-                    if (!isValidToken(token)) {
-                        System.out.println("Error: Invalid token \'" + token + "\' on map at coordinates: (" + x + ", " + y + ")!");
-                        System.exit(1);
-                    } else {
-                        mapArr[y][x] = new Token(token);
-                    }
-                }
-            }
+    /**
+     * Generates the map and writes it out in the text map format.
+     *
+     * @param out Where to write the map
+     * @throws IOException If it can't be written
+     */
+    public void write(OutputStream out) throws IOException {
+        byte[] cells = generate();
+
+        out.write(("name " + name + "\nwin " + getGoldRequired() + "\n").getBytes(StandardCharsets.UTF_8));
+        for (int row = 0; row < height; row++) {
+            out.write(cells, row * width, width);
+            out.write('\n');
         }
-        return mapArr;
     }
 
-    private boolean hasValidEdges(List<String> map) {
-        boolean isValidMap = true;
+    /**
+     * Gets the gold needed to win, which is all of the gold if it hasn't been set.
+     *
+     * @return The gold required
+     */
+    private int getGoldRequired() {
+        return goldRequired < 0 ? gold : Math.min(goldRequired, gold);
+    }
+
+    /**
+     * Generates the tiles of the map.
+     *
+     * @return The characters of the map in row-major order
+     */
+    private byte[] generate() {
+        SplittableRandom random = new SplittableRandom(seed);
+        byte[] cells = new byte[width * height];
+        Arrays.fill(cells, WALL);
+
+        int innerWidth = width - 2;
+        int innerHeight = height - 2;
+        int sectorCols = Math.max(1, innerWidth / SECTOR_SIZE);
+        int sectorRows = Math.max(1, innerHeight / SECTOR_SIZE);
+
+        int[] centres = new int[sectorCols * sectorRows]; // Cell index of the centre of each sector's room
+
+        for (int sectorRow = 0; sectorRow < sectorRows; sectorRow++) {
+            for (int sectorCol = 0; sectorCol < sectorCols; sectorCol++) {
+                // Sectors share the inside of the map out evenly, so the last ones soak up any leftover space
+                int left = 1 + sectorCol * innerWidth / sectorCols;
+                int right = 1 + (sectorCol + 1) * innerWidth / sectorCols;
+                int top = 1 + sectorRow * innerHeight / sectorRows;
+                int bottom = 1 + (sectorRow + 1) * innerHeight / sectorRows;
+
+                centres[sectorRow * sectorCols + sectorCol] = carveRoom(cells, random, left, top, right - left, bottom - top);
+            }
+        }
 
-        for (int i = 0; i < map.size(); i++) {
+        for (int sectorRow = 0; sectorRow < sectorRows; sectorRow++) {
+            for (int sectorCol = 0; sectorCol < sectorCols; sectorCol++) {
+                int sector = sectorRow * sectorCols + sectorCol;
+                boolean hasRight = sectorCol + 1 < sectorCols;
+                boolean hasBelow = sectorRow + 1 < sectorRows;
 
-            if (i == 0 || i == map.size() - 1) {  // Top or bottom line of map file must all be Wall token
-                for (char tokens : map.get(i).toCharArray()) {
-                    if (tokens != '#') {
-                        isValidMap = false;
-                        break;
-                    }
+                // Joining the first column downwards and everything else rightwards is a spanning tree
+                if (hasBelow && (sectorCol == 0 || random.nextInt(4) == 0)) {
+                    carveCorridor(cells, random, centres[sector], centres[sector + sectorCols]);
                 }
-            } else {
-                if (map.get(i).charAt(0) != '#' ||
-                        map.get(i).charAt(width - 1) != '#') {  // First and last char need to be Wall tokens for each line
-                    isValidMap = false;
+                if (hasRight) {
+                    carveCorridor(cells, random, centres[sector], centres[sector + 1]);
                 }
             }
         }
 
-        return isValidMap;
+        placeTiles(cells, random, EXIT, exits);
+        placeTiles(cells, random, GOLD, gold);
+        return cells;
     }
 
     /**
-     * Reads and parses what should be line 1 of the text file which details the map name.
+     * Carves out a room somewhere inside a sector, sized so that the sector is left with about the wall density.
      *
-     * @param line : The line in the text file which contains the information concerning the map name (Line 1)
-     * @return : The map name
+     * @param cells The map
+     * @param random The generator's random
+     * @param left First column of the sector
+     * @param top First row of the sector
+     * @param sectorWidth Width of the sector
+     * @param sectorHeight Height of the sector
+     * @return The cell index of the centre of the room
      */
-    private String parseMapName(String line) {
-        return line.substring(line.indexOf(" ") + 1).trim();
+    private int carveRoom(byte[] cells, SplittableRandom random, int left, int top, int sectorWidth, int sectorHeight) {
+        // Corridors take up about a row and a column of each sector, so take that off the room
+        double floor = (1 - wallDensity) * sectorWidth * sectorHeight - (sectorWidth + sectorHeight) / 2.0;
+        int area = (int) Math.max(1, floor * (0.75 + random.nextDouble() * 0.5));
+
+        int roomWidth = Math.min(sectorWidth, Math.max(1, (int) Math.round(Math.sqrt(area) * (0.7 + random.nextDouble() * 0.6))));
+        int roomHeight = Math.min(sectorHeight, Math.max(1, area / roomWidth));
+
+        int roomLeft = left + random.nextInt(sectorWidth - roomWidth + 1);
+        int roomTop = top + random.nextInt(sectorHeight - roomHeight + 1);
+
+        for (int row = roomTop; row < roomTop + roomHeight; row++) {
+            Arrays.fill(cells, row * width + roomLeft, row * width + roomLeft + roomWidth, FLOOR);
+        }
+        return (roomTop + roomHeight / 2) * width + roomLeft + roomWidth / 2;
     }
 
+    /**
+     * Carves an L-shaped corridor between two cells, going either across then down or down then across.
+     *
+     * @param cells The map
+     * @param random The generator's random
+     * @param from The cell index to start at
+     * @param to The cell index to end at
+     */
+    private void carveCorridor(byte[] cells, SplittableRandom random, int from, int to) {
+        int fromCol = from % width;
+        int fromRow = from / width;
+        int toCol = to % width;
+        int toRow = to / width;
+
+        if (random.nextBoolean()) {
+            carveLine(cells, fromCol, fromRow, toCol, fromRow);
+            carveLine(cells, toCol, fromRow, toCol, toRow);
+        } else {
+            carveLine(cells, fromCol, fromRow, fromCol, toRow);
+            carveLine(cells, fromCol, toRow, toCol, toRow);
+        }
+    }
 
     /**
-     * Reads and parses what should be Line 2 of the text file which details how much gold the player is required
-     * to collect in order to be able to trigger the Exit.
+     * Carves a straight horizontal or vertical line of floor.
      *
-     * @param line : The line which contains the information concerning the number of gold required to pass (Line 2)
-     * @return The total gold required to pass the level
+     * @param cells The map
+     * @param fromCol Starting column
+     * @param fromRow Starting row
+     * @param toCol Ending column
+     * @param toRow Ending row
      */
-    private int parseGoldRequired(String line) {
-        int gold = 0;
-        String goldString = line.substring(line.indexOf(" ") + 1);
+    private void carveLine(byte[] cells, int fromCol, int fromRow, int toCol, int toRow) {
+        if (fromRow == toRow) {
+            int row = fromRow * width;
+            Arrays.fill(cells, row + Math.min(fromCol, toCol), row + Math.max(fromCol, toCol) + 1, FLOOR);
+        } else {
+            for (int row = Math.min(fromRow, toRow); row <= Math.max(fromRow, toRow); row++) {
+                cells[row * width + fromCol] = FLOOR;
+            }
+        }
+    }
 
-        try {
-            gold = Integer.parseInt(goldString);
+    /**
+     * Puts tiles on random floor tiles. If random guesses keep landing on walls or tiles that are already taken, it
+     * goes through the map from a random starting point instead, so it never guesses forever.
+     *
+     * @param cells The map
+     * @param random The generator's random
+     * @param tile The tile to place
+     * @param count How many to place
+     */
+    private void placeTiles(byte[] cells, SplittableRandom random, byte tile, int count) {
+        int placed = 0;
 
-        } catch (NumberFormatException e) {
-            System.out.println("Error: Invalid gold amount " + goldString + ".");
-            System.exit(1);
+        for (int attempt = 0; placed < count && attempt < count * 64; attempt++) {
+            int cell = random.nextInt(cells.length);
+
+            if (cells[cell] == FLOOR) {
+                cells[cell] = tile;
+                placed++;
+            }
         }
 
-        if (gold < 0) {
-            System.out.println("Error: Cannot have negative gold!");
-            System.exit(1);
+        int start = random.nextInt(cells.length);
+        for (int i = 0; placed < count && i < cells.length; i++) {
+            int cell = (start + i) % cells.length;
+
+            if (cells[cell] == FLOOR) {
+                cells[cell] = tile;
+                placed++;
+            }
         }
-        return gold;
-    }
 
-    private boolean isValidToken(char token) {
-        return token == '#' || token == '.' || token == 'E' || token == 'G';
+        if (placed < count) {
+            throw new IllegalStateException("Error: Not enough floor on the map to place everything! Try a lower wall density.");
+        }
     }
 }
@@ -0,0 +1,273 @@
+package map;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.Objects;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Keeps parsed maps in memory, so that games on the same map don't each have to parse it again.
+ *
+ * Maps are kept as map.MapTemplate objects, keyed by the path of the file and when it was last modified, so that
+ * changing a map file means it gets parsed again. The cache holds at most a set number of bytes of cells, and when it
+ * goes over that it evicts the least recently used maps. If several games load the same map at the same time, only one
+ * of them parses it and the rest wait for that result.
+ */
+public class MapCache {
+
+    /**
+     * Memory bound used by the default cache, which can be changed with -Ddod.mapcache.bytes=...
+     */
+    private static final long DEFAULT_MAX_BYTES = Long.getLong("dod.mapcache.bytes", 256L << 20);
+
+    private static final MapCache DEFAULT = new MapCache(DEFAULT_MAX_BYTES);
+
+    private final long maxBytes;
+    private long sizeInBytes;
+
+    private final LinkedHashMap<Key, MapTemplate> templates = new LinkedHashMap<>(16, 0.75f, true); // Access order for LRU
+    private final ConcurrentHashMap<Key, CompletableFuture<MapTemplate>> loading = new ConcurrentHashMap<>();
+
+    private final AtomicLong hits = new AtomicLong();
+    private final AtomicLong misses = new AtomicLong();
+    private final AtomicLong evictions = new AtomicLong();
+
+    /**
+     * Creates a cache.
+     *
+     * @param maxBytes The most bytes of map cells that the cache will hold
+     */
+    public MapCache(long maxBytes) {
+        this.maxBytes = maxBytes;
+    }
+
+    /**
+     * Gets the cache shared by the whole game.
+     *
+     * @return The default cache
+     */
+    public static MapCache getDefault() {
+        return DEFAULT;
+    }
+
+    /**
+     * Creates a new map for a game from a file in the maps folder.
+     *
+     * @param fileName The name of the map file (text or binary)
+     * @return A new map
+     * @throws IOException If the file can't be read
+     * @throws MapFormatException If the file isn't a valid map
+     */
+    public Map load(String fileName) throws IOException, MapFormatException {
+        return getTemplate(Paths.get("maps", fileName)).createMap();
+    }
+
+    /**
+     * Gets the template for a map file, parsing it if it isn't in the cache or the file has changed since it was.
+     *
+     * @param path The path of the map file (text or binary)
+     * @return The template
+     * @throws IOException If the file can't be read
+     * @throws MapFormatException If the file isn't a valid map
+     */
+    public MapTemplate getTemplate(Path path) throws IOException, MapFormatException {
+        Path file = path.toAbsolutePath().normalize();
+        Key key = new Key(file, Files.getLastModifiedTime(file).toMillis());
+
+        MapTemplate template = cached(key);
+        if (template != null) {
+            hits.incrementAndGet();
+            return template;
+        }
+
+        CompletableFuture<MapTemplate> future = new CompletableFuture<>();
+        CompletableFuture<MapTemplate> existing = loading.putIfAbsent(key, future);
+
+        if (existing != null) { // Someone else is already parsing it, so wait for them
+            hits.incrementAndGet();
+            return await(existing);
+        }
+
+        try {
+            template = cached(key); // It might have finished loading between checking the cache and now
+            if (template == null) {
+                misses.incrementAndGet();
+                template = parse(file).getTemplate();
+                put(key, template);
+            } else {
+                hits.incrementAndGet();
+            }
+            future.complete(template);
+        } catch (IOException | MapFormatException | RuntimeException e) {
+            future.completeExceptionally(e);
+            throw e;
+        } finally {
+            loading.remove(key, future);
+        }
+        return template;
+    }
+
+    /**
+     * Parses a map file, choosing the parser based on its extension.
+     *
+     * @param file The map file
+     * @return The parsed map
+     * @throws IOException If the file can't be read
+     * @throws MapFormatException If the file isn't a valid map
+     */
+    private Map parse(Path file) throws IOException, MapFormatException {
+        if (file.toString().endsWith(BinaryMapFile.EXTENSION)) {
+            return BinaryMapFile.load(file);
+        }
+        return new ParallelMapParser(file).parse();
+    }
+
+    /**
+     * Waits for another thread to finish parsing a map.
+     *
+     * @param future The result of the other thread's parse
+     * @return The template
+     * @throws IOException If the other thread couldn't read the file
+     * @throws MapFormatException If the other thread found the map isn't valid
+     */
+    private MapTemplate await(CompletableFuture<MapTemplate> future) throws IOException, MapFormatException {
+        try {
+            return future.join();
+        } catch (CompletionException e) {
+            Throwable cause = e.getCause();
+
+            if (cause instanceof IOException) {
+                throw (IOException) cause;
+            } else if (cause instanceof MapFormatException) {
+                throw (MapFormatException) cause;
+            } else if (cause instanceof RuntimeException) {
+                throw (RuntimeException) cause;
+            }
+            throw e;
+        }
+    }
+
+    /**
+     * Looks up a template in the cache, marking it as recently used.
+     *
+     * @param key The file and modified time
+     * @return The template, or null if it isn't cached
+     */
+    private synchronized MapTemplate cached(Key key) {
+        return templates.get(key);
+    }
+
+    /**
+     * Adds a template to the cache, removing any older version of the same file and then evicting the least recently
+     * used templates until the cache is back under its memory bound.
+     *
+     * @param key The file and modified time
+     * @param template The template
+     */
+    private synchronized void put(Key key, MapTemplate template) {
+        if (template.sizeInBytes() > maxBytes) {
+            return; // Would just evict everything else and then itself
+        }
+
+        Iterator<java.util.Map.Entry<Key, MapTemplate>> entries = templates.entrySet().iterator();
+        while (entries.hasNext()) {
+            java.util.Map.Entry<Key, MapTemplate> entry = entries.next();
+
+            if (entry.getKey().file.equals(key.file)) { // Out of date, since the file has changed
+                sizeInBytes -= entry.getValue().sizeInBytes();
+                entries.remove();
+            }
+        }
+
+        templates.put(key, template);
+        sizeInBytes += template.sizeInBytes();
+
+        entries = templates.entrySet().iterator(); // Least recently used first
+        while (sizeInBytes > maxBytes && entries.hasNext()) {
+            java.util.Map.Entry<Key, MapTemplate> entry = entries.next();
+
+            sizeInBytes -= entry.getValue().sizeInBytes();
+            entries.remove();
+            evictions.incrementAndGet();
+        }
+    }
+
+    /**
+     * Removes every map from the cache.
+     */
+    public synchronized void clear() {
+        templates.clear();
+        sizeInBytes = 0;
+    }
+
+    /**
+     * Gets how many times a map was loaded without being parsed again.
+     *
+     * @return The number of hits
+     */
+    public long getHits() {
+        return hits.get();
+    }
+
+    /**
+     * Gets how many times a map had to be parsed.
+     *
+     * @return The number of misses
+     */
+    public long getMisses() {
+        return misses.get();
+    }
+
+    /**
+     * Gets how many maps have been evicted to stay under the memory bound.
+     *
+     * @return The number of evictions
+     */
+    public long getEvictions() {
+        return evictions.get();
+    }
+
+    /**
+     * Gets how many bytes of map cells are in the cache.
+     *
+     * @return The size of the cache in bytes
+     */
+    public synchronized long getSizeInBytes() {
+        return sizeInBytes;
+    }
+
+    /**
+     * A map file at the time it was last modified.
+     */
+    private static final class Key {
+
+        private final Path file;
+        private final long lastModified;
+
+        private Key(Path file, long lastModified) {
+            this.file = file;
+            this.lastModified = lastModified;
+        }
+
+        @Override
+        public boolean equals(Object other) {
+            if (!(other instanceof Key)) {
+                return false;
+            }
+            Key key = (Key) other;
+            return lastModified == key.lastModified && file.equals(key.file);
+        }
+
+        @Override
+        public int hashCode() {
+            return Objects.hash(file, lastModified);
+        }
+    }
+}
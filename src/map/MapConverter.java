@@ -0,0 +1,57 @@
+package map;
+
+import java.io.IOException;
+import java.nio.file.DirectoryStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+
+/**
+ * Converts the text maps in the maps folder into the binary map format (see map.BinaryMapFile).
+ *
+ * Usage: java map.MapConverter [file names...]
+ * If no file names are given, every .txt map in the maps folder is converted. The binary map is written next to the
+ * text map with the same name, but with the .dmap extension. Maps that aren't valid are reported and skipped.
+ */
+public class MapConverter {
+
+    public static void main(String[] args) {
+        try {
+            if (args.length == 0) {
+                try (DirectoryStream<Path> paths = Files.newDirectoryStream(Paths.get("maps"), "*.txt")) {
+                    for (Path path : paths) {
+                        convert(path.getFileName().toString());
+                    }
+                }
+            } else {
+                for (String fileName : args) {
+                    convert(fileName);
+                }
+            }
+        } catch (IOException e) {
+            System.out.println("Error: Unable to convert maps: " + e.getMessage());
+            System.exit(1);
+        }
+    }
+
+    /**
+     * Parses a text map from the maps folder and writes it back out as a binary map.
+     *
+     * @param fileName The name of the text map
+     * @throws IOException If the binary map can't be written
+     */
+    public static void convert(String fileName) throws IOException {
+        Map map;
+        try {
+            map = new ParallelMapParser(fileName).parse();
+        } catch (MapFormatException e) {
+            System.out.println(String.format("Skipped %s: %s", fileName, e.getMessage()));
+            return;
+        }
+
+        String binaryName = fileName.substring(0, fileName.lastIndexOf('.')) + BinaryMapFile.EXTENSION;
+        BinaryMapFile.write(map.getTemplate(), Paths.get("maps", binaryName));
+
+        System.out.println(String.format("Converted %s to %s", fileName, binaryName));
+    }
+}
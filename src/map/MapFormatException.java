@@ -0,0 +1,44 @@
+package map;
+
+/**
+ * Thrown when a map file can't be parsed. Contains the line and column in the file where the problem was found, so
+ * that it can be reported back to whoever made the map.
+ */
+public class MapFormatException extends Exception {
+
+    private static final long serialVersionUID = 1L;
+
+    private final int line;
+    private final int column;
+
+    /**
+     * Creates the exception.
+     *
+     * @param message What was wrong with the map
+     * @param line The line in the file (starting at 1)
+     * @param column The column in the line (starting at 1)
+     */
+    public MapFormatException(String message, int line, int column) {
+        super(String.format("%s (line %d, column %d)", message, line, column));
+        this.line = line;
+        this.column = column;
+    }
+
+    /**
+     * Gets the line in the file where the problem was found.
+     *
+     * @return The line, starting at 1
+     */
+    public int getLine() {
+        return line;
+    }
+
+    /**
+     * Gets the column in the line where the problem was found.
+     *
+     * @return The column, starting at 1
+     */
+    public int getColumn() {
+        return column;
+    }
+}
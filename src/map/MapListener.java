@@ -0,0 +1,17 @@
+package map;
+
+/**
+ * Gets told whenever a tile of a game's map changes (for example when gold is picked up), so that anything built from
+ * the map's tiles can update just the part that changed instead of going over the whole map again.
+ */
+public interface MapListener {
+
+    /**
+     * Called after a tile of the map has been changed.
+     *
+     * @param map The map that changed
+     * @param col The column of the tile
+     * @param row The row of the tile
+     */
+    void tileChanged(Map map, int col, int row);
+}
@@ -0,0 +1,343 @@
+package map;
+
+import main.Location;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.nio.charset.StandardCharsets;
+import java.util.Arrays;
+import java.util.List;
+
+/**
+ * Draws the map (or the part of it shown by LOOK) with the players on it.
+ *
+ * Each frame is built up in one byte buffer, which is kept and reused for the next frame, and then written out with a
+ * single call rather than a print for every tile. Nothing is allocated per tile. Really big frames are written out in
+ * chunks once the buffer reaches MAX_BUFFER, so printing a huge map doesn't need a buffer the size of the whole map.
+ *
+ * The style can be chosen with -Ddod.render=plain|ansi|compact, and defaults to plain, which is exactly what the game
+ * has always printed.
+ */
+public class MapRenderer {
+
+    /**
+     * How the tiles are drawn.
+     */
+    public enum Style {
+        PLAIN,   // Every tile followed by a space
+        ANSI,    // Like PLAIN, but coloured with ANSI escape codes
+        COMPACT  // No spacing between tiles
+    }
+
+    /**
+     * The most bytes that are held before writing part of a frame out.
+     */
+    static final int MAX_BUFFER = 1 << 22;
+
+    static final byte[] LINE_SEPARATOR = System.lineSeparator().getBytes(StandardCharsets.US_ASCII);
+
+    private static final byte HUMAN = 'P';
+    private static final byte BOT = 'B';
+    private static final byte WALL = '#';
+
+    private static final int NO_COLOUR = -1;
+    static final byte[] RESET = escape("0");
+
+    /**
+     * ANSI colour codes, indexed by the tile's char.
+     */
+    private static final byte[][] COLOURS = new byte[128][];
+
+    static {
+        COLOURS['#'] = escape("90");   // Grey
+        COLOURS['.'] = escape("37");   // White
+        COLOURS['G'] = escape("1;33"); // Bold yellow
+        COLOURS['E'] = escape("1;32"); // Bold green
+        COLOURS['P'] = escape("1;36"); // Bold cyan
+        COLOURS['B'] = escape("1;31"); // Bold red
+    }
+
+    /**
+     * The longest escape code, used for working out how much room a tile could need.
+     */
+    private static final int MAX_ESCAPE_LENGTH = 7;
+
+    private final Style style;
+    private final OutputStream out;
+
+    private byte[] buffer = new byte[256];
+    private int length;
+    private int colour = NO_COLOUR;
+
+    private long[] botMask = new long[0]; // Which tiles of the frame have a bot on them
+
+    /**
+     * Creates a renderer that prints to System.out in the style chosen with -Ddod.render.
+     */
+    public MapRenderer() {
+        this(getDefaultStyle(), System.out);
+    }
+
+    /**
+     * Creates a renderer.
+     *
+     * @param style How to draw the tiles
+     * @param out Where to write the frames
+     */
+    public MapRenderer(Style style, OutputStream out) {
+        this.style = style;
+        this.out = out;
+    }
+
+    /**
+     * Gets the style set by -Ddod.render, or PLAIN if it isn't set (or isn't a style).
+     *
+     * @return The style
+     */
+    public static Style getDefaultStyle() {
+        try {
+            return Style.valueOf(System.getProperty("dod.render", "plain").toUpperCase());
+        } catch (IllegalArgumentException e) {
+            return Style.PLAIN;
+        }
+    }
+
+    /**
+     * Gets the style that tiles are drawn in.
+     *
+     * @return The style
+     */
+    public Style getStyle() {
+        return style;
+    }
+
+    /**
+     * Draws the whole map, with the players over it.
+     *
+     * @param map The map
+     * @param humanLocation The human's location
+     * @param botLocations The bots' locations
+     */
+    public void renderMap(Map map, Location humanLocation, List<Location> botLocations) {
+        render(map, humanLocation, botLocations, 0, 0, map.getWidth(), map.getHeight());
+    }
+
+    /**
+     * Draws a square of the map centred on the human, with the players over it. Anything off the edge of the map is
+     * drawn as wall.
+     *
+     * @param map The map
+     * @param humanLocation The human's location
+     * @param botLocations The bots' locations
+     * @param radius The width and height of the square
+     */
+    public void renderLook(Map map, Location humanLocation, List<Location> botLocations, int radius) {
+        int left = humanLocation.getCol() - (radius / 2);
+        int top = humanLocation.getRow() - (radius / 2);
+
+        render(map, humanLocation, botLocations, left, top, radius, radius);
+    }
+
+    /**
+     * Draws a rectangle of the map into the buffer, and writes it out.
+     *
+     * @param map The map
+     * @param humanLocation The human's location
+     * @param botLocations The bots' locations
+     * @param left The first column
+     * @param top The first row
+     * @param columns How many columns to draw
+     * @param rows How many rows to draw
+     */
+    private void render(Map map, Location humanLocation, List<Location> botLocations, int left, int top, int columns, int rows) {
+        int width = map.getWidth();
+        int height = map.getHeight();
+
+        int humanCol = humanLocation.getCol();
+        int humanRow = humanLocation.getRow();
+        markBots(botLocations, left, top, columns, rows);
+
+        int rowBytes = maxRowBytes(columns);
+        ensureCapacity((int) Math.min(MAX_BUFFER, Math.max(rowBytes, (long) rowBytes * rows)));
+        length = 0;
+
+        for (int row = top; row < top + rows; row++) {
+            if (length + rowBytes > buffer.length) {
+                flush();
+            }
+
+            boolean rowInBounds = row >= 0 && row < height;
+            int rowStart = row * width;
+
+            for (int col = left; col < left + columns; col++) {
+                byte tile;
+
+                if (!rowInBounds || col < 0 || col >= width) {
+                    tile = WALL;
+                } else if (col == humanCol && row == humanRow) {
+                    tile = HUMAN;
+                } else if (hasBot((row - top) * columns + (col - left))) {
+                    tile = BOT;
+                } else {
+                    tile = map.cellAt(rowStart + col);
+                }
+                appendTile(tile);
+            }
+            endLine();
+        }
+        flush();
+    }
+
+    /**
+     * Marks the tiles of the frame that have a bot on them, so drawing a tile doesn't have to go through every bot.
+     *
+     * @param botLocations The bots' locations
+     * @param left The first column of the frame
+     * @param top The first row of the frame
+     * @param columns How many columns the frame has
+     * @param rows How many rows the frame has
+     */
+    private void markBots(List<Location> botLocations, int left, int top, int columns, int rows) {
+        int words = (int) (((long) columns * rows + 63) >>> 6);
+        if (botMask.length < words) {
+            botMask = new long[words];
+        } else {
+            Arrays.fill(botMask, 0, words, 0);
+        }
+
+        for (Location bot : botLocations) {
+            int col = bot.getCol() - left;
+            int row = bot.getRow() - top;
+
+            if (col >= 0 && row >= 0 && col < columns && row < rows) {
+                int tile = row * columns + col;
+                botMask[tile >>> 6] |= 1L << tile;
+            }
+        }
+    }
+
+    /**
+     * Gets if a tile of the frame has a bot on it.
+     *
+     * @param tile The tile's index in the frame (row * columns + col)
+     * @return If there's a bot there
+     */
+    private boolean hasBot(int tile) {
+        return (botMask[tile >>> 6] & (1L << tile)) != 0;
+    }
+
+    /**
+     * Adds a tile to the buffer in this renderer's style.
+     *
+     * @param tile The char of the tile
+     */
+    private void appendTile(byte tile) {
+        if (style == Style.ANSI) {
+            setColour(tile);
+        }
+
+        buffer[length++] = tile;
+
+        if (style != Style.COMPACT) {
+            buffer[length++] = ' '; // Creates nice spacing
+        }
+    }
+
+    /**
+     * Switches to the colour of a tile, only adding an escape code if it's different to the colour already in use.
+     *
+     * @param tile The char of the tile
+     */
+    private void setColour(byte tile) {
+        int next = tile >= 0 && COLOURS[tile] != null ? tile : NO_COLOUR;
+
+        if (next != colour) {
+            append(next == NO_COLOUR ? RESET : COLOURS[next]);
+            colour = next;
+        }
+    }
+
+    /**
+     * Ends a line, resetting the colour first so it doesn't bleed into anything printed after the frame.
+     */
+    private void endLine() {
+        if (colour != NO_COLOUR) {
+            append(RESET);
+            colour = NO_COLOUR;
+        }
+        append(LINE_SEPARATOR);
+    }
+
+    /**
+     * Adds some bytes to the buffer.
+     *
+     * @param bytes The bytes
+     */
+    private void append(byte[] bytes) {
+        System.arraycopy(bytes, 0, buffer, length, bytes.length);
+        length += bytes.length;
+    }
+
+    /**
+     * Works out the most bytes a line of a frame could take.
+     *
+     * @param columns The number of tiles in the line
+     * @return The most bytes it could need
+     */
+    private int maxRowBytes(int columns) {
+        int perTile = style == Style.COMPACT ? 1 : 2;
+        if (style == Style.ANSI) {
+            perTile += MAX_ESCAPE_LENGTH;
+        }
+
+        long bytes = (long) perTile * columns + RESET.length + LINE_SEPARATOR.length;
+        if (bytes > Integer.MAX_VALUE - 8) {
+            throw new IllegalArgumentException(String.format("Error: A line of %d tiles is too long to draw!", columns));
+        }
+        return (int) bytes;
+    }
+
+    /**
+     * Grows the buffer if it's smaller than needed. It never shrinks, so it's only ever grown once for a map.
+     *
+     * @param capacity The bytes needed
+     */
+    private void ensureCapacity(int capacity) {
+        if (buffer.length < capacity) {
+            buffer = Arrays.copyOf(buffer, capacity);
+        }
+    }
+
+    /**
+     * Writes everything in the buffer out.
+     */
+    private void flush() {
+        try {
+            out.write(buffer, 0, length);
+            out.flush();
+        } catch (IOException e) {
+            throw new IllegalStateException("Error: Unable to draw the map: " + e.getMessage(), e);
+        }
+        length = 0;
+    }
+
+    /**
+     * Gets the ANSI escape code for the colour of a tile.
+     *
+     * @param tile The char of the tile
+     * @return The escape code, or RESET if the tile doesn't have a colour
+     */
+    static byte[] colourOf(byte tile) {
+        return tile >= 0 && COLOURS[tile] != null ? COLOURS[tile] : RESET;
+    }
+
+    /**
+     * Creates an ANSI escape code to set the colour.
+     *
+     * @param code The SGR parameters
+     * @return The escape code
+     */
+    private static byte[] escape(String code) {
+        return ("\033[" + code + "m").getBytes(StandardCharsets.US_ASCII);
+    }
+}
@@ -0,0 +1,187 @@
+package map;
+
+import java.nio.ByteBuffer;
+
+/**
+ * The terrain of a map, which never changes and is shared between every game that's played on it.
+ *
+ * The tiles are stored as their characters in a single byte buffer in row-major order (so the tile at col, row is at
+ * index row * width + col), rather than as a Token object per tile. The buffer either wraps an array from a text
+ * parser or is the memory-mapped cell section of a binary map file.
+ *
+ * Each game gets its own map.Map from createMap(), which reads the template's cells and only records the tiles that
+ * have changed in that game (for example when gold is picked up).
+ */
+public class MapTemplate {
+
+    private final String name;
+    private final int goldRequired;
+    private final int width;
+    private final int height;
+
+    private final ByteBuffer cells;
+
+    private volatile ReachabilityAnalysis reachability;
+    private volatile SpawnIndex spawnIndex;
+    private volatile long[] walkable;
+
+    /**
+     * Creates the template over a buffer of cells, without copying them. The buffer shouldn't be changed after this.
+     *
+     * @param name The maps name
+     * @param goldRequired The amount of gold required to win
+     * @param width The width of the map
+     * @param height The height of the map
+     * @param cells The characters of the map in row-major order, starting at index 0 of the buffer
+     */
+    public MapTemplate(String name, int goldRequired, int width, int height, ByteBuffer cells) {
+        if (cells.limit() < width * height) {
+            throw new IllegalArgumentException(String.format("Error: Expected %d cells but got %d!", width * height, cells.limit()));
+        }
+        this.name = name;
+        this.goldRequired = goldRequired;
+        this.width = width;
+        this.height = height;
+
+        this.cells = cells.asReadOnlyBuffer();
+    }
+
+    /**
+     * Creates a new map for a game, which shares the cells of this template.
+     *
+     * @return A new map
+     */
+    public Map createMap() {
+        return new Map(this);
+    }
+
+    /**
+     * Gets the char of the tile at a cell index.
+     *
+     * @param index The cell index (row * width + col)
+     * @return The char of the tile
+     */
+    byte cellAt(int index) {
+        return cells.get(index);
+    }
+
+    /**
+     * Gets a read-only view of the cells, used when writing the map out to a file.
+     *
+     * @return The cells in row-major order
+     */
+    ByteBuffer getCells() {
+        return cells.duplicate();
+    }
+
+    /**
+     * Gets which parts of the map can be reached from each other, working it out the first time it's needed.
+     *
+     * @return The reachability analysis
+     */
+    public ReachabilityAnalysis getReachability() {
+        ReachabilityAnalysis analysis = reachability;
+        if (analysis == null) {
+            synchronized (this) {
+                analysis = reachability;
+                if (analysis == null) {
+                    analysis = new ReachabilityAnalysis(this);
+                    reachability = analysis;
+                }
+            }
+        }
+        return analysis;
+    }
+
+    /**
+     * Gets the index of tiles that can be spawned on, building it the first time it's needed.
+     *
+     * @return The spawn index
+     */
+    public SpawnIndex getSpawnIndex() {
+        SpawnIndex index = spawnIndex;
+        if (index == null) {
+            synchronized (this) {
+                index = spawnIndex;
+                if (index == null) {
+                    index = new SpawnIndex(this);
+                    spawnIndex = index;
+                }
+            }
+        }
+        return index;
+    }
+
+    /**
+     * Gets a bitset of the tiles that aren't walls (bit cell % 64 of word cell / 64), building it the first time it's
+     * needed. Searches over the map test this instead of the cells, since it's an eighth of the size and so much more
+     * of it stays in the cache. It mustn't be changed.
+     *
+     * @return The walkable bits
+     */
+    long[] getWalkable() {
+        long[] bits = walkable;
+        if (bits == null) {
+            synchronized (this) {
+                bits = walkable;
+                if (bits == null) {
+                    int cellCount = width * height;
+                    bits = new long[(cellCount + 63) >>> 6];
+
+                    for (int cell = 0; cell < cellCount; cell++) {
+                        if (cells.get(cell) != '#') {
+                            bits[cell >>> 6] |= 1L << cell;
+                        }
+                    }
+                    walkable = bits;
+                }
+            }
+        }
+        return bits;
+    }
+
+    /**
+     * Gets roughly how much memory the cells of this template take up.
+     *
+     * @return The size of the cells in bytes
+     */
+    public long sizeInBytes() {
+        return (long) width * height;
+    }
+
+    /**
+     * Gets the map name.
+     *
+     * @return The map name
+     */
+    public String getName() {
+        return name;
+    }
+
+    /**
+     * Gets the gold required to win.
+     *
+     * @return The gold required
+     */
+    public int getGoldRequired() {
+        return goldRequired;
+    }
+
+    /**
+     * Gets the width of the map.
+     *
+     * @return The width
+     */
+    public int getWidth() {
+        return width;
+    }
+
+    /**
+     * Gets the height of the map.
+     *
+     * @return The height
+     */
+    public int getHeight() {
+        return height;
+    }
+}
@@ -0,0 +1,311 @@
+package map;
+
+import main.Token;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.StandardOpenOption;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.RecursiveTask;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+/**
+ * Parses large text maps on every core.
+ *
+ * The file is memory-mapped, and after reading the name, gold and the first line of the map (which sets the width),
+ * every line of the map should be the same number of bytes apart. The lines are split up into ranges which are
+ * checked (tokens, line lengths, edges) and copied into the cells on a fork/join pool, each range counting its own
+ * gold. The gold counts are added up at the end.
+ *
+ * Maps smaller than PARALLEL_THRESHOLD aren't worth splitting up, so they're handed straight to
+ * map.StreamingMapParser. If anything about the file isn't what's expected (a bad token, mixed line endings, not enough
+ * gold...) then it's also handed over to map.StreamingMapParser, which either throws the exact same error that it
+ * would have done for the file, or parses it. This means the result is always the same as the sequential parser's.
+ */
+public class ParallelMapParser {
+
+    /**
+     * Size of the file (in bytes) below which the map is parsed sequentially.
+     */
+    public static final long PARALLEL_THRESHOLD = 1 << 20;
+
+    /**
+     * Fewest lines that a task will handle before it stops splitting.
+     */
+    private static final int MIN_ROWS_PER_TASK = 64;
+
+    private static final int MAX_HEADER_LENGTH = 1024;
+
+    private static final byte WALL = (byte) Token.WALL.getChar();
+    private static final byte GOLD = (byte) Token.GOLD.getChar();
+
+    private final Path path;
+
+    /**
+     * Creates a parser for a map in the maps folder.
+     *
+     * @param fileName The name of the file in the maps folder
+     */
+    public ParallelMapParser(String fileName) {
+        this(Paths.get("maps", fileName));
+    }
+
+    /**
+     * Creates a parser for a map file.
+     *
+     * @param path The path to the map file
+     */
+    public ParallelMapParser(Path path) {
+        this.path = path;
+    }
+
+    /**
+     * Reads the map file and parses it into a map.
+     *
+     * @return The parsed map
+     * @throws IOException If the file can't be read
+     * @throws MapFormatException If the file isn't a valid map
+     */
+    public Map parse() throws IOException, MapFormatException {
+        Map map = null;
+
+        try (FileChannel channel = FileChannel.open(path, StandardOpenOption.READ)) {
+            long size = channel.size();
+
+            if (size >= PARALLEL_THRESHOLD && size <= Integer.MAX_VALUE - 8) {
+                map = parseParallel(channel.map(FileChannel.MapMode.READ_ONLY, 0, size));
+            }
+        }
+        return map != null ? map : new StreamingMapParser(path).parse();
+    }
+
+    /**
+     * Parses the mapped file in parallel.
+     *
+     * @param file The whole file
+     * @return The map, or null if the file should be parsed sequentially instead
+     * @throws MapFormatException If an exit or enough gold can't be reached
+     */
+    private Map parseParallel(MappedByteBuffer file) throws MapFormatException {
+        int nameEnd = lineEnd(file, 0);
+        if (nameEnd < 0) {
+            return null;
+        }
+        int goldStart = nextLine(file, nameEnd);
+        int goldEnd = lineEnd(file, goldStart);
+        if (goldEnd < 0) {
+            return null;
+        }
+
+        String nameLine = decode(file, 0, nameEnd);
+        String goldLine = decode(file, goldStart, goldEnd);
+
+        int goldRequired;
+        try {
+            goldRequired = Integer.parseInt(goldLine.substring(goldLine.indexOf(" ") + 1));
+        } catch (NumberFormatException e) {
+            return null;
+        }
+
+        // The first line of the map sets the width and the line ending that the rest should have
+        int cellStart = nextLine(file, goldEnd);
+        int firstLineEnd = lineEnd(file, cellStart);
+        if (goldRequired < 0 || nameEnd > MAX_HEADER_LENGTH || goldEnd - goldStart > MAX_HEADER_LENGTH || firstLineEnd < 0) {
+            return null;
+        }
+
+        int width = firstLineEnd - cellStart;
+        int stride = nextLine(file, firstLineEnd) - cellStart;
+        int cellBytes = file.limit() - cellStart;
+
+        int height;
+        if (cellBytes % stride == 0) {
+            height = cellBytes / stride;
+        } else if (cellBytes % stride == width) { // Last line doesn't end in a new line
+            height = cellBytes / stride + 1;
+        } else {
+            return null;
+        }
+
+        if (width == 0 || (long) width * height > Integer.MAX_VALUE - 8) {
+            return null;
+        }
+
+        byte[] cells = new byte[width * height];
+        AtomicBoolean invalid = new AtomicBoolean();
+
+        int minRows = Math.max(MIN_ROWS_PER_TASK, height / (ForkJoinPool.getCommonPoolParallelism() * 4));
+        int goldCount = ForkJoinPool.commonPool().invoke(
+                new RowRangeTask(file, cells, invalid, cellStart, stride, width, height, 0, height, minRows));
+
+        if (invalid.get() || goldCount < goldRequired) {
+            return null;
+        }
+
+        String name = nameLine.substring(nameLine.indexOf(" ") + 1).trim();
+        Map map = new Map(name, goldRequired, width, height, cells);
+
+        map.getTemplate().getReachability().validate(); // Same check as the sequential parser
+        return map;
+    }
+
+    /**
+     * Finds the end of the line starting at an index (the index of its \n or \r).
+     *
+     * @param file The file
+     * @param start The start of the line
+     * @return The index of the line ending, or -1 if there isn't one
+     */
+    private static int lineEnd(ByteBuffer file, int start) {
+        for (int i = start; i < file.limit(); i++) {
+            byte next = file.get(i);
+            if (next == '\n' || next == '\r') {
+                return i;
+            }
+        }
+        return -1;
+    }
+
+    /**
+     * Finds the start of the next line, after the line ending at an index.
+     *
+     * @param file The file
+     * @param lineEnd The index of the \n or \r
+     * @return The index that the next line starts at
+     */
+    private static int nextLine(ByteBuffer file, int lineEnd) {
+        boolean crlf = file.get(lineEnd) == '\r' && lineEnd + 1 < file.limit() && file.get(lineEnd + 1) == '\n';
+        return lineEnd + (crlf ? 2 : 1);
+    }
+
+    /**
+     * Reads part of the file as a UTF-8 string.
+     *
+     * @param file The file
+     * @param start The first byte
+     * @param end The byte after the last one
+     * @return The string
+     */
+    private static String decode(ByteBuffer file, int start, int end) {
+        byte[] bytes = new byte[end - start];
+        file.get(start, bytes);
+        return new String(bytes, StandardCharsets.UTF_8);
+    }
+
+    /**
+     * Checks and copies a range of lines of the map, returning how much gold is in them.
+     */
+    private static class RowRangeTask extends RecursiveTask<Integer> {
+
+        private static final long serialVersionUID = 1L;
+
+        private final ByteBuffer file;
+        private final byte[] cells;
+        private final AtomicBoolean invalid;
+
+        private final int cellStart;
+        private final int stride;
+        private final int width;
+        private final int height;
+
+        private final int fromRow;
+        private final int toRow;
+        private final int minRows;
+
+        RowRangeTask(ByteBuffer file, byte[] cells, AtomicBoolean invalid, int cellStart, int stride, int width,
+                     int height, int fromRow, int toRow, int minRows) {
+            this.file = file;
+            this.cells = cells;
+            this.invalid = invalid;
+            this.cellStart = cellStart;
+            this.stride = stride;
+            this.width = width;
+            this.height = height;
+            this.fromRow = fromRow;
+            this.toRow = toRow;
+            this.minRows = minRows;
+        }
+
+        @Override
+        protected Integer compute() {
+            if (toRow - fromRow > minRows) {
+                int middle = (fromRow + toRow) >>> 1;
+
+                RowRangeTask top = new RowRangeTask(file, cells, invalid, cellStart, stride, width, height, fromRow, middle, minRows);
+                RowRangeTask bottom = new RowRangeTask(file, cells, invalid, cellStart, stride, width, height, middle, toRow, minRows);
+
+                top.fork();
+                int bottomGold = bottom.compute();
+                return top.join() + bottomGold;
+            }
+            return parseRows();
+        }
+
+        /**
+         * Checks and copies the lines in this task's range.
+         *
+         * @return The amount of gold in the lines
+         */
+        private int parseRows() {
+            int goldCount = 0;
+
+            for (int row = fromRow; row < toRow && !invalid.get(); row++) {
+                int offset = cellStart + row * stride;
+                int cell = row * width;
+
+                file.get(offset, cells, cell, width);
+
+                if (!hasLineEnding(offset + width, row)) {
+                    invalid.set(true);
+                    break;
+                }
+
+                boolean edge = row == 0 || row == height - 1;
+
+                if (cells[cell] != WALL || cells[cell + width - 1] != WALL) {
+                    invalid.set(true);
+                    break;
+                }
+
+                for (int i = cell; i < cell + width; i++) {
+                    byte next = cells[i];
+
+                    if (next != WALL) {
+                        if (edge || !Token.isValidToken((char) (next & 0xFF))) {
+                            invalid.set(true);
+                            break;
+                        }
+                        if (next == GOLD) {
+                            goldCount++;
+                        }
+                    }
+                }
+            }
+            return goldCount;
+        }
+
+        /**
+         * Checks that the line has the same line ending as the first line of the map, right after its last tile.
+         *
+         * @param index The index just after the last tile of the line
+         * @param row The line of the map
+         * @return If the line ending is where it should be
+         */
+        private boolean hasLineEnding(int index, int row) {
+            int endingLength = stride - width;
+
+            if (row == height - 1 && index == file.limit()) { // Last line without a new line at the end
+                return true;
+            }
+            if (endingLength == 2) {
+                return file.get(index) == '\r' && file.get(index + 1) == '\n';
+            }
+            return file.get(index) == '\n' || file.get(index) == '\r';
+        }
+    }
+}
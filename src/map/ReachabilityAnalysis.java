@@ -0,0 +1,449 @@
+package map;
+
+import java.util.Arrays;
+
+/**
+ * Works out which parts of a map can be reached from each other, so that maps where the exit or enough gold can't be
+ * reached are found when the map is loaded, rather than halfway through a game.
+ *
+ * Every row of the map is held as a bitset of walkable tiles (64 tiles per long). A connected component is filled
+ * from a seed tile a whole word at a time: each row is saturated left and right along its runs of walkable tiles with
+ * shifts, then rows are grown into the rows above and below them by AND-ing with the walkable bits, working through a
+ * stack of the rows that have grown until nothing changes. For every component it records how big it is, how much
+ * gold is in it and how many exits it has.
+ *
+ * The cells of every component that has an exit and enough gold to win are kept as a bitset, which the
+ * map.SpawnIndex uses so that players never spawn somewhere they can't win from.
+ */
+public class ReachabilityAnalysis {
+
+    private static final int INITIAL_COMPONENTS = 16;
+
+    private final int width;
+    private final int height;
+    private final int wordsPerRow;
+    private final int goldRequired;
+
+    private final long[] walkable;
+    private final long[] gold;
+    private final long[] exits;
+    private final long[] viable;
+
+    private int componentCount;
+    private int[] componentSizes = new int[INITIAL_COMPONENTS];
+    private int[] componentGold = new int[INITIAL_COMPONENTS];
+    private int[] componentExits = new int[INITIAL_COMPONENTS];
+    private int[] componentFirstExits = new int[INITIAL_COMPONENTS];
+
+    private int bestComponent = -1;
+
+    // The rows waiting to grow their neighbours, and which of their words have changed, while components are found
+    private int[] stack;
+    private boolean[] queued;
+    private int[] changedFrom;
+    private int[] changedTo;
+
+    /**
+     * Analyses the terrain of a map.
+     *
+     * @param template The terrain
+     */
+    ReachabilityAnalysis(MapTemplate template) {
+        this.width = template.getWidth();
+        this.height = template.getHeight();
+        this.wordsPerRow = (width + 63) >>> 6;
+        this.goldRequired = template.getGoldRequired();
+
+        int words = wordsPerRow * height;
+        walkable = new long[words];
+        gold = new long[words];
+        exits = new long[words];
+        viable = new long[words];
+
+        for (int row = 0; row < height; row++) {
+            for (int col = 0; col < width; col++) {
+                byte tile = template.cellAt(row * width + col);
+                int word = row * wordsPerRow + (col >>> 6);
+                long bit = 1L << col;
+
+                if (tile != '#') {
+                    walkable[word] |= bit;
+                }
+                if (tile == 'G') {
+                    gold[word] |= bit;
+                } else if (tile == 'E') {
+                    exits[word] |= bit;
+                }
+            }
+        }
+        findComponents();
+    }
+
+    /**
+     * Goes through the map finding a tile which isn't in a component yet, and fills the component it's in.
+     */
+    private void findComponents() {
+        long[] visited = new long[walkable.length];
+        long[] component = new long[walkable.length];
+
+        stack = new int[height];
+        queued = new boolean[height];
+        changedFrom = new int[height];
+        changedTo = new int[height];
+        Arrays.fill(changedFrom, wordsPerRow);
+        Arrays.fill(changedTo, -1);
+
+        for (int word = 0; word < walkable.length; word++) {
+            long unvisited;
+
+            while ((unvisited = walkable[word] & ~visited[word]) != 0) {
+                int seedRow = word / wordsPerRow;
+                int seedWord = word % wordsPerRow;
+                component[word] = Long.lowestOneBit(unvisited);
+
+                saturate(component, seedRow, seedWord, seedWord);
+                int[] rows = fill(component, seedRow);
+
+                addComponent(component, visited, rows[0], rows[1]);
+            }
+        }
+
+        // Only needed while the components are being found
+        stack = null;
+        queued = null;
+        changedFrom = null;
+        changedTo = null;
+    }
+
+    /**
+     * Grows a component from its seed row until it has filled everything that's connected to it. Rows that have grown
+     * are kept on a stack along with which of their words changed, and only those words are grown into the rows next
+     * to them, so each part of a row is only looked at again when the row beside it has changed there. A winding
+     * corridor is then filled in one pass along it, rather than a sweep of the whole map for every bend.
+     *
+     * @param component The component's bitset, containing the saturated seed row
+     * @param seedRow The row of the seed
+     * @return The first and last rows that the component reaches
+     */
+    private int[] fill(long[] component, int seedRow) {
+        int top = seedRow;
+        int bottom = seedRow;
+        int size = 0;
+
+        stack[size++] = seedRow;
+        queued[seedRow] = true;
+
+        while (size > 0) {
+            int row = stack[--size];
+            int from = changedFrom[row];
+            int to = changedTo[row];
+
+            queued[row] = false;
+            changedFrom[row] = wordsPerRow;
+            changedTo[row] = -1;
+
+            // A row that's still on the stack will grow its neighbours with the new words when it comes off
+            if (row > 0 && growRow(component, row - 1, row, from, to) && !queued[row - 1]) {
+                stack[size++] = row - 1;
+                queued[row - 1] = true;
+                top = Math.min(top, row - 1);
+            }
+            if (row < height - 1 && growRow(component, row + 1, row, from, to) && !queued[row + 1]) {
+                stack[size++] = row + 1;
+                queued[row + 1] = true;
+                bottom = Math.max(bottom, row + 1);
+            }
+        }
+        return new int[] {top, bottom};
+    }
+
+    /**
+     * Adds the walkable tiles of a row that are next to the component in some words of a neighbouring row, then
+     * saturates the row around them.
+     *
+     * @param component The component's bitset
+     * @param row The row to grow
+     * @param neighbour The neighbouring row
+     * @param from The first word of the neighbouring row that changed
+     * @param to The last word of the neighbouring row that changed
+     * @return If anything was added to the row
+     */
+    private boolean growRow(long[] component, int row, int neighbour, int from, int to) {
+        int start = row * wordsPerRow;
+        int neighbourStart = neighbour * wordsPerRow;
+        int first = -1;
+        int last = -1;
+
+        for (int w = from; w <= to; w++) {
+            long grown = component[neighbourStart + w] & walkable[start + w] & ~component[start + w];
+
+            if (grown != 0) {
+                component[start + w] |= grown;
+                if (first < 0) {
+                    first = w;
+                }
+                last = w;
+            }
+        }
+
+        if (first < 0) {
+            return false;
+        }
+        saturate(component, row, first, last);
+        return true;
+    }
+
+    /**
+     * Spreads the component along the runs of walkable tiles that it's been added to in some words of a row,
+     * including runs that go over the edge of a word, and records which words of the row have changed. The rest of
+     * the row has to be saturated already, so the spreading stops at the first word past them that doesn't change.
+     *
+     * @param component The component's bitset
+     * @param row The row
+     * @param from The first word that was added to
+     * @param to The last word that was added to
+     */
+    private void saturate(long[] component, int row, int from, int to) {
+        int start = row * wordsPerRow;
+        long carry = 0;
+        int w = from;
+
+        for (; w < wordsPerRow; w++) { // Left to right (towards higher bits)
+            long mask = walkable[start + w];
+            long bits = component[start + w];
+            long filled = fillUp(bits | (carry & mask & 1L), mask);
+
+            if (w > to && filled == bits) {
+                break;
+            }
+            component[start + w] = filled;
+            carry = filled >>> 63;
+        }
+        int last = w - 1;
+
+        carry = 0;
+        for (w = last; w >= 0; w--) { // Right to left (towards lower bits)
+            long mask = walkable[start + w];
+            long bits = component[start + w];
+            long filled = fillDown(bits | (carry & mask & Long.MIN_VALUE), mask);
+
+            if (w < from && filled == bits) {
+                break;
+            }
+            component[start + w] = filled;
+            carry = filled << 63;
+        }
+        int first = w + 1;
+
+        changedFrom[row] = Math.min(changedFrom[row], first);
+        changedTo[row] = Math.max(changedTo[row], last);
+    }
+
+    /**
+     * Kogge-Stone fill: spreads the set bits towards the higher bits for as long as the mask is set.
+     *
+     * @param bits The bits to spread
+     * @param mask Where they can spread to
+     * @return The spread bits
+     */
+    private static long fillUp(long bits, long mask) {
+        bits |= mask & (bits << 1);
+        mask &= mask << 1;
+        bits |= mask & (bits << 2);
+        mask &= mask << 2;
+        bits |= mask & (bits << 4);
+        mask &= mask << 4;
+        bits |= mask & (bits << 8);
+        mask &= mask << 8;
+        bits |= mask & (bits << 16);
+        mask &= mask << 16;
+        return bits | (mask & (bits << 32));
+    }
+
+    /**
+     * Kogge-Stone fill: spreads the set bits towards the lower bits for as long as the mask is set.
+     *
+     * @param bits The bits to spread
+     * @param mask Where they can spread to
+     * @return The spread bits
+     */
+    private static long fillDown(long bits, long mask) {
+        bits |= mask & (bits >>> 1);
+        mask &= mask >>> 1;
+        bits |= mask & (bits >>> 2);
+        mask &= mask >>> 2;
+        bits |= mask & (bits >>> 4);
+        mask &= mask >>> 4;
+        bits |= mask & (bits >>> 8);
+        mask &= mask >>> 8;
+        bits |= mask & (bits >>> 16);
+        mask &= mask >>> 16;
+        return bits | (mask & (bits >>> 32));
+    }
+
+    /**
+     * Records the size, gold and exits of a filled component, marks it as visited and clears it ready for the next.
+     *
+     * @param component The component's bitset
+     * @param visited Every tile that's been in a component so far
+     * @param top The first row of the component
+     * @param bottom The last row of the component
+     */
+    private void addComponent(long[] component, long[] visited, int top, int bottom) {
+        int from = top * wordsPerRow;
+        int to = (bottom + 1) * wordsPerRow;
+
+        int size = 0;
+        int goldCount = 0;
+        int exitCount = 0;
+        int firstExit = -1;
+
+        for (int word = from; word < to; word++) {
+            long bits = component[word];
+
+            if (bits != 0) {
+                size += Long.bitCount(bits);
+                goldCount += Long.bitCount(bits & gold[word]);
+                exitCount += Long.bitCount(bits & exits[word]);
+
+                if (firstExit < 0 && (bits & exits[word]) != 0) {
+                    firstExit = toCell(word, Long.numberOfTrailingZeros(bits & exits[word]));
+                }
+                visited[word] |= bits;
+            }
+        }
+
+        boolean isViable = exitCount > 0 && goldCount >= goldRequired;
+        for (int word = from; word < to; word++) {
+            if (isViable) {
+                viable[word] |= component[word];
+            }
+            component[word] = 0;
+        }
+
+        if (componentCount == componentSizes.length) {
+            componentSizes = Arrays.copyOf(componentSizes, componentCount * 2);
+            componentGold = Arrays.copyOf(componentGold, componentCount * 2);
+            componentExits = Arrays.copyOf(componentExits, componentCount * 2);
+            componentFirstExits = Arrays.copyOf(componentFirstExits, componentCount * 2);
+        }
+        componentSizes[componentCount] = size;
+        componentGold[componentCount] = goldCount;
+        componentExits[componentCount] = exitCount;
+        componentFirstExits[componentCount] = firstExit;
+
+        // The best component has an exit and the most gold
+        if (exitCount > 0 && (bestComponent < 0 || goldCount > componentGold[bestComponent])) {
+            bestComponent = componentCount;
+        }
+        componentCount++;
+    }
+
+    /**
+     * Turns a word and a bit in it into a cell index.
+     *
+     * @param word The word of the bitset
+     * @param bit The bit in the word
+     * @return The cell index (row * width + col)
+     */
+    private int toCell(int word, int bit) {
+        int row = word / wordsPerRow;
+        int col = ((word % wordsPerRow) << 6) + bit;
+        return row * width + col;
+    }
+
+    /**
+     * Checks that a map can be won, throwing the problem with the map if it can't.
+     *
+     * @throws MapFormatException If no exit can be reached, or not enough gold can be reached from an exit
+     */
+    void validate() throws MapFormatException {
+        if (bestComponent < 0) {
+            throw new MapFormatException("Error: This map doesn't have an exit!", StreamingMapParser.FIRST_MAP_LINE, 1);
+        }
+
+        if (!isWinnable()) {
+            int exit = componentFirstExits[bestComponent];
+            throw new MapFormatException(String.format("Error: Only %d gold can be reached from an exit, but %d is required!",
+                    componentGold[bestComponent], goldRequired),
+                    StreamingMapParser.FIRST_MAP_LINE + exit / width, exit % width + 1);
+        }
+    }
+
+    /**
+     * Gets if there is an exit with enough gold to win reachable from it.
+     *
+     * @return If the map can be won
+     */
+    public boolean isWinnable() {
+        return bestComponent >= 0 && componentGold[bestComponent] >= goldRequired;
+    }
+
+    /**
+     * Gets if any exit can be reached.
+     *
+     * @return If the map has an exit
+     */
+    public boolean isExitReachable() {
+        return bestComponent >= 0;
+    }
+
+    /**
+     * Gets the most gold that can be reached from an exit.
+     *
+     * @return The reachable gold
+     */
+    public int getReachableGold() {
+        return bestComponent >= 0 ? componentGold[bestComponent] : 0;
+    }
+
+    /**
+     * Gets if a cell is in a component that has an exit and enough gold to win.
+     *
+     * @param cell The cell index (row * width + col)
+     * @return If the map can be won from the cell
+     */
+    public boolean isViable(int cell) {
+        int col = cell % width;
+        return (viable[(cell / width) * wordsPerRow + (col >>> 6)] & (1L << col)) != 0;
+    }
+
+    /**
+     * Gets how many connected components of walkable tiles there are.
+     *
+     * @return The number of components
+     */
+    public int getComponentCount() {
+        return componentCount;
+    }
+
+    /**
+     * Gets how many tiles are in a component.
+     *
+     * @param component The component, from 0 to getComponentCount() - 1
+     * @return The number of tiles
+     */
+    public int getComponentSize(int component) {
+        return componentSizes[component];
+    }
+
+    /**
+     * Gets how much gold is in a component.
+     *
+     * @param component The component, from 0 to getComponentCount() - 1
+     * @return The amount of gold
+     */
+    public int getComponentGold(int component) {
+        return componentGold[component];
+    }
+
+    /**
+     * Gets how many exits are in a component.
+     *
+     * @param component The component, from 0 to getComponentCount() - 1
+     * @return The number of exits
+     */
+    public int getComponentExits(int component) {
+        return componentExits[component];
+    }
+}
@@ -0,0 +1,134 @@
+package map;
+
+import main.Token;
+
+/**
+ * An index of every tile that a player can spawn on, so that picking a random spawn doesn't have to keep guessing
+ * tiles until it finds one that isn't a wall. If the map can be won, only tiles that can reach an exit with enough gold
+ * (see map.ReachabilityAnalysis) are in the index.
+ *
+ * The tiles are kept as a bitset (one bit per cell) with a rank directory, which holds how many spawnable tiles come
+ * before each word of the bitset. Finding the k-th spawnable tile starts from the directory's samples either side of
+ * it (one every 64 spawnable tiles), binary searches the words between them, and then finds the bit in the word a
+ * byte at a time with a lookup table. So even on a sparse map, where the samples can be thousands of words apart, it
+ * only looks at a few words. The whole index is about a fifth of a byte per cell.
+ */
+public class SpawnIndex {
+
+    /**
+     * How many spawnable tiles there are between each sample of the rank directory.
+     */
+    private static final int SAMPLE_RATE = 64;
+
+    /**
+     * Where the k-th set bit of each byte is, at [byte * 8 + k].
+     */
+    private static final byte[] SELECT_IN_BYTE = new byte[256 * 8];
+
+    static {
+        for (int value = 0; value < 256; value++) {
+            int k = 0;
+            for (int bit = 0; bit < 8; bit++) {
+                if ((value & (1 << bit)) != 0) {
+                    SELECT_IN_BYTE[value * 8 + k++] = (byte) bit;
+                }
+            }
+        }
+    }
+
+    private final long[] bits;
+    private final int[] ranks;
+    private final int[] samples;
+    private final int size;
+
+    /**
+     * Builds the index from the tiles of a template that can be spawned on.
+     *
+     * @param template The map's terrain
+     */
+    SpawnIndex(MapTemplate template) {
+        int cellCount = template.getWidth() * template.getHeight();
+        ReachabilityAnalysis reachability = template.getReachability();
+        boolean winnableOnly = reachability.isWinnable();
+        byte floor = (byte) Token.FLOOR.getChar();
+        byte exit = (byte) Token.EXIT.getChar();
+
+        bits = new long[(cellCount + 63) >>> 6];
+        for (int cell = 0; cell < cellCount; cell++) {
+            byte tile = template.cellAt(cell);
+
+            // Same as main.Token#canSpawnOn
+            if ((tile == floor || tile == exit) && (!winnableOnly || reachability.isViable(cell))) {
+                bits[cell >>> 6] |= 1L << cell;
+            }
+        }
+
+        ranks = new int[bits.length + 1];
+        for (int word = 0; word < bits.length; word++) {
+            ranks[word + 1] = ranks[word] + Long.bitCount(bits[word]);
+        }
+        size = ranks[bits.length];
+
+        samples = new int[size / SAMPLE_RATE + 1];
+        int word = 0;
+        for (int sample = 0; sample < samples.length; sample++) {
+            while (ranks[word + 1] <= sample * SAMPLE_RATE && word < bits.length - 1) {
+                word++;
+            }
+            samples[sample] = word;
+        }
+    }
+
+    /**
+     * Gets how many tiles can be spawned on.
+     *
+     * @return The number of spawnable tiles
+     */
+    public int size() {
+        return size;
+    }
+
+    /**
+     * Gets if a player can spawn on a cell.
+     *
+     * @param cell The cell index (row * width + col)
+     * @return If it's in the index
+     */
+    public boolean contains(int cell) {
+        return (bits[cell >>> 6] & (1L << cell)) != 0;
+    }
+
+    /**
+     * Finds the k-th spawnable tile, going through the map in row-major order.
+     *
+     * @param rank Which spawnable tile, from 0 to size() - 1
+     * @return The cell index of the tile
+     */
+    public int select(int rank) {
+        if (rank < 0 || rank >= size) {
+            throw new IndexOutOfBoundsException(String.format("Error: Spawn %d isn't in an index of %d!", rank, size));
+        }
+
+        // The word holding it is the first one whose next rank is past it, which is between the samples either side
+        int sample = rank / SAMPLE_RATE;
+        int low = samples[sample];
+        int high = sample + 1 < samples.length ? samples[sample + 1] : bits.length - 1;
+        while (low < high) {
+            int middle = (low + high) >>> 1;
+            if (ranks[middle + 1] <= rank) {
+                low = middle + 1;
+            } else {
+                high = middle;
+            }
+        }
+
+        long word = bits[low];
+        int skip = rank - ranks[low];
+        int shift = 0;
+        for (int count = Long.bitCount(word & 0xFF); skip >= count; count = Long.bitCount((word >>> shift) & 0xFF)) {
+            skip -= count;
+            shift += 8;
+        }
+        return (low << 6) + shift + SELECT_IN_BYTE[(int) ((word >>> shift) & 0xFF) * 8 + skip];
+    }
+}
@@ -0,0 +1,285 @@
+package map;
+
+import main.Token;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.StandardOpenOption;
+
+/**
+ * Parses a text map in a single pass over the file.
+ *
+ * The file is read through a fixed size buffer, and every tile is checked (valid token, line length, edges) and
+ * written straight into the final cell array as it's read. Once it's all read, map.ReachabilityAnalysis checks that
+ * an exit and enough gold can be reached. Nothing is kept per line, so parsing is linear in the size
+ * of the file and the only thing allocated in proportion to it is the cell array itself.
+ *
+ * Any problem with the map is thrown as a map.MapFormatException with the line and column of the problem.
+ */
+public class StreamingMapParser {
+
+    private static final int BUFFER_SIZE = 1 << 16;
+    private static final int MAX_HEADER_LENGTH = 1024;
+
+    /**
+     * Line number of the first line of the map itself (lines 1 and 2 are the name and gold).
+     */
+    static final int FIRST_MAP_LINE = 3;
+
+    private static final byte WALL = (byte) Token.WALL.getChar();
+    private static final byte GOLD = (byte) Token.GOLD.getChar();
+
+    private final Path path;
+
+    private String name;
+    private int goldRequired;
+    private int goldColumn;
+
+    private byte[] header;
+    private int headerLength;
+
+    private byte[] cells;
+    private int cellCount;
+    private int goldCount;
+    private int width;
+
+    private int line;
+    private int column;
+    private int firstNonWallColumn;
+    private int lastRowFirstNonWallColumn;
+
+    /**
+     * Creates a parser for a map in the maps folder.
+     *
+     * @param fileName The name of the file in the maps folder
+     */
+    public StreamingMapParser(String fileName) {
+        this(Paths.get("maps", fileName));
+    }
+
+    /**
+     * Creates a parser for a map file.
+     *
+     * @param path The path to the map file
+     */
+    public StreamingMapParser(Path path) {
+        this.path = path;
+    }
+
+    /**
+     * Reads the map file and parses it into a map.
+     *
+     * @return The parsed map
+     * @throws IOException If the file can't be read
+     * @throws MapFormatException If the file isn't a valid map
+     */
+    public Map parse() throws IOException, MapFormatException {
+        try (FileChannel channel = FileChannel.open(path, StandardOpenOption.READ)) {
+            if (channel.size() > Integer.MAX_VALUE - 8) {
+                throw new MapFormatException("Error: Map file is too large!", 1, 1);
+            }
+
+            reset((int) channel.size());
+
+            ByteBuffer buffer = ByteBuffer.allocate(BUFFER_SIZE);
+            byte[] bytes = buffer.array();
+            boolean afterCarriageReturn = false;
+
+            while (channel.read(buffer) != -1) {
+                int length = buffer.position();
+
+                for (int i = 0; i < length; i++) {
+                    byte next = bytes[i];
+
+                    if (next == '\n') {
+                        if (!afterCarriageReturn) { // \r\n is one line ending
+                            endLine();
+                        }
+                        afterCarriageReturn = false;
+                    } else if (next == '\r') {
+                        endLine();
+                        afterCarriageReturn = true;
+                    } else {
+                        afterCarriageReturn = false;
+
+                        if (line >= FIRST_MAP_LINE) {
+                            addCell(next);
+                        } else {
+                            addHeaderByte(next);
+                        }
+                    }
+                }
+                buffer.clear();
+            }
+        }
+        return finish();
+    }
+
+    /**
+     * Clears the state of the parser so that it can parse a file.
+     *
+     * @param fileSize The size of the file, which is the most cells that the map could have
+     */
+    private void reset(int fileSize) {
+        name = null;
+        goldRequired = 0;
+        goldColumn = 0;
+        header = new byte[MAX_HEADER_LENGTH];
+        headerLength = 0;
+        cells = new byte[fileSize];
+        cellCount = 0;
+        goldCount = 0;
+        width = -1;
+        line = 1;
+        column = 0;
+        firstNonWallColumn = -1;
+        lastRowFirstNonWallColumn = -1;
+    }
+
+    /**
+     * Checks a tile of the map and adds it to the cells.
+     *
+     * @param cell The char of the tile
+     * @throws MapFormatException If the tile isn't valid where it is
+     */
+    private void addCell(byte cell) throws MapFormatException {
+        if (width >= 0 && column >= width) {
+            throw error(String.format("Error: Line is longer than the width of the map (%d)!", width), column + 1);
+        }
+
+        if (cell != WALL) {
+            if (!Token.isValidToken((char) (cell & 0xFF))) {
+                throw error(String.format("Error: Invalid token '%c' on map!", (char) (cell & 0xFF)), column + 1);
+            }
+            if (column == 0 || width < 0) { // Left edge, or anywhere on the top edge
+                throw error("Error: This map doesn't have valid edges!", column + 1);
+            }
+            if (firstNonWallColumn < 0) {
+                firstNonWallColumn = column;
+            }
+            if (cell == GOLD) {
+                goldCount++;
+            }
+        }
+        cells[cellCount++] = cell;
+        column++;
+    }
+
+    /**
+     * Adds a byte of the name or gold line.
+     *
+     * @param next The byte
+     * @throws MapFormatException If the line is too long to be a header
+     */
+    private void addHeaderByte(byte next) throws MapFormatException {
+        if (headerLength == MAX_HEADER_LENGTH) {
+            throw error("Error: Line is too long!", column + 1);
+        }
+        header[headerLength++] = next;
+        column++;
+    }
+
+    /**
+     * Handles the end of a line, checking its length and right edge if it's part of the map.
+     *
+     * @throws MapFormatException If the line isn't valid
+     */
+    private void endLine() throws MapFormatException {
+        if (line == 1) {
+            parseMapName();
+        } else if (line == 2) {
+            parseGoldRequired();
+        } else if (width < 0) { // The first line of the map sets the width
+            if (column == 0) {
+                throw error("Error: Unable to find map in text file!", 1);
+            }
+            width = column;
+        } else if (column != width) {
+            throw error(String.format("Error: Invalid line length %d, expected %d!", column, width), column + 1);
+        }
+
+        if (line >= FIRST_MAP_LINE && cells[cellCount - 1] != WALL) {
+            throw error("Error: This map doesn't have valid edges!", width);
+        }
+
+        lastRowFirstNonWallColumn = firstNonWallColumn;
+        firstNonWallColumn = -1;
+        headerLength = 0;
+        column = 0;
+        line++;
+    }
+
+    /**
+     * Finishes off the last line and checks the parts of the map that can only be checked at the end of the file,
+     * including whether the map can be won.
+     *
+     * @return The parsed map
+     * @throws MapFormatException If the map isn't valid
+     */
+    private Map finish() throws MapFormatException {
+        if (column > 0) { // Last line doesn't end in a new line
+            endLine();
+        }
+
+        if (width < 0) {
+            throw new MapFormatException("Error: Unable to find map in text file!", Math.max(line, FIRST_MAP_LINE), 1);
+        }
+        if (lastRowFirstNonWallColumn >= 0) { // The bottom edge
+            throw new MapFormatException("Error: This map doesn't have valid edges!", line - 1, lastRowFirstNonWallColumn + 1);
+        }
+        if (goldCount < goldRequired) {
+            throw new MapFormatException(String.format("Error: Not enough gold in the map (%d) based on the gold required specified!",
+                    goldCount), 2, goldColumn);
+        }
+
+        int height = cellCount / width;
+        Map map = new Map(name, goldRequired, width, height, ByteBuffer.wrap(cells, 0, cellCount));
+
+        map.getTemplate().getReachability().validate(); // Exits and gold that can't be reached
+        return map;
+    }
+
+    /**
+     * Parses what should be line 1 of the text file which details the map name.
+     */
+    private void parseMapName() {
+        String text = new String(header, 0, headerLength, StandardCharsets.UTF_8);
+        name = text.substring(text.indexOf(" ") + 1).trim();
+    }
+
+    /**
+     * Parses what should be line 2 of the text file which details how much gold is required to win.
+     *
+     * @throws MapFormatException If it isn't a valid amount of gold
+     */
+    private void parseGoldRequired() throws MapFormatException {
+        String text = new String(header, 0, headerLength, StandardCharsets.UTF_8);
+        String goldString = text.substring(text.indexOf(" ") + 1);
+        goldColumn = text.indexOf(" ") + 2;
+
+        try {
+            goldRequired = Integer.parseInt(goldString);
+        } catch (NumberFormatException e) {
+            throw error("Error: Invalid gold amount " + goldString + ".", goldColumn);
+        }
+
+        if (goldRequired < 0) {
+            throw error("Error: Cannot have negative gold!", goldColumn);
+        }
+    }
+
+    /**
+     * Creates an exception for a problem on the current line.
+     *
+     * @param message What was wrong
+     * @param column The column on the current line, starting at 1
+     * @return The exception to throw
+     */
+    private MapFormatException error(String message, int column) {
+        return new MapFormatException(message, line, column);
+    }
+}
@@ -0,0 +1,216 @@
+package player;
+
+import main.GameRandom;
+import main.Location;
+import map.Map;
+
+import java.util.ArrayList;
+import java.util.BitSet;
+import java.util.Collections;
+import java.util.List;
+import java.util.stream.IntStream;
+
+/**
+ * All of the bots in a game, which take their turns together.
+ *
+ * A turn has two phases. First every bot decides where it wants to go (see difficulty.BotStrategy#decideMove). Nothing
+ * on the map or any player moves until every bot has decided, so the decisions all see the same state of the game
+ * (the state at the start of the turn), and can be worked out in parallel on every core once there are enough bots to
+ * be worth it. Each bot only touches its own strategy while deciding. Anything the bots share (like the distance field
+ * to the human) is brought up to date before that, one bot at a time (see difficulty.BotStrategy#prepareTurn), so
+ * while they decide it's only read and nothing has to be locked.
+ *
+ * Then the moves are made one bot at a time, in the order the bots were added, so the result never depends on which
+ * thread finished first. A bot can't move into a wall or onto a tile another bot is on (including one a bot earlier
+ * in the order has just moved to). Which tiles have a bot on them is kept in a bitset, so checking a move, or if the
+ * human has been caught, doesn't go through the other bots.
+ */
+public class BotGroup {
+
+    /**
+     * Below this many bots, deciding in parallel costs more than it saves.
+     */
+    private static final int PARALLEL_THRESHOLD = 32;
+
+    /**
+     * How many random spawns to try for a bot before giving up because the map is too crowded.
+     */
+    private static final int SPAWN_ATTEMPTS = 64;
+
+    private final List<BotPlayer> bots = new ArrayList<>();
+    private final BitSet occupied = new BitSet();
+    private final int width;
+    private final int height;
+
+    private Location.Direction[] decisions = new Location.Direction[0];
+
+    /**
+     * Creates an empty group of bots for a map.
+     *
+     * @param map The map they're on
+     */
+    public BotGroup(Map map) {
+        this.width = map.getWidth();
+        this.height = map.getHeight();
+    }
+
+    /**
+     * Picks a random spawn location for a new bot, far enough from the human and not on another bot.
+     *
+     * @param map The map
+     * @param random The game's random numbers for spawning
+     * @param humanLocation The human's location
+     * @param minDistance The bot has to spawn further than this many moves from the human
+     * @return The spawn location
+     */
+    public Location generateSpawnLocation(Map map, GameRandom random, Location humanLocation, int minDistance) {
+        List<Location> human = List.of(humanLocation);
+
+        for (int attempt = 0; attempt < SPAWN_ATTEMPTS; attempt++) {
+            Location location = map.generateSpawnLocation(random, human, minDistance);
+
+            if (!isOccupied(location)) {
+                return location;
+            }
+        }
+        throw new IllegalStateException(String.format("Error: There's no room to spawn bot %d on the map!", bots.size() + 1));
+    }
+
+    /**
+     * Adds a bot to the group. It takes its turns after every bot already in the group.
+     *
+     * @param bot The bot
+     */
+    public void add(BotPlayer bot) {
+        if (isOccupied(bot.getLocation())) {
+            throw new IllegalArgumentException(String.format("Error: There's already a bot at %d, %d!",
+                    bot.getLocation().getCol(), bot.getLocation().getRow()));
+        }
+
+        bots.add(bot);
+        occupied.set(toCell(bot.getLocation()));
+    }
+
+    /**
+     * Plays every bot's turn: they all decide (in parallel if there are enough of them), then they all move.
+     *
+     * @param map The map
+     * @param humanLocation The human's location
+     */
+    public void takeTurns(Map map, Location humanLocation) {
+        int count = bots.size();
+        if (decisions.length < count) {
+            decisions = new Location.Direction[count];
+        }
+
+        for (int i = 0; i < count; i++) {
+            bots.get(i).prepareTurn(map, humanLocation);
+        }
+
+        if (count >= PARALLEL_THRESHOLD) {
+            IntStream.range(0, count).parallel().forEach(i -> decisions[i] = bots.get(i).decideTurn(map, humanLocation));
+        } else {
+            for (int i = 0; i < count; i++) {
+                decisions[i] = bots.get(i).decideTurn(map, humanLocation);
+            }
+        }
+
+        for (int i = 0; i < count; i++) {
+            Location.Direction direction = decisions[i];
+
+            if (direction != null) {
+                move(map, bots.get(i), direction);
+            }
+        }
+    }
+
+    /**
+     * Gets where a bot decided to go in the last turn, whether or not it got there.
+     *
+     * @param index The bot's place in the order they take their turns
+     * @return The direction, or null if it didn't decide to move
+     */
+    public Location.Direction getLastDecision(int index) {
+        return decisions[index];
+    }
+
+    /**
+     * Gets how many bots there are.
+     *
+     * @return The number of bots
+     */
+    public int size() {
+        return bots.size();
+    }
+
+    /**
+     * Gets if any bot has caught the human, by being on the same tile.
+     *
+     * @param humanLocation The human's location
+     * @return If the human has been caught
+     */
+    public boolean isCaught(Location humanLocation) {
+        return isOccupied(humanLocation);
+    }
+
+    /**
+     * Gets if there's a bot on a tile.
+     *
+     * @param location The tile's location
+     * @return If a bot is there
+     */
+    public boolean isOccupied(Location location) {
+        return !location.outOfBounds(width, height) && occupied.get(toCell(location));
+    }
+
+    /**
+     * Gets the bots, in the order they take their turns.
+     *
+     * @return The bots, which can't be changed
+     */
+    public List<BotPlayer> getBots() {
+        return Collections.unmodifiableList(bots);
+    }
+
+    /**
+     * Gets where every bot is, in the order they take their turns.
+     *
+     * @return A new list of the bots' locations
+     */
+    public List<Location> getLocations() {
+        List<Location> locations = new ArrayList<>(bots.size());
+        for (BotPlayer bot : bots) {
+            locations.add(bot.getLocation());
+        }
+        return locations;
+    }
+
+    /**
+     * Moves a bot, unless there's a wall or another bot in the way.
+     *
+     * @param map The map
+     * @param bot The bot
+     * @param direction The direction it decided to move in
+     */
+    private void move(Map map, BotPlayer bot, Location.Direction direction) {
+        Location from = bot.getLocation();
+        if (isOccupied(from.adjacentLocation(direction))) {
+            return;
+        }
+
+        if (bot.move(map, direction)) {
+            occupied.clear(toCell(from));
+            occupied.set(toCell(bot.getLocation()));
+        }
+    }
+
+    /**
+     * Turns a location into a cell index.
+     *
+     * @param location The location, which has to be on the map
+     * @return The cell index
+     */
+    private int toCell(Location location) {
+        return location.getRow() * width + location.getCol();
+    }
+}
@@ -5,8 +5,7 @@ import main.Location;
 import map.Map;
 
 /**
- * This class creates and handles the BOT player. It calls its next turn based on the Bot Difficulty assigned to it
- * and also contains basic implementation of the MOVE command (so it doesn't print out SUCCESS/FAIL)
+ * This class creates and handles the BOT player. It decides its next turn based on the Bot Difficulty assigned to it.
  */
 public class BotPlayer extends Player {
 
@@ -22,24 +21,24 @@ public class BotPlayer extends Player {
     }
 
     /**
-     * Calls the bots next turn based on the difficulty.BotStrategy.
+     * Gets the bot's difficulty.BotStrategy ready for a turn, before any bot decides.
      *
      * @param map The entire map
      * @param humanLocation The humans location
      */
-    public void callTurn(Map map, Location humanLocation) {
-        botStrategy.nextMove(map, humanLocation);
+    public void prepareTurn(Map map, Location humanLocation) {
+        botStrategy.prepareTurn(map, humanLocation);
     }
 
     /**
-     * Runs the MOVE command.
+     * Decides the bots next turn based on the difficulty.BotStrategy, without moving it.
      *
-     * @param map The map
-     * @param direction The direction
+     * @param map The entire map
+     * @param humanLocation The humans location
+     * @return The direction it wants to move in, or null if it isn't moving
      */
-    @Override
-    public void executeMoveCommand(Map map, Location.Direction direction) {
-        move(map, direction);
+    public Location.Direction decideTurn(Map map, Location humanLocation) {
+        return botStrategy.decideMove(map, humanLocation);
     }
 
     /**
@@ -50,4 +49,13 @@ public class BotPlayer extends Player {
     public void setDifficulty(BotStrategy botStrategy) {
         this.botStrategy = botStrategy;
     }
+
+    /**
+     * Gets the difficulty of the bot.
+     *
+     * @return The difficulty
+     */
+    public BotStrategy getDifficulty() {
+        return botStrategy;
+    }
 }
@@ -4,70 +4,63 @@ import main.Location;
 import map.Map;
 
 /**
- * The Human player.Player. This class is responsible for most of the commands that have something to do with the human.
- * These include: MOVE, PICKUP, QUIT/EXIT and GOLD.
+ * The Human player.Player. This class keeps the gold the human has picked up and checks if they can escape, while
+ * the game reports what happened.
  */
 public class HumanPlayer extends Player {
 
     private int goldCollected;
 
-    private final String FAIL_MSG = "FAIL";
-    private final String SUCCESS_MSG = "SUCCESS";
-
     /**
      * Creates a new player
      *
      * @param location Their starting location.
      */
     public HumanPlayer(Location location) {
-        super(location);
-        this.goldCollected = 0;
+        this(location, 0);
     }
 
     /**
-     * Executes the MOVE command, - moving the player around the map based on the direction they input.
+     * Creates a player who has already picked up some gold, for example when a game is restored from a snapshot.
      *
-     * @param map The entire map
-     * @param direction The direction they'd like to move in
+     * @param location Their location.
+     * @param goldCollected The gold they own
      */
-    @Override
-    public void executeMoveCommand(Map map, Location.Direction direction) {
-        if (super.move(map, direction)) {
-            System.out.println(SUCCESS_MSG);
-        } else {
-            System.out.println(FAIL_MSG);
-        }
+    public HumanPlayer(Location location, int goldCollected) {
+        super(location);
+        this.goldCollected = goldCollected;
     }
 
     /**
-     * Executes the PICKUP command - picks up any gold on the tile the player is standing on, if there is any there.
+     * Picks up the gold on the tile the player is standing on, if there is any, without printing anything.
      *
      * @param map The entire map
+     * @return If there was gold to pick up
      */
-    public void executePickupCommand(Map map) {
+    public boolean pickupGold(Map map) {
         if (map.pickupGoldAt(location)) {
             goldCollected++;
-            System.out.println(SUCCESS_MSG + ". Gold owned: " + goldCollected);
-        } else {
-            System.out.println(FAIL_MSG);
+            return true;
         }
+        return false;
     }
 
     /**
-     * Executes the QUIT / EXIT command - Quits the game, if they have enough gold and are standing on the exit square
-     * then they win, otherwise they lose. The game quits regardless of whether they have met the pre-conditions to win.
+     * Checks if the player would win by quitting now: they're standing on an exit with enough gold.
      *
      * @param map The map
      * @return If the player has valid exit conditions.
      */
-    public boolean executeQuitCommand(Map map) {
+    public boolean canEscape(Map map) {
         return map.getTokenAtLocation(location).isExit() && map.getGoldRequired() <= goldCollected;
     }
 
     /**
-     * Executes the GOLD command - Prints out how much gold the player has.
+     * Gets how much gold the player has picked up.
+     *
+     * @return The gold owned
      */
-    public void executeGoldCommand() {
-        System.out.println("Gold owned: " + goldCollected);
+    public int getGoldCollected() {
+        return goldCollected;
     }
 }
\ No newline at end of file
@@ -6,8 +6,7 @@ import map.Map;
 /**
  * Framework for a player.
  *
- * This class contains their location, as well as an implementation of MOVE as well as an executeMoveCommand, which
- * allows the human to print out SUCCESS or FAIL whereas the BOT doesn't need this.
+ * This class contains their location, as well as an implementation of MOVE.
  */
 public abstract class Player {
 
@@ -22,14 +21,6 @@ public abstract class Player {
         this.location = location;
     }
 
-    /**
-     * Allows for implementation of the MOVE command, mainly so that the human can print success or fail.
-     *
-     * @param map The entire map
-     * @param direction The direction
-     */
-    protected abstract void executeMoveCommand(Map map, Location.Direction direction);
-
     /**
      * Actually moves the player from one tile to the next.
      *
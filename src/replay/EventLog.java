@@ -0,0 +1,52 @@
+package replay;
+
+/**
+ * The format of a game's event log, which replay.EventLogWriter writes and replay.EventLogReader reads.
+ *
+ * Everything in a log is a varint (7 bits a byte, lowest first, the top bit set on every byte but the last), so the
+ * small numbers a game is made of take one byte each. A log is:
+ *
+ * - The header: the bytes "DODL", the version, the seed (zigzag encoded, as it can be negative), the map's file name
+ *   and the difficulty's name (each a length then UTF-8 bytes), the custom weighting and the number of bots.
+ * - A record for every step: the human's decoded command plus one (see main.CommandDecoder), then (unless it was a
+ *   QUIT, which ends the game before the bots' turns) one number for each bot: 0 if it didn't decide to move,
+ *   otherwise its direction's ordinal plus one.
+ * - The end: a 0, then the human's column, row and gold, the number of turns, the flags (1 if the human won, 2 if they
+ *   were caught), and the column and row of every bot.
+ *
+ * A log that was cut off (because the game crashed, or is still being played) just has no end, and everything before
+ * that can still be replayed.
+ */
+final class EventLog {
+
+    static final byte[] MAGIC = {'D', 'O', 'D', 'L'};
+    static final int VERSION = 1;
+
+    static final int END = 0;
+
+    static final int FLAG_WON = 1;
+    static final int FLAG_CAUGHT = 2;
+
+    private EventLog() {
+    }
+
+    /**
+     * Zigzag encodes a long, so small negative numbers are small too.
+     *
+     * @param value The number
+     * @return The encoded number
+     */
+    static long zigzag(long value) {
+        return (value << 1) ^ (value >> 63);
+    }
+
+    /**
+     * Undoes zigzag.
+     *
+     * @param value The encoded number
+     * @return The number
+     */
+    static long unzigzag(long value) {
+        return (value >>> 1) ^ -(value & 1);
+    }
+}
@@ -0,0 +1,239 @@
+package replay;
+
+import ui.BotDifficultySelector.Difficulty;
+
+import java.io.EOFException;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Arrays;
+
+/**
+ * Reads a game's event log (see replay.EventLog). The header is read when it's created, then the steps are read one
+ * at a time: nextCommand for the human's command, then nextBotMove for each bot (unless the command was a QUIT), until
+ * hasNextStep says there are no more. If the log has an end, the final state of the game can then be read.
+ *
+ * Logs are small (a few bytes a step), so the whole file is read at once, and reading a step allocates nothing.
+ */
+public class EventLogReader {
+
+    private final byte[] data;
+    private int position = 0;
+
+    private final long seed;
+    private final String mapId;
+    private final Difficulty difficulty;
+    private final int customWeighting;
+    private final int botCount;
+
+    private boolean ended = false;
+    private int[] finalState;
+
+    /**
+     * Reads a log's header.
+     *
+     * @param data The whole log
+     * @throws IOException If it isn't an event log, or the header is cut off
+     */
+    public EventLogReader(byte[] data) throws IOException {
+        this.data = data;
+
+        if (data.length < EventLog.MAGIC.length
+                || !Arrays.equals(data, 0, EventLog.MAGIC.length, EventLog.MAGIC, 0, EventLog.MAGIC.length)) {
+            throw new IOException("Not an event log");
+        }
+        position = EventLog.MAGIC.length;
+
+        int version = readInt();
+        if (version != EventLog.VERSION) {
+            throw new IOException("Unknown event log version " + version);
+        }
+
+        this.seed = EventLog.unzigzag(readVarint());
+        this.mapId = readString();
+        try {
+            this.difficulty = Difficulty.valueOf(readString());
+        } catch (IllegalArgumentException e) {
+            throw new IOException("Unknown difficulty in the event log");
+        }
+        this.customWeighting = readInt();
+        this.botCount = readInt();
+    }
+
+    /**
+     * Reads a log from a file.
+     *
+     * @param file The file
+     * @return The reader
+     * @throws IOException If the file can't be read, or isn't an event log
+     */
+    public static EventLogReader open(Path file) throws IOException {
+        return new EventLogReader(Files.readAllBytes(file));
+    }
+
+    /**
+     * Checks if there's another step. If the log has an end, this reads it.
+     *
+     * @return If there is
+     * @throws IOException If the end is cut off
+     */
+    public boolean hasNextStep() throws IOException {
+        if (ended || position >= data.length) {
+            return false;
+        }
+
+        if (data[position] == EventLog.END) {
+            position++;
+            ended = true;
+
+            finalState = new int[5 + 2 * botCount];
+            for (int i = 0; i < finalState.length; i++) {
+                finalState[i] = readInt();
+            }
+            return false;
+        }
+        return true;
+    }
+
+    /**
+     * Reads the human's command for the next step.
+     *
+     * @return The decoded command (see main.CommandDecoder)
+     * @throws IOException If the log is cut off in the middle of it
+     */
+    public int nextCommand() throws IOException {
+        return readInt() - 1;
+    }
+
+    /**
+     * Reads where the next bot decided to go.
+     *
+     * @return The direction's ordinal, or -1 if it didn't decide to move
+     * @throws IOException If the log is cut off in the middle of the step
+     */
+    public int nextBotMove() throws IOException {
+        return readInt() - 1;
+    }
+
+    /**
+     * Gets if the log has an end (otherwise it was cut off), once every step has been read.
+     *
+     * @return If it has
+     */
+    public boolean hasEnd() {
+        return ended;
+    }
+
+    /**
+     * Gets the final state of the game from the end of the log: the human's column, row and gold, the number of turns,
+     * the flags, and then the column and row of every bot.
+     *
+     * @return The final state
+     */
+    public int[] getFinalState() {
+        if (!ended) {
+            throw new IllegalStateException("Error: The event log hasn't got an end!");
+        }
+        return finalState.clone();
+    }
+
+    /**
+     * Gets the game's seed.
+     *
+     * @return The seed
+     */
+    public long getSeed() {
+        return seed;
+    }
+
+    /**
+     * Gets the name of the map's file in maps/.
+     *
+     * @return The file name
+     */
+    public String getMapId() {
+        return mapId;
+    }
+
+    /**
+     * Gets the bots' difficulty.
+     *
+     * @return The difficulty
+     */
+    public Difficulty getDifficulty() {
+        return difficulty;
+    }
+
+    /**
+     * Gets the weighting for the CUSTOM difficulty.
+     *
+     * @return The weighting
+     */
+    public int getCustomWeighting() {
+        return customWeighting;
+    }
+
+    /**
+     * Gets how many bots there were.
+     *
+     * @return The number of bots
+     */
+    public int getBotCount() {
+        return botCount;
+    }
+
+    /**
+     * Reads a varint that has to fit in an int.
+     *
+     * @return The number
+     * @throws IOException If it's cut off or too big
+     */
+    private int readInt() throws IOException {
+        long value = readVarint();
+        if (value > Integer.MAX_VALUE) {
+            throw new IOException("Number too big at byte " + position + " of the event log");
+        }
+        return (int) value;
+    }
+
+    /**
+     * Reads a varint.
+     *
+     * @return The number
+     * @throws IOException If it's cut off or too long
+     */
+    private long readVarint() throws IOException {
+        long value = 0;
+
+        for (int shift = 0; shift < 64; shift += 7) {
+            if (position >= data.length) {
+                throw new EOFException("The event log is cut off");
+            }
+
+            byte b = data[position++];
+            value |= (long) (b & 0x7F) << shift;
+            if (b >= 0) {
+                return value;
+            }
+        }
+        throw new IOException("Number too long at byte " + position + " of the event log");
+    }
+
+    /**
+     * Reads a string, as its length then its UTF-8 bytes.
+     *
+     * @return The string
+     * @throws IOException If it's cut off
+     */
+    private String readString() throws IOException {
+        int length = readInt();
+        if (length > data.length - position) {
+            throw new EOFException("The event log is cut off");
+        }
+
+        String text = new String(data, position, length, StandardCharsets.UTF_8);
+        position += length;
+        return text;
+    }
+}
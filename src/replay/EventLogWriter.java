@@ -0,0 +1,272 @@
+package replay;
+
+import main.CommandDecoder;
+import main.GameEngine;
+import main.Location;
+import main.StepListener;
+import main.StepResult;
+import player.BotGroup;
+import player.BotPlayer;
+import ui.BotDifficultySelector.Difficulty;
+
+import java.io.Closeable;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Path;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+
+/**
+ * Writes a game's event log (see replay.EventLog) as it's played, by listening to its main.GameEngine.
+ *
+ * A step is only encoded into a buffer in memory, which costs a few bytes and no allocation, so the log doesn't slow
+ * down a turn. When the buffer is full (or on flush) it's handed to a background thread which writes it to the
+ * file, and the writer carries on with a spare buffer. The writing thread is shared by every log, and writes each log's
+ * buffers in the order they were handed over. If a write fails, the error is thrown by the next flush or close.
+ *
+ * Like the engine it listens to, a writer should only be used by one thread.
+ */
+public class EventLogWriter implements StepListener, Closeable {
+
+    /**
+     * The extension of event log files.
+     */
+    public static final String EXTENSION = ".dodlog";
+
+    private static final int BUFFER_SIZE = 8192;
+
+    private static final ExecutorService WRITER = Executors.newSingleThreadExecutor(task -> {
+        Thread thread = new Thread(task, "dod-event-log");
+        thread.setDaemon(true); // A game can end without waiting for its log
+        return thread;
+    });
+
+    private final OutputStream out;
+    private final ConcurrentLinkedQueue<byte[]> spareBuffers = new ConcurrentLinkedQueue<>();
+
+    private byte[] buffer = new byte[BUFFER_SIZE];
+    private int size = 0;
+    private Future<?> lastWrite;
+    private volatile IOException failure;
+    private boolean finished = false;
+    private boolean closed = false;
+
+    /**
+     * Creates a log and writes its header.
+     *
+     * @param out Where to write it, which the writer closes
+     * @param seed The game's seed
+     * @param mapId The name of the map's file in maps/
+     * @param difficulty The bots' difficulty
+     * @param customWeighting The weighting for the CUSTOM difficulty
+     * @param botCount How many bots there are
+     */
+    public EventLogWriter(OutputStream out, long seed, String mapId, Difficulty difficulty, int customWeighting, int botCount) {
+        this.out = out;
+
+        for (byte b : EventLog.MAGIC) {
+            writeByte(b);
+        }
+        writeVarint(EventLog.VERSION);
+        writeVarint(EventLog.zigzag(seed));
+        writeString(mapId);
+        writeString(difficulty.name());
+        writeVarint(customWeighting);
+        writeVarint(botCount);
+    }
+
+    /**
+     * Creates a log in a file.
+     *
+     * @param file The file
+     * @param seed The game's seed
+     * @param mapId The name of the map's file in maps/
+     * @param difficulty The bots' difficulty
+     * @param customWeighting The weighting for the CUSTOM difficulty
+     * @param botCount How many bots there are
+     * @return The writer
+     * @throws IOException If the file can't be created
+     */
+    public static EventLogWriter create(Path file, long seed, String mapId, Difficulty difficulty, int customWeighting,
+                                        int botCount) throws IOException {
+        return new EventLogWriter(new FileOutputStream(file.toFile()), seed, mapId, difficulty, customWeighting, botCount);
+    }
+
+    /**
+     * Adds a step to the log: the human's command, and where every bot decided to go.
+     *
+     * @param engine The game
+     * @param command The decoded command the human played
+     */
+    @Override
+    public void stepTaken(GameEngine engine, int command) {
+        if (finished) {
+            throw new IllegalStateException("Error: The event log has already been finished!");
+        }
+
+        writeVarint(command + 1);
+        if (CommandDecoder.action(command) != StepResult.Action.QUIT) { // A QUIT ends the game before the bots move
+            BotGroup bots = engine.getBots();
+            for (int i = 0; i < bots.size(); i++) {
+                Location.Direction decision = bots.getLastDecision(i);
+                writeVarint(decision == null ? 0 : decision.ordinal() + 1);
+            }
+        }
+    }
+
+    /**
+     * Ends the log with the final state of the game, so a replay can check it got the same, and closes it.
+     *
+     * @param engine The game
+     * @throws IOException If the log can't be written
+     */
+    public void finish(GameEngine engine) throws IOException {
+        if (!finished) {
+            finished = true;
+
+            writeVarint(EventLog.END);
+            writeVarint(engine.getHuman().getLocation().getCol());
+            writeVarint(engine.getHuman().getLocation().getRow());
+            writeVarint(engine.getHuman().getGoldCollected());
+            writeVarint(engine.getTurn());
+            writeVarint(flags(engine));
+            for (BotPlayer bot : engine.getBots().getBots()) {
+                writeVarint(bot.getLocation().getCol());
+                writeVarint(bot.getLocation().getRow());
+            }
+        }
+        close();
+    }
+
+    /**
+     * Hands what's been logged so far to the background thread to be written, without waiting for it.
+     *
+     * @throws IOException If an earlier write failed
+     */
+    public void flush() throws IOException {
+        checkFailure();
+        handOff();
+    }
+
+    /**
+     * Hands the buffer to the background thread to be written, and carries on with a spare one.
+     */
+    private void handOff() {
+        if (size == 0) {
+            return;
+        }
+
+        byte[] full = buffer;
+        int length = size;
+        lastWrite = WRITER.submit(() -> {
+            try {
+                if (failure == null) {
+                    out.write(full, 0, length);
+                }
+            } catch (IOException e) {
+                failure = e;
+            }
+            spareBuffers.add(full);
+        });
+
+        byte[] spare = spareBuffers.poll();
+        buffer = spare != null ? spare : new byte[BUFFER_SIZE];
+        size = 0;
+    }
+
+    /**
+     * Writes what's left of the log, waits for it to be written, and closes the file.
+     *
+     * @throws IOException If the log can't be written
+     */
+    @Override
+    public void close() throws IOException {
+        if (closed) {
+            return;
+        }
+        closed = true;
+
+        try {
+            handOff();
+            if (lastWrite != null) {
+                lastWrite.get();
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new IOException("Interrupted while writing the event log");
+        } catch (ExecutionException e) {
+            throw new IOException(e.getCause());
+        } finally {
+            out.close();
+        }
+        checkFailure();
+    }
+
+    /**
+     * Gets the flags for how a game ended.
+     *
+     * @param engine The game
+     * @return The flags
+     */
+    static int flags(GameEngine engine) {
+        int flags = engine.isWon() ? EventLog.FLAG_WON : 0;
+        if (engine.isGameOver() && engine.getBots().isCaught(engine.getHuman().getLocation())) {
+            flags |= EventLog.FLAG_CAUGHT;
+        }
+        return flags;
+    }
+
+    /**
+     * Throws the error from the background thread, if a write has failed.
+     *
+     * @throws IOException The error
+     */
+    private void checkFailure() throws IOException {
+        if (failure != null) {
+            throw failure;
+        }
+    }
+
+    /**
+     * Adds a string to the log, as its length then its UTF-8 bytes.
+     *
+     * @param text The string
+     */
+    private void writeString(String text) {
+        byte[] bytes = text.getBytes(StandardCharsets.UTF_8);
+        writeVarint(bytes.length);
+        for (byte b : bytes) {
+            writeByte(b);
+        }
+    }
+
+    /**
+     * Adds a varint to the log.
+     *
+     * @param value The number, which can't be negative
+     */
+    private void writeVarint(long value) {
+        while ((value & ~0x7FL) != 0) {
+            writeByte((byte) ((value & 0x7F) | 0x80));
+            value >>>= 7;
+        }
+        writeByte((byte) value);
+    }
+
+    /**
+     * Adds a byte to the log, handing the buffer over to be written when it's full.
+     *
+     * @param b The byte
+     */
+    private void writeByte(byte b) {
+        if (size == buffer.length) {
+            handOff(); // A failed write is thrown by the next flush or close, not in the middle of a turn
+        }
+        buffer[size++] = b;
+    }
+}
@@ -0,0 +1,85 @@
+package replay;
+
+import java.nio.file.Path;
+
+/**
+ * How the replay of one event log went.
+ */
+public final class ReplayResult {
+
+    /**
+     * What a replay found.
+     */
+    public enum Status {
+        VERIFIED, // Every step, and the final state, were the same as the log
+        INCOMPLETE, // Every step was the same, but the log was cut off, so there was no final state to check
+        MISMATCH, // The replay played out differently from the log
+        ERROR // The log (or its map) couldn't be read
+    }
+
+    private final Path file;
+    private final Status status;
+    private final int steps;
+    private final String message;
+
+    /**
+     * Creates a result.
+     *
+     * @param file The log
+     * @param status What was found
+     * @param steps How many steps were replayed
+     * @param message What went wrong, or null
+     */
+    ReplayResult(Path file, Status status, int steps, String message) {
+        this.file = file;
+        this.status = status;
+        this.steps = steps;
+        this.message = message;
+    }
+
+    /**
+     * Gets the log that was replayed.
+     *
+     * @return The file
+     */
+    public Path getFile() {
+        return file;
+    }
+
+    /**
+     * Gets what the replay found.
+     *
+     * @return The status
+     */
+    public Status getStatus() {
+        return status;
+    }
+
+    /**
+     * Gets how many steps were replayed.
+     *
+     * @return The number of steps
+     */
+    public int getSteps() {
+        return steps;
+    }
+
+    /**
+     * Gets what went wrong.
+     *
+     * @return The message, or null if nothing did
+     */
+    public String getMessage() {
+        return message;
+    }
+
+    /**
+     * Describes the result, for printing.
+     *
+     * @return The description
+     */
+    @Override
+    public String toString() {
+        return status + " " + file + " (" + steps + " steps)" + (message != null ? ": " + message : "");
+    }
+}
@@ -0,0 +1,240 @@
+package replay;
+
+import main.CommandDecoder;
+import main.GameEngine;
+import main.GameRandom;
+import main.Location;
+import main.StepResult;
+import map.MapCache;
+import map.MapFormatException;
+import player.BotGroup;
+import player.BotPlayer;
+
+import java.io.EOFException;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.EnumMap;
+import java.util.List;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ForkJoinPool;
+import java.util.stream.Collectors;
+import java.util.stream.Stream;
+
+/**
+ * Plays event logs (see replay.EventLog) again, to check that the same seed and commands still play out the same
+ * game. Each log's map is loaded from maps/, and the game is set up again through main.GameEngine with the log's seed,
+ * difficulty and bots, which gives every bot the same strategy and split of the random numbers. Then each logged
+ * command is played, as fast as the bots can decide, and after each step every bot's decision is checked against the
+ * log, so a replay stops at the first step that's different. If the log has an end, the final state is checked too.
+ *
+ * Logs are replayed in parallel on a java.util.concurrent.ForkJoinPool with one thread per core (or
+ * -Ddod.replay.threads), each on its own map, so a whole directory of logs can be checked at once. Games against the
+ * MCTS difficulty search for as long as they're given rather than a set number of rollouts, so they aren't expected
+ * to replay the same.
+ *
+ * Usage: java replay.Replayer logFileOrDirectory...
+ */
+public class Replayer {
+
+    private static final int THREADS = Integer.getInteger("dod.replay.threads", Runtime.getRuntime().availableProcessors());
+
+    private static final Location.Direction[] DIRECTIONS = Location.Direction.values(); // N, E, S, W
+    private static final int ACTION_COUNT = StepResult.Action.values().length;
+
+    public static void main(String[] args) {
+        if (args.length == 0) {
+            System.out.println("Usage: java replay.Replayer logFileOrDirectory...");
+            System.exit(1);
+        }
+
+        List<Path> files = new ArrayList<>();
+        try {
+            for (String arg : args) {
+                files.addAll(logFiles(Paths.get(arg)));
+            }
+        } catch (IOException e) {
+            System.out.println("Error: Unable to find the event logs: " + e.getMessage());
+            System.exit(1);
+        }
+
+        long start = System.nanoTime();
+        List<ReplayResult> results = replayAll(files, THREADS);
+        double seconds = (System.nanoTime() - start) / 1e9;
+
+        EnumMap<ReplayResult.Status, Integer> counts = new EnumMap<>(ReplayResult.Status.class);
+        long steps = 0;
+        for (ReplayResult result : results) {
+            counts.merge(result.getStatus(), 1, Integer::sum);
+            steps += result.getSteps();
+            if (result.getStatus() != ReplayResult.Status.VERIFIED) {
+                System.out.println(result);
+            }
+        }
+
+        System.out.println(String.format("Replayed %d logs (%d steps) in %.2f s, %.0f steps/s: %s",
+                results.size(), steps, seconds, steps / seconds, counts));
+        if (results.stream().anyMatch(result -> result.getStatus() == ReplayResult.Status.MISMATCH
+                || result.getStatus() == ReplayResult.Status.ERROR)) {
+            System.exit(1);
+        }
+    }
+
+    /**
+     * Replays logs in parallel.
+     *
+     * @param files The logs
+     * @param threads How many threads to replay them on
+     * @return The result of each log, in the same order
+     */
+    public static List<ReplayResult> replayAll(List<Path> files, int threads) {
+        ForkJoinPool pool = new ForkJoinPool(threads);
+        try {
+            return pool.submit(() -> files.parallelStream().map(Replayer::replay).collect(Collectors.toList())).get();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new IllegalStateException("Error: The replay was interrupted!");
+        } catch (ExecutionException e) {
+            throw new IllegalStateException("Error: A replay failed: " + e.getCause(), e.getCause());
+        } finally {
+            pool.shutdown();
+        }
+    }
+
+    /**
+     * Replays one log.
+     *
+     * @param file The log
+     * @return How it went
+     */
+    public static ReplayResult replay(Path file) {
+        int steps = 0;
+        try {
+            EventLogReader log = EventLogReader.open(file);
+            GameEngine engine = new GameEngine(MapCache.getDefault().load(log.getMapId()), new GameRandom(log.getSeed()),
+                    log.getDifficulty(), log.getCustomWeighting(), log.getBotCount());
+            BotGroup bots = engine.getBots();
+
+            while (log.hasNextStep()) {
+                if (engine.isGameOver()) {
+                    return mismatch(file, steps, "The game ended, but the log carries on");
+                }
+
+                int command = log.nextCommand();
+                if (command < 0 || CommandDecoder.opcode(command) >= ACTION_COUNT
+                        || CommandDecoder.argument(command) >= DIRECTIONS.length) {
+                    return new ReplayResult(file, ReplayResult.Status.ERROR, steps, "Unknown command " + command);
+                }
+
+                engine.execute(command);
+                steps++;
+
+                if (CommandDecoder.action(command) == StepResult.Action.QUIT) {
+                    continue; // The bots don't take a turn
+                }
+                for (int i = 0; i < bots.size(); i++) {
+                    int logged = log.nextBotMove();
+                    Location.Direction decision = bots.getLastDecision(i);
+                    int replayed = decision == null ? -1 : decision.ordinal();
+
+                    if (logged != replayed) {
+                        return mismatch(file, steps, String.format("Bot %d decided %s, but the log says %s",
+                                i + 1, describe(replayed), describe(logged)));
+                    }
+                }
+            }
+
+            if (!log.hasEnd()) {
+                return new ReplayResult(file, ReplayResult.Status.INCOMPLETE, steps, "The log has no end");
+            }
+            String difference = compareFinalState(engine, log.getFinalState());
+            return difference == null ? new ReplayResult(file, ReplayResult.Status.VERIFIED, steps, null)
+                    : mismatch(file, steps, difference);
+
+        } catch (EOFException e) {
+            return new ReplayResult(file, ReplayResult.Status.INCOMPLETE, steps, e.getMessage());
+        } catch (IOException e) {
+            return new ReplayResult(file, ReplayResult.Status.ERROR, steps, "Unable to read " + e.getMessage());
+        } catch (MapFormatException | IllegalArgumentException | IllegalStateException e) {
+            return new ReplayResult(file, ReplayResult.Status.ERROR, steps, e.getMessage());
+        }
+    }
+
+    /**
+     * Compares a replayed game with the final state at the end of its log.
+     *
+     * @param engine The replayed game
+     * @param expected The logged final state (see replay.EventLogReader#getFinalState)
+     * @return What's different, or null if nothing is
+     */
+    private static String compareFinalState(GameEngine engine, int[] expected) {
+        Location human = engine.getHuman().getLocation();
+        if (human.getCol() != expected[0] || human.getRow() != expected[1]) {
+            return String.format("The human ended at %d, %d, but the log says %d, %d",
+                    human.getCol(), human.getRow(), expected[0], expected[1]);
+        } else if (engine.getHuman().getGoldCollected() != expected[2]) {
+            return String.format("The human ended with %d gold, but the log says %d",
+                    engine.getHuman().getGoldCollected(), expected[2]);
+        } else if (engine.getTurn() != expected[3]) {
+            return String.format("The game lasted %d turns, but the log says %d", engine.getTurn(), expected[3]);
+        } else if (EventLogWriter.flags(engine) != expected[4]) {
+            return String.format("The game ended with flags %d, but the log says %d", EventLogWriter.flags(engine), expected[4]);
+        }
+
+        List<BotPlayer> bots = engine.getBots().getBots();
+        for (int i = 0; i < bots.size(); i++) {
+            Location bot = bots.get(i).getLocation();
+            int col = expected[5 + 2 * i];
+            int row = expected[6 + 2 * i];
+            if (bot.getCol() != col || bot.getRow() != row) {
+                return String.format("Bot %d ended at %d, %d, but the log says %d, %d",
+                        i + 1, bot.getCol(), bot.getRow(), col, row);
+            }
+        }
+        return null;
+    }
+
+    /**
+     * Creates the result for a replay that played out differently.
+     *
+     * @param file The log
+     * @param steps How many steps were replayed
+     * @param difference What was different
+     * @return The result
+     */
+    private static ReplayResult mismatch(Path file, int steps, String difference) {
+        return new ReplayResult(file, ReplayResult.Status.MISMATCH, steps, "Step " + steps + ": " + difference);
+    }
+
+    /**
+     * Describes a bot's decision.
+     *
+     * @param direction The direction's ordinal, or -1 if it didn't decide to move
+     * @return The description
+     */
+    private static String describe(int direction) {
+        return direction < 0 ? "not to move" : direction < DIRECTIONS.length ? DIRECTIONS[direction].name() : "?" + direction;
+    }
+
+    /**
+     * Gets the logs in a file or directory (and any directories in it), in order.
+     *
+     * @param path The file or directory
+     * @return The logs
+     * @throws IOException If the directory can't be read
+     */
+    private static List<Path> logFiles(Path path) throws IOException {
+        if (!Files.isDirectory(path)) {
+            return Collections.singletonList(path);
+        }
+
+        try (Stream<Path> paths = Files.walk(path)) {
+            return paths.filter(file -> file.toString().endsWith(EventLogWriter.EXTENSION))
+                    .sorted()
+                    .collect(Collectors.toList());
+        }
+    }
+}
@@ -0,0 +1,196 @@
+package tournament;
+
+import main.GameEngine;
+import main.Location;
+import map.Map;
+
+/**
+ * A human that plays to win: it walks to the nearest gold until it has enough, then to the nearest exit, and quits
+ * there. It keeps away from the bots where it can, by not walking onto or next to a tile a bot is on, unless that's the
+ * only way to get where it's going.
+ *
+ * The way is found with a breadth-first search from the human every step, which stops at the first tile it's looking
+ * for. The arrays are kept between steps with generation stamps, so nothing is cleared or allocated for a search.
+ */
+public class GreedyHuman implements HumanAgent {
+
+    private static final Location.Direction[] DIRECTIONS = Location.Direction.values(); // N, E, S, W
+    private static final String[] MOVES = {"MOVE N", "MOVE E", "MOVE S", "MOVE W"};
+
+    private int[] reached = new int[0]; // The generation that last reached each tile
+    private byte[] firstMove = new byte[0]; // The first move from the human towards each tile
+    private int[] queue = new int[0];
+    private int[] danger = new int[0]; // The generation that last marked each tile as next to a bot
+    private int generation = 0;
+
+    /**
+     * Picks up gold or quits if it can, otherwise takes the first step towards the nearest gold (or exit, once it has
+     * enough gold).
+     *
+     * @param engine The game
+     * @return The command
+     */
+    @Override
+    public String nextCommand(GameEngine engine) {
+        Map map = engine.getMap();
+        Location location = engine.getHuman().getLocation();
+        boolean enoughGold = engine.getHuman().getGoldCollected() >= map.getGoldRequired();
+
+        if (!enoughGold && map.getTokenAtLocation(location).isGold()) {
+            return "PICKUP";
+        } else if (engine.getHuman().canEscape(map)) {
+            return "QUIT";
+        }
+
+        prepare(map);
+        markDanger(map, engine);
+
+        int move = search(map, location, enoughGold, true);
+        if (move < 0) {
+            move = search(map, location, enoughGold, false);
+        }
+        return move < 0 ? "HELLO" : MOVES[move]; // HELLO just waits a turn
+    }
+
+    /**
+     * Makes the arrays big enough for the map, and starts a new generation.
+     *
+     * @param map The map
+     */
+    private void prepare(Map map) {
+        int cellCount = map.getWidth() * map.getHeight();
+        if (reached.length != cellCount) {
+            reached = new int[cellCount];
+            firstMove = new byte[cellCount];
+            queue = new int[cellCount];
+            danger = new int[cellCount];
+            generation = 0;
+        }
+        generation++;
+    }
+
+    /**
+     * Marks the tiles the bots are on, and the tiles next to them, as dangerous for this step.
+     *
+     * @param map The map
+     * @param engine The game
+     */
+    private void markDanger(Map map, GameEngine engine) {
+        int width = map.getWidth();
+        int height = map.getHeight();
+
+        for (Location bot : engine.getBots().getLocations()) {
+            if (bot.outOfBounds(width, height)) {
+                continue;
+            }
+
+            int cell = bot.getRow() * width + bot.getCol();
+            danger[cell] = generation;
+            if (bot.getRow() > 0) {
+                danger[cell - width] = generation;
+            }
+            if (bot.getCol() < width - 1) {
+                danger[cell + 1] = generation;
+            }
+            if (bot.getRow() < height - 1) {
+                danger[cell + width] = generation;
+            }
+            if (bot.getCol() > 0) {
+                danger[cell - 1] = generation;
+            }
+        }
+    }
+
+    /**
+     * Searches outwards from the human for the nearest gold or exit.
+     *
+     * @param map The map
+     * @param location The human's location
+     * @param forExit If it's looking for an exit rather than gold
+     * @param avoidBots If tiles on or next to a bot can't be walked through
+     * @return The index of the first move towards it, or -1 if there isn't one to be found
+     */
+    private int search(Map map, Location location, boolean forExit, boolean avoidBots) {
+        int width = map.getWidth();
+        int height = map.getHeight();
+        int stamp = avoidBots ? 2 * generation : 2 * generation + 1; // Each search needs its own generation
+        int start = location.getRow() * width + location.getCol();
+
+        reached[start] = stamp;
+        int head = 0;
+        int tail = 0;
+
+        // The first moves are the start of every path, so they're added by hand
+        for (int direction = 0; direction < DIRECTIONS.length; direction++) {
+            Location next = location.adjacentLocation(DIRECTIONS[direction]);
+            if (next.outOfBounds(width, height)) {
+                continue;
+            }
+
+            int cell = next.getRow() * width + next.getCol();
+            if (canEnter(map, cell, stamp, avoidBots)) {
+                reached[cell] = stamp;
+                firstMove[cell] = (byte) direction;
+                queue[tail++] = cell;
+            }
+        }
+
+        while (head < tail) {
+            int cell = queue[head++];
+            int col = cell % width;
+            int row = cell / width;
+
+            char tile = map.getCharAt(col, row);
+            if (forExit ? tile == 'E' : tile == 'G') {
+                return firstMove[cell];
+            }
+
+            if (row > 0) {
+                tail = visit(map, cell - width, firstMove[cell], stamp, avoidBots, tail);
+            }
+            if (col < width - 1) {
+                tail = visit(map, cell + 1, firstMove[cell], stamp, avoidBots, tail);
+            }
+            if (row < height - 1) {
+                tail = visit(map, cell + width, firstMove[cell], stamp, avoidBots, tail);
+            }
+            if (col > 0) {
+                tail = visit(map, cell - 1, firstMove[cell], stamp, avoidBots, tail);
+            }
+        }
+        return -1;
+    }
+
+    /**
+     * Adds a tile to the search if it can be walked through and hasn't been reached yet.
+     *
+     * @param map The map
+     * @param cell The tile's cell index
+     * @param move The index of the first move of the path to it
+     * @param stamp The search's generation
+     * @param avoidBots If tiles on or next to a bot can't be walked through
+     * @param tail The end of the queue
+     * @return The new end of the queue
+     */
+    private int visit(Map map, int cell, byte move, int stamp, boolean avoidBots, int tail) {
+        if (canEnter(map, cell, stamp, avoidBots)) {
+            reached[cell] = stamp;
+            firstMove[cell] = move;
+            queue[tail++] = cell;
+        }
+        return tail;
+    }
+
+    /**
+     * Checks if the search can go onto a tile.
+     *
+     * @param map The map
+     * @param cell The tile's cell index
+     * @param stamp The search's generation
+     * @param avoidBots If tiles on or next to a bot can't be walked through
+     * @return If it can
+     */
+    private boolean canEnter(Map map, int cell, int stamp, boolean avoidBots) {
+        return reached[cell] != stamp && map.isWalkable(cell) && !(avoidBots && danger[cell] == generation);
+    }
+}
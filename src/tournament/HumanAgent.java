@@ -0,0 +1,18 @@
+package tournament;
+
+import main.GameEngine;
+
+/**
+ * Something that plays the human in a tournament game instead of a person at the console, by typing one command a
+ * step.
+ */
+public interface HumanAgent {
+
+    /**
+     * Decides the human's next command.
+     *
+     * @param engine The game, which mustn't be changed
+     * @return The command, as it would be typed (e.g. "MOVE N")
+     */
+    String nextCommand(GameEngine engine);
+}
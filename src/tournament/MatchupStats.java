@@ -0,0 +1,90 @@
+package tournament;
+
+import main.GameEngine;
+
+/**
+ * The totals for the games of one matchup (a map against a difficulty). Each thread adds its games to its own totals,
+ * which are then added together, so nothing is shared while the games are being played.
+ */
+public class MatchupStats {
+
+    private int games;
+    private int wins;
+    private int caught;
+    private long turns;
+    private long gold;
+
+    /**
+     * Adds a finished (or abandoned) game.
+     *
+     * @param engine The game
+     */
+    public void add(GameEngine engine) {
+        games++;
+        if (engine.isWon()) {
+            wins++;
+        } else if (engine.isGameOver() && engine.getBots().isCaught(engine.getHuman().getLocation())) {
+            caught++;
+        }
+        turns += engine.getTurn();
+        gold += engine.getHuman().getGoldCollected();
+    }
+
+    /**
+     * Adds another thread's totals to these.
+     *
+     * @param other The other totals
+     */
+    public void addAll(MatchupStats other) {
+        games += other.games;
+        wins += other.wins;
+        caught += other.caught;
+        turns += other.turns;
+        gold += other.gold;
+    }
+
+    /**
+     * Gets how many games were played.
+     *
+     * @return The number of games
+     */
+    public int getGames() {
+        return games;
+    }
+
+    /**
+     * Gets how many of the games the human won.
+     *
+     * @return The fraction of games, from 0 to 1
+     */
+    public double getWinRate() {
+        return games == 0 ? 0 : (double) wins / games;
+    }
+
+    /**
+     * Gets how many of the games ended with the human being caught.
+     *
+     * @return The fraction of games, from 0 to 1
+     */
+    public double getCaughtRate() {
+        return games == 0 ? 0 : (double) caught / games;
+    }
+
+    /**
+     * Gets the average length of a game.
+     *
+     * @return The average number of turns
+     */
+    public double getAverageTurns() {
+        return games == 0 ? 0 : (double) turns / games;
+    }
+
+    /**
+     * Gets the average gold the human collected in a game.
+     *
+     * @return The average gold
+     */
+    public double getAverageGold() {
+        return games == 0 ? 0 : (double) gold / games;
+    }
+}
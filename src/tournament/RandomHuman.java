@@ -0,0 +1,43 @@
+package tournament;
+
+import main.GameEngine;
+import main.GameRandom;
+import main.Location;
+
+/**
+ * A human that wanders around at random, picking up any gold it walks onto, and quits as soon as it's standing on an
+ * exit with enough gold. It's the human equivalent of the Easy bot.
+ */
+public class RandomHuman implements HumanAgent {
+
+    private static final String[] MOVES = {"MOVE N", "MOVE E", "MOVE S", "MOVE W"};
+
+    private final GameRandom random;
+
+    /**
+     * Creates the human.
+     *
+     * @param random Its own random numbers
+     */
+    public RandomHuman(GameRandom random) {
+        this.random = random;
+    }
+
+    /**
+     * Picks up gold or quits if it can, otherwise moves in a random direction.
+     *
+     * @param engine The game
+     * @return The command
+     */
+    @Override
+    public String nextCommand(GameEngine engine) {
+        Location location = engine.getHuman().getLocation();
+
+        if (engine.getMap().getTokenAtLocation(location).isGold()) {
+            return "PICKUP";
+        } else if (engine.getHuman().canEscape(engine.getMap())) {
+            return "QUIT";
+        }
+        return MOVES[random.nextInt(MOVES.length)];
+    }
+}
@@ -0,0 +1,40 @@
+package tournament;
+
+import main.GameEngine;
+
+import java.util.List;
+
+/**
+ * A human that types a fixed list of commands, starting again from the top when it runs out, so the same moves can be
+ * played against every difficulty.
+ */
+public class ScriptedHuman implements HumanAgent {
+
+    private final List<String> commands;
+    private int next = 0;
+
+    /**
+     * Creates the human.
+     *
+     * @param commands The commands to type, in order
+     */
+    public ScriptedHuman(List<String> commands) {
+        if (commands.isEmpty()) {
+            throw new IllegalArgumentException("Error: The script doesn't have any commands!");
+        }
+        this.commands = List.copyOf(commands);
+    }
+
+    /**
+     * Types the next command of the script.
+     *
+     * @param engine The game
+     * @return The command
+     */
+    @Override
+    public String nextCommand(GameEngine engine) {
+        String command = commands.get(next);
+        next = (next + 1) % commands.size();
+        return command;
+    }
+}
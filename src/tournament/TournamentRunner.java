@@ -0,0 +1,302 @@
+package tournament;
+
+import main.GameEngine;
+import main.GameRandom;
+import map.BinaryMapFile;
+import map.Map;
+import map.MapCache;
+import map.MapFormatException;
+import ui.BotDifficultySelector.Difficulty;
+
+import java.io.IOException;
+import java.io.PrintStream;
+import java.nio.file.DirectoryStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.Locale;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ForkJoinPool;
+import java.util.function.Function;
+import java.util.stream.IntStream;
+
+/**
+ * Plays thousands of games of every difficulty on every map in maps/, with a human played by the computer, to see how
+ * hard each difficulty really is.
+ *
+ * The difficulties are Easy, Custom at every weighting from 1 to 10, Hard and Godlike. Game i of every matchup is
+ * played with seed (seed + i), so each difficulty faces the same spawns. The games are played on a work-stealing
+ * java.util.concurrent.ForkJoinPool with one thread per core (or -Ddod.tournament.threads), each on its own copy of the
+ * map through main.GameEngine, so nothing is printed while they're played. A game the human hasn't won or lost after
+ * -Ddod.tournament.turns turns (1000 by default) is stopped, and counts as neither.
+ *
+ * The results are written as a table with a row for each matchup: the human's win rate, how often it was caught, the
+ * average turns and gold, and how many games a second were played. It's CSV, or JSON if the output file ends in .json.
+ *
+ * Usage: java tournament.TournamentRunner [games] [random|greedy|scriptFile] [outputFile] [seed]
+ */
+public class TournamentRunner {
+
+    private static final int MAX_TURNS = Integer.getInteger("dod.tournament.turns", 1000);
+    private static final int THREADS = Integer.getInteger("dod.tournament.threads", Runtime.getRuntime().availableProcessors());
+    private static final int BOT_COUNT = Integer.getInteger("dod.bots", 1);
+
+    private static final int MAX_WEIGHTING = 10;
+
+    private final int games;
+    private final long seed;
+    private final Function<GameRandom, HumanAgent> humans;
+    private final ForkJoinPool pool;
+
+    private final List<String> skipped = new ArrayList<>();
+
+    /**
+     * Creates a tournament.
+     *
+     * @param games How many games to play for each matchup
+     * @param seed The seed of the first game of each matchup
+     * @param humans Creates the human for a game, from its split of the game's random numbers
+     * @param threads How many threads to play games on
+     */
+    public TournamentRunner(int games, long seed, Function<GameRandom, HumanAgent> humans, int threads) {
+        if (games < 1) {
+            throw new IllegalArgumentException("Error: There has to be at least one game per matchup!");
+        }
+
+        this.games = games;
+        this.seed = seed;
+        this.humans = humans;
+        this.pool = new ForkJoinPool(threads);
+    }
+
+    public static void main(String[] args) {
+        try {
+            int games = args.length > 0 ? Integer.parseInt(args[0]) : 1000;
+            Function<GameRandom, HumanAgent> humans = parseHuman(args.length > 1 ? args[1] : "greedy");
+            String output = args.length > 2 ? args[2] : null;
+            long seed = args.length > 3 ? Long.parseLong(args[3]) : 1;
+
+            TournamentRunner runner = new TournamentRunner(games, seed, humans, THREADS);
+            PrintStream out = output != null ? new PrintStream(output) : System.out;
+            boolean json = output != null && output.endsWith(".json");
+
+            long start = System.nanoTime();
+            List<String> rows = runner.run(mapFiles(), json, output != null);
+            double seconds = (System.nanoTime() - start) / 1e9;
+
+            for (String reason : runner.getSkipped()) {
+                System.out.println("Skipped " + reason);
+            }
+            writeTable(out, rows, json);
+            if (output != null) {
+                out.close();
+                System.out.println(String.format("Played %d matchups in %.1f s. Results written to %s",
+                        rows.size(), seconds, output));
+            }
+        } catch (NumberFormatException e) {
+            System.out.println("Error: Invalid number " + e.getMessage());
+            System.exit(1);
+        } catch (IOException e) {
+            System.out.println("Error: Unable to run the tournament: " + e.getMessage());
+            System.exit(1);
+        }
+    }
+
+    /**
+     * Plays every matchup on every map. Maps which can't be played on are left out, and can be found with getSkipped
+     * afterwards.
+     *
+     * @param mapFiles The names of the maps
+     * @param json If the rows should be JSON objects rather than CSV
+     * @param progress If a line should be printed as each matchup finishes
+     * @return The table's rows
+     */
+    public List<String> run(List<String> mapFiles, boolean json, boolean progress) {
+        List<String> rows = new ArrayList<>();
+        skipped.clear();
+
+        for (String mapFile : mapFiles) {
+            Map map;
+            try {
+                map = MapCache.getDefault().load(mapFile);
+                new GameEngine(map.copy(), new GameRandom(seed), Difficulty.EASY, 0, BOT_COUNT); // Checks there's room to play
+            } catch (MapFormatException | IOException | IllegalStateException | IllegalArgumentException e) {
+                skipped.add(String.format("%s: %s", mapFile, e.getMessage()));
+                continue;
+            }
+
+            for (Difficulty difficulty : List.of(Difficulty.EASY, Difficulty.CUSTOM, Difficulty.HARD, Difficulty.GODLIKE)) {
+                int weightings = difficulty == Difficulty.CUSTOM ? MAX_WEIGHTING : 1;
+
+                for (int weighting = 1; weighting <= weightings; weighting++) {
+                    int customWeighting = difficulty == Difficulty.CUSTOM ? weighting : 0;
+
+                    long start = System.nanoTime();
+                    MatchupStats stats = play(map, difficulty, customWeighting);
+                    double gamesPerSecond = stats.getGames() / ((System.nanoTime() - start) / 1e9);
+
+                    String row = json ? toJson(map.getName(), difficulty, customWeighting, stats, gamesPerSecond)
+                            : toCsv(map.getName(), difficulty, customWeighting, stats, gamesPerSecond);
+                    rows.add(row);
+                    if (progress) {
+                        System.out.println(toCsv(map.getName(), difficulty, customWeighting, stats, gamesPerSecond));
+                    }
+                }
+            }
+        }
+        return rows;
+    }
+
+    /**
+     * Gets the maps the last run left out, each with the reason it couldn't be played on.
+     *
+     * @return The map names and reasons, as "name: reason"
+     */
+    public List<String> getSkipped() {
+        return Collections.unmodifiableList(skipped);
+    }
+
+    /**
+     * Plays every game of a matchup, in parallel.
+     *
+     * @param map The map, which each game gets its own copy of
+     * @param difficulty The bots' difficulty
+     * @param customWeighting The weighting for the CUSTOM difficulty
+     * @return The totals
+     */
+    public MatchupStats play(Map map, Difficulty difficulty, int customWeighting) {
+        try {
+            return pool.submit(() -> IntStream.range(0, games).parallel().collect(MatchupStats::new,
+                    (stats, game) -> stats.add(playGame(map, difficulty, customWeighting, seed + game)),
+                    MatchupStats::addAll)).get();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new IllegalStateException("Error: The tournament was interrupted!");
+        } catch (ExecutionException e) {
+            throw new IllegalStateException("Error: A game failed: " + e.getCause(), e.getCause());
+        }
+    }
+
+    /**
+     * Plays one game until it ends, or runs out of turns.
+     *
+     * @param map The map, which the game gets its own copy of
+     * @param difficulty The bots' difficulty
+     * @param customWeighting The weighting for the CUSTOM difficulty
+     * @param gameSeed The game's seed
+     * @return The finished game
+     */
+    private GameEngine playGame(Map map, Difficulty difficulty, int customWeighting, long gameSeed) {
+        GameRandom random = new GameRandom(gameSeed);
+        GameEngine engine = new GameEngine(map.copy(), random, difficulty, customWeighting, BOT_COUNT);
+        HumanAgent human = humans.apply(random.split()); // After the engine's splits, so the game is the same as at the console
+
+        while (!engine.isGameOver() && engine.getTurn() < MAX_TURNS) {
+            engine.step(human.nextCommand(engine));
+        }
+        return engine;
+    }
+
+    /**
+     * Works out which human to play with from the command line.
+     *
+     * @param name random, greedy, or the name of a file of commands (one per line)
+     * @return Creates the human for a game
+     * @throws IOException If the file can't be read
+     */
+    private static Function<GameRandom, HumanAgent> parseHuman(String name) throws IOException {
+        switch (name.toLowerCase()) {
+            case "random":
+                return RandomHuman::new;
+            case "greedy":
+                return random -> new GreedyHuman();
+            default:
+                List<String> commands = new ArrayList<>();
+                for (String line : Files.readAllLines(Paths.get(name))) {
+                    if (!line.isBlank()) {
+                        commands.add(line.trim());
+                    }
+                }
+                return random -> new ScriptedHuman(commands);
+        }
+    }
+
+    /**
+     * Gets the names of the maps (text or binary) in maps/, in order.
+     *
+     * @return The file names
+     * @throws IOException If the directory can't be read
+     */
+    private static List<String> mapFiles() throws IOException {
+        List<String> files = new ArrayList<>();
+
+        try (DirectoryStream<Path> paths = Files.newDirectoryStream(Paths.get("maps"))) {
+            for (Path path : paths) {
+                if (path.toString().endsWith(".txt") || path.toString().endsWith(BinaryMapFile.EXTENSION)) {
+                    files.add(path.getFileName().toString());
+                }
+            }
+        }
+        Collections.sort(files);
+        return files;
+    }
+
+    /**
+     * Writes the table.
+     *
+     * @param out Where to write it
+     * @param rows The rows
+     * @param json If it's JSON rather than CSV
+     */
+    private static void writeTable(PrintStream out, List<String> rows, boolean json) {
+        if (json) {
+            out.println("[");
+            for (int i = 0; i < rows.size(); i++) {
+                out.println("  " + rows.get(i) + (i < rows.size() - 1 ? "," : ""));
+            }
+            out.println("]");
+        } else {
+            out.println("map,difficulty,weighting,games,win_rate,caught_rate,avg_turns,avg_gold,games_per_sec");
+            for (String row : rows) {
+                out.println(row);
+            }
+        }
+    }
+
+    /**
+     * Formats a matchup as a CSV row.
+     *
+     * @param mapName The map's name
+     * @param difficulty The difficulty
+     * @param weighting The custom weighting, or 0
+     * @param stats The totals
+     * @param gamesPerSecond How fast the games were played
+     * @return The row
+     */
+    private static String toCsv(String mapName, Difficulty difficulty, int weighting, MatchupStats stats, double gamesPerSecond) {
+        return String.format(Locale.ROOT, "%s,%s,%d,%d,%.4f,%.4f,%.2f,%.2f,%.0f", mapName.replace(",", " "), difficulty, weighting,
+                stats.getGames(), stats.getWinRate(), stats.getCaughtRate(), stats.getAverageTurns(),
+                stats.getAverageGold(), gamesPerSecond);
+    }
+
+    /**
+     * Formats a matchup as a JSON object.
+     *
+     * @param mapName The map's name
+     * @param difficulty The difficulty
+     * @param weighting The custom weighting, or 0
+     * @param stats The totals
+     * @param gamesPerSecond How fast the games were played
+     * @return The object
+     */
+    private static String toJson(String mapName, Difficulty difficulty, int weighting, MatchupStats stats, double gamesPerSecond) {
+        return String.format(Locale.ROOT, "{\"map\": \"%s\", \"difficulty\": \"%s\", \"weighting\": %d, \"games\": %d, "
+                        + "\"win_rate\": %.4f, \"caught_rate\": %.4f, \"avg_turns\": %.2f, \"avg_gold\": %.2f, "
+                        + "\"games_per_sec\": %.0f}",
+                mapName.replace("\\", "\\\\").replace("\"", "\\\""), difficulty, weighting, stats.getGames(),
+                stats.getWinRate(), stats.getCaughtRate(), stats.getAverageTurns(), stats.getAverageGold(), gamesPerSecond);
+    }
+}
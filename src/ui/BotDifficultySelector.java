@@ -25,6 +25,8 @@ public class BotDifficultySelector extends AbstractSelector {
         MEDIUM,
         HARD,
         GODLIKE,
+        MCTS,
+        HORDE,
         CUSTOM;
     }
 
@@ -34,6 +36,8 @@ public class BotDifficultySelector extends AbstractSelector {
         difficultyDescriptions.add("MEDIUM - Attempts to chase you when executing the LOOK command.");
         difficultyDescriptions.add("HARD - The bot will chase you with 100% accuracy when it finds you using the LOOK command.");
         difficultyDescriptions.add("GODLIKE - The bot knows where you are at all times and tries to chase you.");
+        difficultyDescriptions.add("MCTS - The bot knows where you are and plays out thousands of games ahead to cut you off.");
+        difficultyDescriptions.add("HORDE - Every bot follows one shared flow field to you. Made for thousands of bots.");
         difficultyDescriptions.add("CUSTOM - Customise the difficulty level for you!");
     }
 
@@ -92,6 +96,14 @@ public class BotDifficultySelector extends AbstractSelector {
                 break;
 
             case 5:
+                this.selectedDifficulty = Difficulty.MCTS;
+                break;
+
+            case 6:
+                this.selectedDifficulty = Difficulty.HORDE;
+                break;
+
+            case 7:
                 CustomDifficultySelector customSel = new CustomDifficultySelector(bufferedReader);
                 customSel.select();
 
@@ -1,5 +1,7 @@
 package ui;
 
+import map.BinaryMapFile;
+
 import java.io.BufferedReader;
 import java.io.IOException;
 import java.nio.file.DirectoryStream;
@@ -19,7 +21,7 @@ public class MapSelector extends AbstractSelector {
     private ArrayList<String> fileNames;
 
     /**
-     * Starts the process of selecting a map.Map, by listing all .txt files in the directory.
+     * Starts the process of selecting a map.Map, by listing all .txt and binary map files in the directory.
      *
      * @param reader Console Input buffered reader.
      */
@@ -27,7 +29,7 @@ public class MapSelector extends AbstractSelector {
         super(reader);
 
         System.out.println("Please select a map by either:");
-        System.out.println("- Typing in the name of the .txt file");
+        System.out.println("- Typing in the name of the .txt or " + BinaryMapFile.EXTENSION + " file");
         System.out.println("- Typing in the corresponding number");
 
         try {
@@ -97,7 +99,7 @@ public class MapSelector extends AbstractSelector {
     }
 
     /**
-     * Gets a list of files in a direcory and adds them to an ArrayList
+     * Gets a list of map files (text or binary) in a direcory and adds them to an ArrayList
      *
      * @return ArrayList with all file names in the directory
      * @throws IOException When it can't add a file name to the list.
@@ -108,7 +110,7 @@ public class MapSelector extends AbstractSelector {
         DirectoryStream<Path> paths = Files.newDirectoryStream(Paths.get("maps"));
 
         for (Path path : paths) {
-            if (path.toString().endsWith(".txt")) {
+            if (path.toString().endsWith(".txt") || path.toString().endsWith(BinaryMapFile.EXTENSION)) {
                 files.add(path.getFileName().toString());
             }
         }